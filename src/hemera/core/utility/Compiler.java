@@ -1,8 +1,11 @@
 package hemera.core.utility;
 
 import java.io.File;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 import javax.tools.Diagnostic;
 import javax.tools.DiagnosticCollector;
@@ -19,7 +22,7 @@ import javax.tools.ToolProvider;
  * library class path into a single Jar file.
  *
  * @author Yi Wang (Neakor)
- * @version 1.0.0
+ * @version 1.0.1
  */
 public class Compiler {
 
@@ -40,8 +43,15 @@ public class Compiler {
 	 */
 	public void compile(final String srcDir, final String buildDir, final List<File> dependencies) throws Exception {
 		// Retrieve all Java files.
-		final List<File> sourcefiles = FileUtils.instance.getFiles(srcDir, ".java");
-		if (sourcefiles == null || sourcefiles.isEmpty()) return;
+		final List<File> sourcefiles = new ArrayList<File>();
+		final Stream<Path> sources = FileUtils.instance.walk(srcDir, Integer.MAX_VALUE, FileUtils.instance.extensionFilter(".java"));
+		try {
+			final Iterator<Path> iterator = sources.iterator();
+			while (iterator.hasNext()) sourcefiles.add(iterator.next().toFile());
+		} finally {
+			sources.close();
+		}
+		if (sourcefiles.isEmpty()) return;
 		// Create the compiler.
 		final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
 		final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
@@ -67,9 +77,13 @@ public class Compiler {
 		// files in the proper package structure, but only include class files.
 		FileUtils.instance.copyFolder(srcDir, buildDir, ".class");
 		// Remove all class files from the source directory.
-		final List<File> classfiles = FileUtils.instance.getFiles(srcDir, ".class");
-		final int size = classfiles.size();
-		for (int i = 0; i < size; i++) classfiles.get(i).delete();
+		final Stream<Path> classfiles = FileUtils.instance.walk(srcDir, Integer.MAX_VALUE, FileUtils.instance.extensionFilter(".class"));
+		try {
+			final Iterator<Path> iterator = classfiles.iterator();
+			while (iterator.hasNext()) iterator.next().toFile().delete();
+		} finally {
+			classfiles.close();
+		}
 	}
 	
 	/**
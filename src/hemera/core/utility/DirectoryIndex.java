@@ -0,0 +1,593 @@
+package hemera.core.utility;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+/**
+ * <code>DirectoryIndex</code> defines the opt-in cache
+ * of the file listings of directory trees, for callers
+ * that repeatedly retrieve the files of the same roots.
+ * <p>
+ * The first query of a root walks the tree once with
+ * the same rules as <code>FileUtils.getFiles</code>,
+ * and registers all of its directories with a single
+ * <code>WatchService</code>. Afterwards the index is
+ * updated incrementally from the created and deleted
+ * events by a daemon thread, and a root is only walked
+ * again if its events overflowed. Queries return the
+ * cached immutable listing per root and extension.
+ * <p>
+ * Since the events are delivered asynchronously, a
+ * listing may briefly lag behind modifications made
+ * right before the query.
+ * <p>
+ * If a directory of a root cannot be watched, such
+ * as when the limit of watches of the system is
+ * reached, the root is not indexed and each query of
+ * it walks the tree instead.
+ * <p>
+ * The memory footprint is bounded by the maximum
+ * number of roots and the maximum total number of
+ * indexed files. Once either is exceeded, by a query
+ * or by the files added by events, the least recently
+ * queried roots are evicted, and their directories are
+ * no longer watched. The most recently queried root is
+ * kept.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public final class DirectoryIndex implements Runnable, Closeable {
+	/**
+	 * The <code>int</code> maximum number of indexed
+	 * roots.
+	 */
+	private final int maxRoots;
+	/**
+	 * The <code>int</code> maximum total number of
+	 * indexed files across all roots.
+	 */
+	private final int maxFiles;
+	/**
+	 * The <code>WatchService</code> of all the indexed
+	 * directories.
+	 */
+	private final WatchService service;
+	/**
+	 * The <code>LinkedHashMap</code> of the root
+	 * <code>Path</code> to its <code>RootIndex</code>
+	 * in the order of access. This map also guards all
+	 * the index state.
+	 */
+	private final LinkedHashMap<Path, RootIndex> roots;
+	/**
+	 * The <code>Map</code> of the watched directory
+	 * <code>Path</code> to its <code>Watch</code>.
+	 */
+	private final Map<Path, Watch> watches;
+	/**
+	 * The <code>Thread</code> that applies the events.
+	 */
+	private final Thread thread;
+	/**
+	 * The <code>boolean</code> flag indicating if the
+	 * index is closed.
+	 */
+	private boolean closed;
+
+	/**
+	 * Constructor of <code>DirectoryIndex</code>.
+	 * @param maxRoots The <code>int</code> maximum
+	 * number of indexed roots.
+	 * @param maxFiles The <code>int</code> maximum total
+	 * number of indexed files.
+	 * @throws IOException If creating the watch service
+	 * failed.
+	 */
+	private DirectoryIndex(final int maxRoots, final int maxFiles) throws IOException {
+		if (maxRoots < 1) throw new IllegalArgumentException("Maximum number of roots must be positive.");
+		if (maxFiles < 1) throw new IllegalArgumentException("Maximum number of files must be positive.");
+		this.maxRoots = maxRoots;
+		this.maxFiles = maxFiles;
+		this.service = FileSystems.getDefault().newWatchService();
+		this.roots = new LinkedHashMap<Path, RootIndex>(16, 0.75f, true);
+		this.watches = new HashMap<Path, Watch>();
+		this.thread = new Thread(this, "hemera-directory-index");
+		this.thread.setDaemon(true);
+	}
+
+	/**
+	 * Create a new directory index and start the daemon
+	 * thread that applies the file system events.
+	 * @param maxRoots The <code>int</code> maximum
+	 * number of indexed roots.
+	 * @param maxFiles The <code>int</code> maximum total
+	 * number of indexed files across all roots.
+	 * @return The <code>DirectoryIndex</code> that
+	 * should be closed once it is no longer used.
+	 * @throws IOException If creating the watch service
+	 * failed.
+	 */
+	public static DirectoryIndex create(final int maxRoots, final int maxFiles) throws IOException {
+		final DirectoryIndex index = new DirectoryIndex(maxRoots, maxFiles);
+		index.thread.start();
+		return index;
+	}
+
+	/**
+	 * Retrieve all files from the specified directory
+	 * including all sub-directories but exclude hidden
+	 * files.
+	 * @param rootDir The <code>String</code> directory
+	 * to search from.
+	 * @return The immutable <code>List</code> of all the
+	 * <code>File</code>. <code>null</code> if the root
+	 * is not a directory.
+	 * @throws UncheckedIOException If indexing the root
+	 * failed.
+	 */
+	public List<File> getFiles(final String rootDir) {
+		return this.getFiles(rootDir, null);
+	}
+
+	/**
+	 * Retrieve the files that have the file extension
+	 * matching the given one, from the specified
+	 * directory including all sub-directories but
+	 * exclude hidden files.
+	 * @param rootDir The <code>String</code> directory
+	 * to search from.
+	 * @param extension The <code>String</code> file
+	 * extension to search for. <code>null</code> if
+	 * all file types should be retrieved.
+	 * @return The immutable <code>List</code> of all
+	 * matching <code>File</code> in the order of their
+	 * paths. <code>null</code> if the root is not a
+	 * directory.
+	 * @throws UncheckedIOException If indexing the root
+	 * failed.
+	 */
+	public List<File> getFiles(final String rootDir, final String extension) {
+		final Path root = Paths.get(rootDir).toAbsolutePath().normalize();
+		final String validExtension = FileUtils.instance.getValidExtension(extension);
+		synchronized (this.roots) {
+			if (this.closed) throw new IllegalStateException("Directory index is closed.");
+			RootIndex index = this.roots.get(root);
+			if (index != null && !index.stale) return index.getView(validExtension);
+			if (index != null) this.unregister(index);
+			if (!Files.isDirectory(root)) {
+				this.roots.remove(root);
+				return null;
+			}
+			if (index == null) {
+				index = new RootIndex(root);
+				this.roots.put(root, index);
+			}
+			try {
+				this.scan(index, root);
+			} catch (final WatchException e) {
+				// Too many directories to watch, thus walk the root without caching it.
+				this.unregister(index);
+				this.roots.remove(root);
+				return this.walk(root, extension);
+			} catch (final IOException e) {
+				this.unregister(index);
+				this.roots.remove(root);
+				throw new UncheckedIOException(e);
+			}
+			this.evict(index);
+			return index.getView(validExtension);
+		}
+	}
+
+	/**
+	 * Walk the given root without indexing it.
+	 * @param root The root directory <code>Path</code>.
+	 * @param extension The <code>String</code> file
+	 * extension to search for. <code>null</code> if
+	 * all file types should be retrieved.
+	 * @return The immutable <code>List</code> of all
+	 * matching <code>File</code> in the order of their
+	 * paths.
+	 * @throws UncheckedIOException If walking the root
+	 * failed.
+	 */
+	private List<File> walk(final Path root, final String extension) {
+		final List<File> files = FileUtils.instance.getFiles(root.toString(), extension);
+		if (files == null) return Collections.emptyList();
+		Collections.sort(files);
+		return Collections.unmodifiableList(files);
+	}
+
+	/**
+	 * Evict the least recently queried roots other than
+	 * the given one until the bounds are satisfied.
+	 * @param current The <code>RootIndex</code> to keep.
+	 * <code>null</code> if all roots may be evicted.
+	 */
+	private void evict(final RootIndex current) {
+		int total = 0;
+		for (final RootIndex index : this.roots.values()) total += index.files.size();
+		final Iterator<RootIndex> iterator = this.roots.values().iterator();
+		while (iterator.hasNext() && (this.roots.size() > this.maxRoots || total > this.maxFiles)) {
+			final RootIndex index = iterator.next();
+			if (index == current) continue;
+			total -= index.files.size();
+			this.unregister(index);
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Index the given directory and all of its
+	 * sub-directories into the given root. The directory
+	 * is registered before it is listed, so files created
+	 * in between are reported as events.
+	 * @param index The <code>RootIndex</code> to add to.
+	 * @param directory The directory <code>Path</code>.
+	 * @throws IOException If reading the directory
+	 * failed.
+	 */
+	private void scan(final RootIndex index, final Path directory) throws IOException {
+		this.register(index, directory);
+		DirectoryStream<Path> stream = null;
+		try {
+			stream = Files.newDirectoryStream(directory);
+			for (final Path path : stream) this.add(index, path);
+		} catch (final DirectoryIteratorException e) {
+			throw e.getCause();
+		} finally {
+			if (stream != null) stream.close();
+		}
+	}
+
+	/**
+	 * Add the given path to the given root, indexing it
+	 * if it is a directory. Hidden files and symbolic
+	 * links to directories are excluded.
+	 * @param index The <code>RootIndex</code> to add to.
+	 * @param path The <code>Path</code> to add.
+	 * @throws IOException If reading the path failed.
+	 */
+	private void add(final RootIndex index, final Path path) throws IOException {
+		try {
+			if (Files.isHidden(path)) return;
+			final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+			if (attributes.isDirectory()) this.scan(index, path);
+			else if (!attributes.isSymbolicLink() || !Files.isDirectory(path)) index.add(path);
+		} catch (final NoSuchFileException e) {
+			// Deleted concurrently, reported as an event.
+		}
+	}
+
+	/**
+	 * Remove the given path from the given root. If the
+	 * path is an indexed directory, all of its files and
+	 * sub-directories are removed.
+	 * @param index The <code>RootIndex</code> to remove
+	 * from.
+	 * @param path The <code>Path</code> to remove.
+	 */
+	private void remove(final RootIndex index, final Path path) {
+		if (index.remove(path) || !index.directories.contains(path)) return;
+		final Iterator<Path> directories = index.directories.iterator();
+		while (directories.hasNext()) {
+			final Path directory = directories.next();
+			if (!directory.startsWith(path)) continue;
+			directories.remove();
+			this.unwatch(index, directory);
+		}
+		final Iterator<Path> files = index.files.tailSet(path, false).iterator();
+		while (files.hasNext()) {
+			final Path file = files.next();
+			if (!file.startsWith(path)) continue;
+			files.remove();
+		}
+		index.views.clear();
+	}
+
+	/**
+	 * Register the given directory of the given root
+	 * with the watch service.
+	 * @param index The <code>RootIndex</code> the
+	 * directory belongs to.
+	 * @param directory The directory <code>Path</code>.
+	 * @throws WatchException If registering failed.
+	 */
+	private void register(final RootIndex index, final Path directory) throws WatchException {
+		Watch watch = this.watches.get(directory);
+		if (watch == null || !watch.key.isValid()) {
+			final WatchKey key;
+			try {
+				key = directory.register(this.service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+			} catch (final IOException e) {
+				throw new WatchException(directory, e);
+			}
+			// The same key is returned for a directory that is already registered.
+			if (watch == null || watch.key != key) {
+				watch = new Watch(key);
+				this.watches.put(directory, watch);
+			}
+		}
+		if (!watch.roots.contains(index)) watch.roots.add(index);
+		index.directories.add(directory);
+	}
+
+	/**
+	 * Unregister all the directories of the given root
+	 * and clear its files.
+	 * @param index The <code>RootIndex</code> to clear.
+	 */
+	private void unregister(final RootIndex index) {
+		for (final Path directory : index.directories) this.unwatch(index, directory);
+		index.directories.clear();
+		index.files.clear();
+		index.views.clear();
+		index.stale = false;
+	}
+
+	/**
+	 * Stop watching the given directory for the given
+	 * root, cancelling the watch if no other root uses
+	 * the directory.
+	 * @param index The <code>RootIndex</code> that no
+	 * longer uses the directory.
+	 * @param directory The directory <code>Path</code>.
+	 */
+	private void unwatch(final RootIndex index, final Path directory) {
+		final Watch watch = this.watches.get(directory);
+		if (watch == null) return;
+		watch.roots.remove(index);
+		if (!watch.roots.isEmpty()) return;
+		this.watches.remove(directory);
+		watch.key.cancel();
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (true) {
+				final WatchKey key = this.service.take();
+				final Path directory = (Path)key.watchable();
+				final List<WatchEvent<?>> events = key.pollEvents();
+				synchronized (this.roots) {
+					final Watch watch = this.watches.get(directory);
+					if (watch == null || watch.key != key) continue;
+					final List<RootIndex> indices = new ArrayList<RootIndex>(watch.roots);
+					for (final RootIndex index : indices) this.apply(index, directory, events);
+					this.evict(this.getMostRecent());
+					if (!key.reset()) {
+						// The directory is gone. Its removal is reported to the parent,
+						// unless it is the root itself.
+						this.watches.remove(directory);
+						for (final RootIndex index : indices) {
+							index.directories.remove(directory);
+							if (index.root.equals(directory)) index.stale = true;
+						}
+					}
+				}
+			}
+		} catch (final InterruptedException e) {
+			// Closed.
+		} catch (final ClosedWatchServiceException e) {
+			// Closed.
+		}
+	}
+
+	/**
+	 * Retrieve the most recently queried root.
+	 * @return The <code>RootIndex</code>. <code>null</code>
+	 * if there are no roots.
+	 */
+	private RootIndex getMostRecent() {
+		RootIndex recent = null;
+		for (final RootIndex index : this.roots.values()) recent = index;
+		return recent;
+	}
+
+	/**
+	 * Apply the given events of the given directory to
+	 * the given root. The root is marked stale to be
+	 * rebuilt on its next query if the events overflowed
+	 * or could not be applied.
+	 * @param index The <code>RootIndex</code> to update.
+	 * @param directory The directory <code>Path</code>
+	 * the events are from.
+	 * @param events The <code>List</code> of
+	 * <code>WatchEvent</code>.
+	 */
+	private void apply(final RootIndex index, final Path directory, final List<WatchEvent<?>> events) {
+		if (index.stale) return;
+		for (final WatchEvent<?> event : events) {
+			final WatchEvent.Kind<?> kind = event.kind();
+			if (kind == StandardWatchEventKinds.OVERFLOW) {
+				index.stale = true;
+				return;
+			}
+			final Path path = directory.resolve((Path)event.context());
+			try {
+				if (kind == StandardWatchEventKinds.ENTRY_CREATE) this.add(index, path);
+				else if (kind == StandardWatchEventKinds.ENTRY_DELETE) this.remove(index, path);
+			} catch (final IOException e) {
+				index.stale = true;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Close the index, stopping the daemon thread and
+	 * releasing all the watches.
+	 * @throws IOException If closing the watch service
+	 * failed.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (this.roots) {
+			if (this.closed) return;
+			this.closed = true;
+			this.roots.clear();
+			this.watches.clear();
+		}
+		this.thread.interrupt();
+		this.service.close();
+	}
+
+	/**
+	 * <code>RootIndex</code> defines the cached state of
+	 * a single indexed root.
+	 */
+	private static final class RootIndex {
+		/**
+		 * The root directory <code>Path</code>.
+		 */
+		private final Path root;
+		/**
+		 * The <code>TreeSet</code> of all the indexed file
+		 * <code>Path</code>.
+		 */
+		private final TreeSet<Path> files;
+		/**
+		 * The <code>Set</code> of all the watched directory
+		 * <code>Path</code>.
+		 */
+		private final Set<Path> directories;
+		/**
+		 * The <code>Map</code> of the valid extension
+		 * <code>String</code> to the cached immutable
+		 * <code>List</code> of matching <code>File</code>.
+		 */
+		private final Map<String, List<File>> views;
+		/**
+		 * The <code>boolean</code> flag indicating if the
+		 * index must be rebuilt before its next query.
+		 */
+		private boolean stale;
+
+		/**
+		 * Constructor of <code>RootIndex</code>.
+		 * @param root The root directory <code>Path</code>.
+		 */
+		private RootIndex(final Path root) {
+			this.root = root;
+			this.files = new TreeSet<Path>();
+			this.directories = new HashSet<Path>();
+			this.views = new HashMap<String, List<File>>();
+		}
+
+		/**
+		 * Add the given file.
+		 * @param file The file <code>Path</code>.
+		 */
+		private void add(final Path file) {
+			if (this.files.add(file)) this.views.clear();
+		}
+
+		/**
+		 * Remove the given file.
+		 * @param file The file <code>Path</code>.
+		 * @return <code>true</code> if the file was indexed.
+		 * <code>false</code> otherwise.
+		 */
+		private boolean remove(final Path file) {
+			if (!this.files.remove(file)) return false;
+			this.views.clear();
+			return true;
+		}
+
+		/**
+		 * Retrieve the cached listing of the files with
+		 * the given extension, building it if needed.
+		 * @param extension The valid extension
+		 * <code>String</code>. Empty for all files.
+		 * @return The immutable <code>List</code> of
+		 * <code>File</code>.
+		 */
+		private List<File> getView(final String extension) {
+			List<File> view = this.views.get(extension);
+			if (view != null) return view;
+			final Predicate<Path> filter = extension.isEmpty() ? null : FileUtils.instance.extensionFilter(extension);
+			final List<File> files = new ArrayList<File>();
+			for (final Path file : this.files) {
+				if (filter == null || filter.test(file)) files.add(file.toFile());
+			}
+			view = Collections.unmodifiableList(files);
+			this.views.put(extension, view);
+			return view;
+		}
+	}
+
+	/**
+	 * <code>WatchException</code> defines the exception
+	 * thrown when a directory cannot be registered with
+	 * the watch service.
+	 */
+	private static final class WatchException extends IOException {
+		/**
+		 * The <code>long</code> serial version ID.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Constructor of <code>WatchException</code>.
+		 * @param directory The directory <code>Path</code>.
+		 * @param cause The <code>IOException</code> cause.
+		 */
+		private WatchException(final Path directory, final IOException cause) {
+			super("Failed to watch directory: " + directory, cause);
+		}
+	}
+
+	/**
+	 * <code>Watch</code> defines the registration of a
+	 * directory that may be shared by nested roots.
+	 */
+	private static final class Watch {
+		/**
+		 * The <code>WatchKey</code> of the directory.
+		 */
+		private final WatchKey key;
+		/**
+		 * The <code>List</code> of <code>RootIndex</code>
+		 * that contain the directory.
+		 */
+		private final List<RootIndex> roots;
+
+		/**
+		 * Constructor of <code>Watch</code>.
+		 * @param key The <code>WatchKey</code> of the
+		 * directory.
+		 */
+		private Watch(final WatchKey key) {
+			this.key = key;
+			this.roots = new ArrayList<RootIndex>(1);
+		}
+	}
+}
@@ -1,31 +1,79 @@
 package hemera.core.utility;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
-import java.util.jar.JarInputStream;
-import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.util.zip.ZipEntry;
 
+import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
@@ -36,6 +84,8 @@ import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 
 /**
@@ -43,7 +93,7 @@ import org.xml.sax.SAXException;
  * that provides various file operation methods.
  *
  * @author Yi Wang (Neakor)
- * @version 1.0.0
+ * @version 1.0.11
  */
 public enum FileUtils {
 	/**
@@ -51,25 +101,102 @@ public enum FileUtils {
 	 */
 	instance;
 
+	/**
+	 * The <code>int</code> default number of threads
+	 * used to process directory trees in parallel.
+	 */
+	static final int DefaultParallelism = Math.max(4, Runtime.getRuntime().availableProcessors());
+	/**
+	 * The <code>int</code> number of files processed by
+	 * a single parallel task.
+	 */
+	private static final int BatchSize = 64;
+	/**
+	 * The <code>long</code> number of compressed bytes
+	 * extracted by a single parallel task.
+	 */
+	private static final long ExtractBatchSize = 1048576;
+	/**
+	 * The <code>int</code> maximum number of bytes read
+	 * from a file channel at once.
+	 */
+	private static final int ReadChunkSize = 262144;
+	/**
+	 * The <code>int</code> maximum length of an array
+	 * that can be allocated.
+	 */
+	private static final int MaxArraySize = Integer.MAX_VALUE - 8;
+	/**
+	 * The <code>DocumentBuilderFactory</code> shared by
+	 * all the document builders.
+	 */
+	private static final DocumentBuilderFactory DocumentFactory = DocumentBuilderFactory.newInstance();
+	/**
+	 * The <code>ThreadLocal</code> idle
+	 * <code>DocumentBuilder</code> of each thread.
+	 */
+	private static final ThreadLocal<DocumentBuilder> DocumentBuilders = new ThreadLocal<DocumentBuilder>();
+	/**
+	 * The <code>XMLInputFactory</code> shared by all
+	 * the streaming readers.
+	 */
+	private static final XMLInputFactory StreamFactory = FileUtils.newStreamFactory();
+	/**
+	 * The <code>XMLOutputFactory</code> shared by all
+	 * the streaming writers.
+	 */
+	private static final XMLOutputFactory StreamWriterFactory = XMLOutputFactory.newInstance();
+	/**
+	 * The <code>TransformerFactory</code> shared by all
+	 * the transformers.
+	 */
+	private static final TransformerFactory TransformFactory = TransformerFactory.newInstance();
+	/**
+	 * The <code>ThreadLocal</code> idle
+	 * <code>Transformer</code> of each thread.
+	 */
+	private static final ThreadLocal<Transformer> Transformers = new ThreadLocal<Transformer>();
+
 	/**
 	 * Delete the target. If the target is a directory,
 	 * all the children directories and files are also
-	 * deleted.
+	 * deleted in parallel.
 	 * @param target The <code>String</code> target.
 	 * @return <code>true</code> if target is deleted.
 	 * <code>false</code> otherwise.
 	 */
 	public boolean delete(final String target) {
-		final File file = new File(target);
-		if (!file.exists()) return false;
-		if (file.isDirectory()) {
-			final String[] children = file.list();
-			for (int i = 0; i < children.length; i++) {
-				boolean success = this.delete(new File(target, children[i]).getAbsolutePath());
-				if (!success) return false;
-			}
+		try {
+			return this.delete(target, FileUtils.DefaultParallelism);
+		} catch (final IOException e) {
+			return false;
 		}
-		return file.delete();
+	}
+
+	/**
+	 * Delete the target. If the target is a directory,
+	 * all the children directories and files are also
+	 * deleted, processing the sub-trees in parallel.
+	 * Symbolic links are deleted without following them.
+	 * <p>
+	 * Failures do not stop the deletion of the rest of
+	 * the tree, and are reported together once all the
+	 * deletions complete.
+	 * @param target The <code>String</code> target.
+	 * @param parallelism The <code>int</code> number of
+	 * threads to use.
+	 * @return <code>true</code> if target is deleted.
+	 * <code>false</code> if it does not exist.
+	 * @throws IOException If deleting any file failed,
+	 * with each failure as a suppressed exception.
+	 */
+	public boolean delete(final String target, final int parallelism) throws IOException {
+		final File file = new File(target);
+		if (!Files.exists(file.toPath(), LinkOption.NOFOLLOW_LINKS)) return false;
+		final Queue<IOException> failures = new ConcurrentLinkedQueue<IOException>();
+		this.invoke(new DeleteTask(file, failures), parallelism);
+		FileUtils.checkFailures("Failed to delete " + target, failures);
+		return true;
 	}
 
 	/**
@@ -81,22 +208,191 @@ public enum FileUtils {
 	 * @throws IOException If copying file failed.
 	 */
 	public void copyFile(final File src, final File target) throws IOException {
-		final InputStream input = new FileInputStream(src);
-		final OutputStream output = new FileOutputStream(target); 
-		final byte[] buffer = new byte[8192];
+		this.copyFile(src, target, false);
+	}
+
+	/**
+	 * Copy the source file to the target file.
+	 * <p>
+	 * Regular files are copied by transferring between
+	 * file channels, which allows the operating system
+	 * to copy the contents without moving them through
+	 * the heap. Other sources such as devices and pipes
+	 * are copied as streams.
+	 * @param src The source <code>File</code> to copy.
+	 * @param target The target <code>File</code> to
+	 * copy to. This is not the target directory, but
+	 * the actual file.
+	 * @param preserve <code>true</code> if the time
+	 * stamps and the permissions of the source should
+	 * be copied to the target.
+	 * @throws IOException If copying file failed.
+	 */
+	public void copyFile(final File src, final File target, final boolean preserve) throws IOException {
+		if (src.isFile()) {
+			FileChannel input = null;
+			FileChannel output = null;
+			try {
+				input = FileChannel.open(src.toPath(), StandardOpenOption.READ);
+				output = FileChannel.open(target.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+						StandardOpenOption.TRUNCATE_EXISTING);
+				FileUtils.transfer(input, 0, output);
+			} finally {
+				try {
+					if (output != null) output.close();
+				} finally {
+					if (input != null) input.close();
+				}
+			}
+		} else {
+			// Devices and pipes cannot be positioned, thus they are read as streams.
+			InputStream input = null;
+			OutputStream output = null;
+			try {
+				input = new FileInputStream(src);
+				output = new FileOutputStream(target);
+				FileUtils.write(input, output);
+			} finally {
+				try {
+					if (output != null) output.close();
+				} finally {
+					if (input != null) input.close();
+				}
+			}
+		}
+		if (preserve) this.copyAttributes(src.toPath(), target.toPath());
+	}
+
+	/**
+	 * Copy the remaining contents of the given stream to
+	 * the target file. If the stream is a stream of a
+	 * regular file, the contents are transferred between
+	 * channels. The stream is not closed.
+	 * @param input The <code>InputStream</code> to copy.
+	 * @param target The target <code>File</code> to
+	 * copy to. Existing contents are over-written.
+	 * @return The <code>long</code> number of bytes
+	 * copied.
+	 * @throws IOException If copying failed.
+	 */
+	public long copy(final InputStream input, final File target) throws IOException {
+		FileOutputStream output = null;
+		try {
+			output = new FileOutputStream(target);
+			if (input instanceof FileInputStream) {
+				final FileChannel channel = ((FileInputStream)input).getChannel();
+				final long start = FileUtils.getPosition(channel);
+				// Only regular files can be positioned.
+				if (start >= 0) return FileUtils.transfer(channel, start, output.getChannel()) - start;
+			}
+			return FileUtils.write(input, output);
+		} finally {
+			if (output != null) output.close();
+		}
+	}
+
+	/**
+	 * Retrieve the position of the given channel.
+	 * @param channel The <code>FileChannel</code>.
+	 * @return The <code>long</code> position. <code>-1</code>
+	 * if the channel cannot be positioned, such as a
+	 * channel of a pipe.
+	 */
+	private static long getPosition(final FileChannel channel) {
+		try {
+			return channel.position();
+		} catch (final IOException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Transfer the contents of the input channel from
+	 * the given position to the current position of the
+	 * output channel. The contents of the reported size
+	 * are transferred directly, and the rest is read
+	 * until the end, since files such as the ones of
+	 * procfs report no size and files may grow
+	 * concurrently. The input channel is left at the end.
+	 * @param input The <code>FileChannel</code> of a
+	 * regular file to transfer from.
+	 * @param start The <code>long</code> position to
+	 * start at.
+	 * @param output The <code>FileChannel</code> to
+	 * transfer to.
+	 * @return The <code>long</code> end position of the
+	 * input channel.
+	 * @throws IOException If transferring failed.
+	 */
+	private static long transfer(final FileChannel input, final long start, final FileChannel output) throws IOException {
+		final long size = input.size();
+		long position = start;
+		while (position < size) {
+			final long count = input.transferTo(position, size-position, output);
+			// Source is truncated concurrently, or reports a wrong size.
+			if (count <= 0) break;
+			position += count;
+		}
+		input.position(position);
+		final ByteBuffer buffer = ByteBuffer.allocate(8192);
+		while (input.read(buffer) >= 0) {
+			buffer.flip();
+			while (buffer.hasRemaining()) output.write(buffer);
+			buffer.clear();
+		}
+		return input.position();
+	}
+
+	/**
+	 * Write the remaining contents of the given input
+	 * stream to the output stream. Neither stream is
+	 * closed.
+	 * @param input The <code>InputStream</code> to read.
+	 * @param output The <code>OutputStream</code> to
+	 * write to.
+	 * @return The <code>long</code> number of bytes
+	 * written.
+	 * @throws IOException If reading or writing failed.
+	 */
+	private static long write(final InputStream input, final OutputStream output) throws IOException {
+		final byte[] buffer = new byte[65536];
+		long total = 0;
 		while (true) {
 			final int count = input.read(buffer);
-			if (count <= 0) break;
-			else output.write(buffer, 0, count);
+			if (count < 0) break;
+			output.write(buffer, 0, count);
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * Copy the time stamps and the permissions of the
+	 * source to the target, as far as the file system
+	 * supports them.
+	 * @param src The source <code>Path</code>.
+	 * @param target The target <code>Path</code>.
+	 * @throws IOException If reading or writing the
+	 * attributes failed.
+	 */
+	private void copyAttributes(final Path src, final Path target) throws IOException {
+		final BasicFileAttributes attributes = Files.readAttributes(src, BasicFileAttributes.class);
+		final PosixFileAttributeView srcPosix = Files.getFileAttributeView(src, PosixFileAttributeView.class);
+		final PosixFileAttributeView targetPosix = Files.getFileAttributeView(target, PosixFileAttributeView.class);
+		if (srcPosix != null && targetPosix != null) {
+			targetPosix.setPermissions(srcPosix.readAttributes().permissions());
+		} else {
+			target.toFile().setWritable(src.toFile().canWrite());
 		}
-		input.close();
-		output.close();
+		Files.getFileAttributeView(target, BasicFileAttributeView.class).setTimes(attributes.lastModifiedTime(),
+				attributes.lastAccessTime(), attributes.creationTime());
 	}
 
 	/**
 	 * Copy the contents and the structure of the source
 	 * directory to the target location only including
-	 * the files with specified extension.
+	 * the files with specified extension. Sub-trees are
+	 * copied in parallel.
 	 * @param srcPath The <code>String</code> path to
 	 * the source to be copied.
 	 * @param targetPath The <code>String</code> path to
@@ -104,79 +400,476 @@ public enum FileUtils {
 	 * @param extension The <code>String</code> extension
 	 * to check. <code>null</code> if all files should be
 	 * included.
-	 * @throws IOException If file processing failed.
+	 * @throws IOException If file processing failed,
+	 * with each failure as a suppressed exception.
 	 */
 	public void copyFolder(final String srcPath, final String targetPath, final String extension) throws IOException{
+		this.copyFolder(srcPath, targetPath, extension, FileUtils.DefaultParallelism);
+	}
+
+	/**
+	 * Copy the contents and the structure of the source
+	 * directory to the target location only including
+	 * the files with specified extension, processing
+	 * the sub-trees in parallel.
+	 * <p>
+	 * Failures do not stop the copying of the rest of
+	 * the tree, and are reported together once all the
+	 * copies complete.
+	 * @param srcPath The <code>String</code> path to
+	 * the source to be copied.
+	 * @param targetPath The <code>String</code> path to
+	 * the target to copy to.
+	 * @param extension The <code>String</code> extension
+	 * to check. <code>null</code> if all files should be
+	 * included.
+	 * @param parallelism The <code>int</code> number of
+	 * threads to use.
+	 * @throws IOException If file processing failed,
+	 * with each failure as a suppressed exception.
+	 */
+	public void copyFolder(final String srcPath, final String targetPath, final String extension, final int parallelism) throws IOException{
 		final File src = new File(srcPath);
 		final File target = new File(targetPath);
-		// If source is a directory iterate all of the contents.
-		if (src.isDirectory()){
-			if (!target.exists()) target.mkdirs();
-			final String files[] = src.list();
-			for (int i = 0; i < files.length; i++) {
-				final File srcFile = new File(src, files[i]);
-				final File destFile = new File(target, files[i]);
-				this.copyFolder(srcFile.getAbsolutePath(), destFile.getAbsolutePath(), extension);
-			}
-		}
+		final String validExtension = this.getValidExtension(extension);
 		// If source is a file, copy the file.
-		else {
-			// Check extension.
-			final String validExtension = this.getValidExtension(extension);
-			final String srcName = src.getName();
-			if (!srcName.toLowerCase().endsWith(validExtension)) return;
-			// Copy.
+		if (!src.isDirectory()) {
+			if (!src.getName().toLowerCase().endsWith(validExtension)) return;
 			this.copyFile(src, target);
+			return;
+		}
+		// Otherwise copy all of the contents.
+		final Queue<IOException> failures = new ConcurrentLinkedQueue<IOException>();
+		this.invoke(new CopyTask(src, target, validExtension, failures), parallelism);
+		FileUtils.checkFailures("Failed to copy " + srcPath, failures);
+	}
+
+	/**
+	 * Synchronize the target directory with the source
+	 * directory only including the files with specified
+	 * extension, copying only the files that are new or
+	 * whose sizes or modification times differ. Extra
+	 * files in the target are kept. Sub-trees are
+	 * synchronized in parallel.
+	 * @param srcPath The <code>String</code> path to
+	 * the source to be copied.
+	 * @param targetPath The <code>String</code> path to
+	 * the target to copy to.
+	 * @param extension The <code>String</code> extension
+	 * to check. <code>null</code> if all files should be
+	 * included.
+	 * @return The <code>SyncReport</code> of the changes.
+	 * @throws IOException If file processing failed,
+	 * with each failure as a suppressed exception.
+	 */
+	public SyncReport syncFolder(final String srcPath, final String targetPath, final String extension) throws IOException {
+		return this.syncFolder(srcPath, targetPath, extension, false, false, FileUtils.DefaultParallelism);
+	}
+
+	/**
+	 * Synchronize the target directory with the source
+	 * directory only including the files with specified
+	 * extension, processing the sub-trees in parallel.
+	 * <p>
+	 * A file is copied only if it is new, or if its size
+	 * differs from the target file. Otherwise, by default
+	 * the file is copied if its modification time differs.
+	 * If contents are compared, the file is copied if its
+	 * contents differ instead, and the modification time
+	 * of an identical target file is updated. Copied
+	 * files keep the time stamps and the permissions of
+	 * the source files, thus they are skipped by the next
+	 * synchronization.
+	 * <p>
+	 * If extra files are deleted, target files with the
+	 * specified extension that are not in the source are
+	 * deleted, as well as target directories that are not
+	 * in the source once they are empty. Target files
+	 * and directories that are replaced by entries of the
+	 * other type in the source are also only deleted in
+	 * this mode, and reported as failures otherwise.
+	 * <p>
+	 * Failures do not stop the synchronization of the
+	 * rest of the tree, and are reported together once
+	 * all the changes complete.
+	 * @param srcPath The <code>String</code> path to
+	 * the source to be copied.
+	 * @param targetPath The <code>String</code> path to
+	 * the target to copy to.
+	 * @param extension The <code>String</code> extension
+	 * to check. <code>null</code> if all files should be
+	 * included.
+	 * @param compareContents <code>true</code> if the
+	 * contents of files of the same size are compared
+	 * instead of their modification times.
+	 * @param deleteExtra <code>true</code> if the target
+	 * files that are not in the source are deleted.
+	 * @param parallelism The <code>int</code> number of
+	 * threads to use.
+	 * @return The <code>SyncReport</code> of the changes.
+	 * @throws IOException If file processing failed,
+	 * with each failure as a suppressed exception.
+	 */
+	public SyncReport syncFolder(final String srcPath, final String targetPath, final String extension, final boolean compareContents,
+			final boolean deleteExtra, final int parallelism) throws IOException {
+		final File src = new File(srcPath);
+		final File target = new File(targetPath);
+		if (!src.exists()) throw new NoSuchFileException(srcPath);
+		final SyncContext context = new SyncContext(this.getValidExtension(extension), compareContents, deleteExtra);
+		// If source is a file, synchronize the file.
+		if (!src.isDirectory()) {
+			if (src.getName().toLowerCase().endsWith(context.extension)) this.sync(src, target, context);
+		} else {
+			this.invoke(new SyncTask(src, target, context), parallelism);
+		}
+		FileUtils.checkFailures("Failed to sync " + srcPath, context.failures);
+		return context.toReport();
+	}
+
+	/**
+	 * Synchronize the target file with the source file.
+	 * @param src The source <code>File</code>.
+	 * @param target The target <code>File</code>.
+	 * @param context The <code>SyncContext</code> to
+	 * record the changes and failures in.
+	 */
+	private void sync(final File src, final File target, final SyncContext context) {
+		try {
+			final Path targetPath = target.toPath();
+			if (Files.isDirectory(targetPath, LinkOption.NOFOLLOW_LINKS)) {
+				if (!context.deleteExtra) throw new IOException("Target is a directory: " + target);
+				if (!new DeleteTask(target, context.failures).invoke()) return;
+				context.deleted.add(target);
+			} else if (Files.isSymbolicLink(targetPath)) {
+				// Replace the link instead of writing through it.
+				Files.delete(targetPath);
+			} else if (this.isSynced(src, target, context.compareContents)) {
+				context.unchangedCount.incrementAndGet();
+				return;
+			}
+			this.copyFile(src, target, true);
+			context.copied.add(target);
+		} catch (final IOException e) {
+			context.failures.add(e);
+		}
+	}
+
+	/**
+	 * Check if the target file is already synchronized
+	 * with the source file. If contents are compared and
+	 * they are identical, the modification time of the
+	 * target is updated to the one of the source.
+	 * @param src The source <code>File</code>.
+	 * @param target The target <code>File</code>.
+	 * @param compareContents <code>true</code> if the
+	 * contents are compared instead of the modification
+	 * times.
+	 * @return <code>true</code> if the target does not
+	 * need to be copied. <code>false</code> otherwise.
+	 * @throws IOException If reading either file failed.
+	 */
+	private boolean isSynced(final File src, final File target, final boolean compareContents) throws IOException {
+		final BasicFileAttributes srcAttributes = Files.readAttributes(src.toPath(), BasicFileAttributes.class);
+		final BasicFileAttributes targetAttributes;
+		try {
+			targetAttributes = Files.readAttributes(target.toPath(), BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+		} catch (final NoSuchFileException e) {
+			return false;
+		}
+		if (!targetAttributes.isRegularFile() || srcAttributes.size() != targetAttributes.size()) return false;
+		// Compare in milliseconds since file systems store times in different precisions.
+		final boolean sameTime = (srcAttributes.lastModifiedTime().toMillis() == targetAttributes.lastModifiedTime().toMillis());
+		if (!compareContents) return sameTime;
+		if (!this.contentEquals(src, target)) return false;
+		// Align the time so that synchronizations by modification time also skip the file.
+		if (!sameTime) Files.setLastModifiedTime(target.toPath(), srcAttributes.lastModifiedTime());
+		return true;
+	}
+
+	/**
+	 * Check if the given files have identical contents,
+	 * reading them in chunks until the first difference.
+	 * @param first The first <code>File</code>.
+	 * @param second The second <code>File</code>.
+	 * @return <code>true</code> if the contents are
+	 * identical. <code>false</code> otherwise.
+	 * @throws IOException If reading either file failed.
+	 */
+	private boolean contentEquals(final File first, final File second) throws IOException {
+		FileChannel firstChannel = null;
+		FileChannel secondChannel = null;
+		try {
+			firstChannel = FileChannel.open(first.toPath(), StandardOpenOption.READ);
+			secondChannel = FileChannel.open(second.toPath(), StandardOpenOption.READ);
+			final ByteBuffer firstBuffer = ByteBuffer.allocate(65536);
+			final ByteBuffer secondBuffer = ByteBuffer.allocate(65536);
+			while (true) {
+				FileUtils.fill(firstChannel, firstBuffer);
+				FileUtils.fill(secondChannel, secondBuffer);
+				if (!firstBuffer.equals(secondBuffer)) return false;
+				// A partially filled buffer is the end of both files.
+				if (firstBuffer.limit() < firstBuffer.capacity()) return true;
+			}
+		} finally {
+			try {
+				if (secondChannel != null) secondChannel.close();
+			} finally {
+				if (firstChannel != null) firstChannel.close();
+			}
 		}
 	}
 
+	/**
+	 * Fill the given buffer from the channel until it is
+	 * full or the end of the channel is reached, and
+	 * flip the buffer for reading.
+	 * @param channel The <code>FileChannel</code> to
+	 * read from.
+	 * @param buffer The <code>ByteBuffer</code> to fill.
+	 * @throws IOException If reading failed.
+	 */
+	private static void fill(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+		buffer.clear();
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) break;
+		}
+		buffer.flip();
+	}
+
+	/**
+	 * Invoke the given task in a new pool with the
+	 * given parallelism, and shut down the pool once
+	 * the task completes.
+	 * @param task The <code>ForkJoinTask</code> to invoke.
+	 * @param parallelism The <code>int</code> number of
+	 * threads of the pool.
+	 */
+	private void invoke(final ForkJoinTask<?> task, final int parallelism) {
+		final ForkJoinPool pool = new ForkJoinPool(Math.max(parallelism, 1));
+		try {
+			pool.invoke(task);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Throw an exception with all the given failures
+	 * suppressed if there are any.
+	 * @param message The <code>String</code> message.
+	 * @param failures The <code>Queue</code> of all the
+	 * <code>IOException</code> failures.
+	 * @throws IOException If there are any failures.
+	 */
+	private static void checkFailures(final String message, final Queue<IOException> failures) throws IOException {
+		if (failures.isEmpty()) return;
+		final IOException exception = new IOException(message + " with " + failures.size() + " failures.");
+		for (final IOException failure : failures) exception.addSuppressed(failure);
+		throw exception;
+	}
+
 	/**
 	 * Read the contents of the file as a single string
-	 * value.
+	 * value, decoded with the platform default charset.
 	 * @param file The <code>File</code> to read.
 	 * @return The <code>String</code> of the file
 	 * contents.
 	 * @throws IOException If any file processing failed.
 	 */
 	public String readAsString(final File file) throws IOException {
-		return this.readAsString(new FileReader(file));
+		return this.readAsString(file, Charset.defaultCharset());
+	}
+
+	/**
+	 * Read the contents of the file as a single string
+	 * value. The contents are read into an array sized
+	 * from the file length, and decoded in one pass.
+	 * Malformed input is replaced.
+	 * @param file The <code>File</code> to read.
+	 * @param charset The <code>Charset</code> to decode
+	 * the contents with.
+	 * @return The <code>String</code> of the file
+	 * contents.
+	 * @throws IOException If any file processing failed.
+	 */
+	public String readAsString(final File file, final Charset charset) throws IOException {
+		return new String(this.readAsBytes(file), charset);
 	}
 
 	/**
 	 * Read the contents of the given reader as a string.
+	 * The reader is closed afterwards.
 	 * @param reader The <code>Reader</code> to read.
 	 * @return The <code>String</code> contents.
 	 * @throws IOException If any reading failed.
 	 */
 	public String readAsString(final Reader reader) throws IOException {
-		BufferedReader input = null;
-		final StringBuilder builder = new StringBuilder();
+		final StringBuilder builder = new StringBuilder(8192);
 		try {
-			input = new BufferedReader(reader);
-			final char[] buffer = new char[1024];
+			final char[] buffer = new char[8192];
 			while (true) {
-				final int count = input.read(buffer);
-				if (count <= 0) break;
-				else {
-					final String str = String.valueOf(buffer, 0, count);
-					builder.append(str);
-				}
+				final int count = reader.read(buffer);
+				if (count < 0) break;
+				builder.append(buffer, 0, count);
 			}
 		} finally {
-			if (input != null) input.close();
+			reader.close();
 		}
 		return builder.toString();
 	}
 
 	/**
-	 * Read the given stream contents as a string.
+	 * Read the given stream contents as a string,
+	 * decoded with the platform default charset. The
+	 * stream is closed afterwards.
 	 * @param stream The <code>InputStream</code>
 	 * to read from.
 	 * @return The <code>String</code> contents.
 	 * @throws IOException If any IO error occurred.
 	 */
 	public String readAsString(final InputStream stream) throws IOException {
-		return this.readAsString(new InputStreamReader(stream));
+		return this.readAsString(stream, Charset.defaultCharset());
+	}
+
+	/**
+	 * Read the given stream contents as a string. The
+	 * stream is closed afterwards.
+	 * @param stream The <code>InputStream</code>
+	 * to read from.
+	 * @param charset The <code>Charset</code> to decode
+	 * the contents with.
+	 * @return The <code>String</code> contents.
+	 * @throws IOException If any IO error occurred.
+	 */
+	public String readAsString(final InputStream stream, final Charset charset) throws IOException {
+		return new String(this.readAsBytes(stream), charset);
+	}
+
+	/**
+	 * Read the contents of the file as bytes. The array
+	 * is sized from the file length, and filled from the
+	 * file channel in bounded chunks. Files whose length
+	 * is not known up front, such as special files, are
+	 * read until the end.
+	 * @param file The <code>File</code> to read.
+	 * @return The <code>byte</code> array of the file
+	 * contents.
+	 * @throws IOException If any file processing failed,
+	 * or the file is larger than an array can hold.
+	 */
+	public byte[] readAsBytes(final File file) throws IOException {
+		FileChannel channel = null;
+		try {
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			final long size = channel.size();
+			if (size > FileUtils.MaxArraySize) throw new IOException("File is too large to read: " + file);
+			final byte[] bytes = new byte[(int)size];
+			final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			while (buffer.hasRemaining()) {
+				// Bound the temporary direct buffer used by the channel.
+				buffer.limit(Math.min(bytes.length, buffer.position()+FileUtils.ReadChunkSize));
+				if (channel.read(buffer) < 0) break;
+				buffer.limit(bytes.length);
+			}
+			// Truncated concurrently.
+			if (buffer.position() < bytes.length) return Arrays.copyOf(bytes, buffer.position());
+			// Grown concurrently or of unknown length.
+			final int next = Channels.newInputStream(channel).read();
+			if (next < 0) return bytes;
+			if (bytes.length >= FileUtils.MaxArraySize) throw new IOException("File is too large to read: " + file);
+			final byte[] grown = Arrays.copyOf(bytes, (int)Math.min(FileUtils.MaxArraySize, Math.max(8192L, bytes.length*2L)));
+			grown[bytes.length] = (byte)next;
+			return FileUtils.readFully(Channels.newInputStream(channel), grown, bytes.length+1);
+		} finally {
+			if (channel != null) channel.close();
+		}
+	}
+
+	/**
+	 * Read the given stream contents as bytes. The
+	 * stream is closed afterwards.
+	 * @param stream The <code>InputStream</code>
+	 * to read from.
+	 * @return The <code>byte</code> array of the
+	 * contents.
+	 * @throws IOException If any IO error occurred.
+	 */
+	public byte[] readAsBytes(final InputStream stream) throws IOException {
+		try {
+			return FileUtils.readFully(stream, new byte[8192], 0);
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Read the remaining contents of the given stream
+	 * into the given array, growing it as needed.
+	 * @param stream The <code>InputStream</code>
+	 * to read from.
+	 * @param buffer The <code>byte</code> array to
+	 * read into.
+	 * @param offset The <code>int</code> number of
+	 * bytes already in the array.
+	 * @return The <code>byte</code> array of exactly
+	 * the contents.
+	 * @throws IOException If any IO error occurred, or
+	 * the contents are larger than an array can hold.
+	 */
+	private static byte[] readFully(final InputStream stream, final byte[] buffer, final int offset) throws IOException {
+		byte[] bytes = buffer;
+		int count = offset;
+		while (true) {
+			if (count == bytes.length) {
+				if (count >= FileUtils.MaxArraySize) throw new IOException("Contents are too large to read.");
+				bytes = Arrays.copyOf(bytes, (int)Math.min(FileUtils.MaxArraySize, Math.max(8192L, count*2L)));
+			}
+			final int read = stream.read(bytes, count, bytes.length-count);
+			if (read < 0) break;
+			count += read;
+		}
+		return (count == bytes.length) ? bytes : Arrays.copyOf(bytes, count);
+	}
+
+	/**
+	 * Map the contents of the file into memory as a
+	 * read-only character sequence.
+	 * <p>
+	 * For <code>ISO-8859-1</code>, the sequence is a
+	 * view that reads the characters directly from the
+	 * mapped memory, thus the contents are never copied
+	 * onto the heap. For other charsets, the mapped
+	 * memory is decoded once into a character buffer
+	 * without an intermediate byte array, and malformed
+	 * input is replaced.
+	 * <p>
+	 * The mapping is released once the sequence is
+	 * garbage collected. Modifying the file while it is
+	 * mapped changes the contents of the view.
+	 * @param file The <code>File</code> to map.
+	 * @param charset The <code>Charset</code> of the
+	 * contents.
+	 * @return The <code>CharSequence</code> of the
+	 * file contents.
+	 * @throws IOException If any file processing failed,
+	 * or the file is larger than a mapping can hold.
+	 */
+	public CharSequence mapAsCharSequence(final File file, final Charset charset) throws IOException {
+		final MappedByteBuffer buffer;
+		FileChannel channel = null;
+		try {
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			final long size = channel.size();
+			if (size > Integer.MAX_VALUE) throw new IOException("File is too large to map: " + file);
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		} finally {
+			// The mapping remains valid after the channel is closed.
+			if (channel != null) channel.close();
+		}
+		if (StandardCharsets.ISO_8859_1.equals(charset)) return new Latin1Sequence(buffer);
+		final CharBuffer chars = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE).decode(buffer);
+		return chars.asReadOnlyBuffer();
 	}
 
 	/**
@@ -190,12 +883,19 @@ public enum FileUtils {
 	 * parsing file failed.
 	 */
 	public Document readAsDocument(final File file) throws IOException, SAXException, ParserConfigurationException {
-		return this.readAsDocument(new FileInputStream(file));
+		InputStream input = null;
+		try {
+			input = new BufferedInputStream(new FileInputStream(file));
+			return this.readAsDocument(input);
+		} finally {
+			if (input != null) input.close();
+		}
 	}
 
 	/**
 	 * Read the given input stream and parse it into
-	 * a XML document.
+	 * a XML document. The document builder is reused
+	 * by the calling thread, and reset after parsing.
 	 * @param stream The <code>InputStream</code>
 	 * to read.
 	 * @return The <code>Document</code> instance.
@@ -205,9 +905,120 @@ public enum FileUtils {
 	 * parsing file failed.
 	 */
 	public Document readAsDocument(final InputStream stream) throws IOException, SAXException, ParserConfigurationException {
-		final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-		final DocumentBuilder builder = factory.newDocumentBuilder();
-		return builder.parse(stream);
+		final DocumentBuilder builder = FileUtils.acquireDocumentBuilder();
+		try {
+			return builder.parse(stream);
+		} finally {
+			FileUtils.releaseDocumentBuilder(builder);
+		}
+	}
+
+	/**
+	 * Lazily read the elements with the given local
+	 * name from the given XML file, in document order.
+	 * Only a single matching element is held in memory
+	 * at a time, as the root of its own document, thus
+	 * arbitrarily large files can be read in bounded
+	 * memory. Matching elements nested in a matching
+	 * element are only included in the outer element.
+	 * <p>
+	 * The returned stream should be closed to release
+	 * the file if it is not fully consumed. Failures of
+	 * reading or parsing are thrown as
+	 * <code>UncheckedIOException</code> while consuming
+	 * the stream.
+	 * @param file The XML <code>File</code> to read.
+	 * @param name The <code>String</code> local name of
+	 * the elements to read.
+	 * @return The <code>Stream</code> of the matching
+	 * <code>Element</code>.
+	 * @throws IOException If opening the file failed.
+	 * @throws XMLStreamException If the XML declaration
+	 * is malformed.
+	 */
+	public Stream<Element> readElements(final File file, final String name) throws IOException, XMLStreamException {
+		final InputStream input = new BufferedInputStream(new FileInputStream(file));
+		boolean opened = false;
+		try {
+			final Stream<Element> elements = this.readElements(input, name);
+			opened = true;
+			return elements;
+		} finally {
+			if (!opened) input.close();
+		}
+	}
+
+	/**
+	 * Lazily read the elements with the given local
+	 * name from the given XML stream, in document order.
+	 * Only a single matching element is held in memory
+	 * at a time, as the root of its own document.
+	 * Matching elements nested in a matching element
+	 * are only included in the outer element.
+	 * <p>
+	 * The given input stream is closed once the returned
+	 * stream is closed. Failures of reading or parsing
+	 * are thrown as <code>UncheckedIOException</code>
+	 * while consuming the stream.
+	 * @param stream The <code>InputStream</code> to
+	 * read.
+	 * @param name The <code>String</code> local name of
+	 * the elements to read.
+	 * @return The <code>Stream</code> of the matching
+	 * <code>Element</code>.
+	 * @throws XMLStreamException If the XML declaration
+	 * is malformed.
+	 */
+	public Stream<Element> readElements(final InputStream stream, final String name) throws XMLStreamException {
+		if (name == null) throw new IllegalArgumentException("Element name cannot be null.");
+		final XMLStreamReader reader = FileUtils.StreamFactory.createXMLStreamReader(stream);
+		final ElementReader elements = new ElementReader(reader, stream, name);
+		final Spliterator<Element> spliterator = Spliterators.spliteratorUnknownSize(elements,
+				Spliterator.ORDERED | Spliterator.NONNULL);
+		return StreamSupport.stream(spliterator, false).onClose(elements);
+	}
+
+	/**
+	 * Take the document builder of the calling thread,
+	 * creating one if the thread does not have one or
+	 * it is already in use by a nested call.
+	 * @return The <code>DocumentBuilder</code> that is
+	 * given back via <code>releaseDocumentBuilder</code>.
+	 * @throws ParserConfigurationException If creating
+	 * the builder failed.
+	 */
+	private static DocumentBuilder acquireDocumentBuilder() throws ParserConfigurationException {
+		final DocumentBuilder builder = FileUtils.DocumentBuilders.get();
+		if (builder != null) {
+			FileUtils.DocumentBuilders.set(null);
+			return builder;
+		}
+		// The factory is not guaranteed to be thread-safe.
+		synchronized (FileUtils.DocumentFactory) {
+			return FileUtils.DocumentFactory.newDocumentBuilder();
+		}
+	}
+
+	/**
+	 * Reset the given document builder and give it back
+	 * to the calling thread for reuse.
+	 * @param builder The <code>DocumentBuilder</code>
+	 * to release.
+	 */
+	private static void releaseDocumentBuilder(final DocumentBuilder builder) {
+		builder.reset();
+		FileUtils.DocumentBuilders.set(builder);
+	}
+
+	/**
+	 * Create the shared streaming XML input factory,
+	 * which does not resolve external entities.
+	 * @return The <code>XMLInputFactory</code>.
+	 */
+	private static XMLInputFactory newStreamFactory() {
+		final XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		return factory;
 	}
 
 	/**
@@ -229,7 +1040,8 @@ public enum FileUtils {
 	/**
 	 * Write all the entries of the Jar file to the
 	 * specified directory excluding the ones included
-	 * in the given list.
+	 * in the given list. Entries are extracted in
+	 * parallel.
 	 * @param jarFile The <code>File</code> to retrieve
 	 * entries from.
 	 * @param path The <code>String</code> directory
@@ -242,44 +1054,63 @@ public enum FileUtils {
 	 * @throws IOException If any file processing failed.
 	 */
 	public List<File> writeAll(final File jarFile, final String path, final List<File> exclusion) throws IOException {
-		final int size = (exclusion==null) ? 0 : exclusion.size();
-		final List<File> list = new ArrayList<File>();
-		final JarFile jar = new JarFile(jarFile);
-		// Iterate over all entries.
-		JarInputStream input = null;
+		return this.writeAll(jarFile, path, exclusion, FileUtils.DefaultParallelism);
+	}
+
+	/**
+	 * Write all the entries of the Jar file to the
+	 * specified directory excluding the ones included
+	 * in the given list. The entries are listed from
+	 * the central directory of the Jar file, and are
+	 * inflated and written in parallel.
+	 * <p>
+	 * Entries are written into the directory by their
+	 * file names. If multiple entries have the same
+	 * file name, the last one is written.
+	 * @param jarFile The <code>File</code> to retrieve
+	 * entries from.
+	 * @param path The <code>String</code> directory
+	 * to write the entries to.
+	 * @param exclusion The <code>List</code> of all
+	 * <code>File</code> to exclude by their names,
+	 * ignoring case. <code>null</code> if none should
+	 * be excluded.
+	 * @param parallelism The <code>int</code> number of
+	 * threads to use.
+	 * @return The <code>List</code> of all the entry
+	 * <code>File</code>. <code>null</code> if there
+	 * are none.
+	 * @throws IOException If any file processing failed,
+	 * with each failure as a suppressed exception.
+	 */
+	public List<File> writeAll(final File jarFile, final String path, final List<File> exclusion, final int parallelism) throws IOException {
+		final Set<String> excluded = new HashSet<String>();
+		if (exclusion != null) {
+			for (final File file : exclusion) excluded.add(file.getName().toLowerCase());
+		}
+		JarFile jar = null;
 		try {
-			input = new JarInputStream(new FileInputStream(jarFile));
-			ZipEntry entry = input.getNextEntry();
-			while (entry != null) {
+			jar = new JarFile(jarFile);
+			final Map<String, JarEntry> entries = new LinkedHashMap<String, JarEntry>();
+			final Enumeration<JarEntry> enumeration = jar.entries();
+			while (enumeration.hasMoreElements()) {
+				final JarEntry entry = enumeration.nextElement();
+				if (!FileUtils.isExtractable(entry)) continue;
 				// Check exclusion.
-				// Use explicit slash here since this is within the Jar.
-				final String entryName = entry.getName();
-				boolean contains = false;
-				final int index = entryName.lastIndexOf("/")+1;
-				final String entryFilename = entryName.substring(index);
-				for (int i = 0; i < size; i++) {
-					if (exclusion.get(i).getName().equalsIgnoreCase(entryFilename)) {
-						contains = true;
-						break;
-					}
-				}
-				// Only write if doesn't contain.
-				if (!contains) {
-					final File file = FileUtils.instance.writeToFile(jar, entryName, path);
-					list.add(file);
-				}
-				entry = input.getNextEntry();
+				final String filename = FileUtils.getEntryFilename(entry);
+				if (excluded.contains(filename.toLowerCase())) continue;
+				entries.put(filename, entry);
 			}
+			return this.extract(jar, entries, path, parallelism);
 		} finally {
-			if (input != null) input.close();
+			if (jar != null) jar.close();
 		}
-		if (list.isEmpty()) return null;
-		return list;
 	}
 
 	/**
 	 * Write all the entries within the specified package
 	 * of the Jar file to the specified directory.
+	 * Entries are extracted in parallel.
 	 * @param jarFile The <code>File</code> to retrieve
 	 * entries from.
 	 * @param path The <code>String</code> directory
@@ -293,58 +1124,159 @@ public enum FileUtils {
 	 * @throws IOException If any file processing failed.
 	 */
 	public List<File> writePackage(final File jarFile, final String path, final String packagePath) throws IOException {
-		final List<File> list = new ArrayList<File>();
-		final JarFile jar = new JarFile(jarFile);
-		// Retrieve all the entries in the resources directory and all of
-		// its sub-directories.
-		// Explicitly use slash here since entry path is platform independent.
-		JarInputStream input = null;
+		return this.writePackage(jarFile, path, packagePath, FileUtils.DefaultParallelism);
+	}
+
+	/**
+	 * Write all the entries within the specified package
+	 * of the Jar file to the specified directory. The
+	 * entries are listed from the central directory of
+	 * the Jar file, and are inflated and written in
+	 * parallel.
+	 * <p>
+	 * Entries are written into the directory by their
+	 * file names. If multiple entries have the same
+	 * file name, the last one is written.
+	 * @param jarFile The <code>File</code> to retrieve
+	 * entries from.
+	 * @param path The <code>String</code> directory
+	 * to write the entries to.
+	 * @param packagePath The <code>String</code> path
+	 * of the package in the format of a/b/c instead of
+	 * a.b.c.
+	 * @param parallelism The <code>int</code> number of
+	 * threads to use.
+	 * @return The <code>List</code> of all the entry
+	 * <code>File</code>. <code>null</code> if there
+	 * are none.
+	 * @throws IOException If any file processing failed,
+	 * with each failure as a suppressed exception.
+	 */
+	public List<File> writePackage(final File jarFile, final String path, final String packagePath, final int parallelism) throws IOException {
+		JarFile jar = null;
 		try {
-			input = new JarInputStream(new FileInputStream(jarFile));
-			JarEntry entry = input.getNextJarEntry();
-			while (entry != null) {
-				final String entryName = entry.getName();
-				// Entry's name must start with the package path but does not end with
-				// a path separator. Explicitly use slash here since entry path is
-				// platform independent.
-				if (entryName.startsWith(packagePath) && !entryName.endsWith("/")) {
-					// Write the entry to lib directory.
-					final File written = FileUtils.instance.writeToFile(jar, entryName, path);
-					list.add(written);
-				}
-				entry = input.getNextJarEntry();
+			jar = new JarFile(jarFile);
+			// Retrieve all the entries in the package and all of its sub-packages.
+			final Map<String, JarEntry> entries = new LinkedHashMap<String, JarEntry>();
+			final Enumeration<JarEntry> enumeration = jar.entries();
+			while (enumeration.hasMoreElements()) {
+				final JarEntry entry = enumeration.nextElement();
+				if (!FileUtils.isExtractable(entry) || !entry.getName().startsWith(packagePath)) continue;
+				entries.put(FileUtils.getEntryFilename(entry), entry);
 			}
+			return this.extract(jar, entries, path, parallelism);
+		} finally {
+			if (jar != null) jar.close();
+		}
+	}
+
+	/**
+	 * Check if the given entry is a file entry to be
+	 * extracted. Directories and the manifest are not
+	 * extracted.
+	 * @param entry The <code>JarEntry</code> to check.
+	 * @return <code>true</code> if the entry should be
+	 * extracted. <code>false</code> otherwise.
+	 */
+	static boolean isExtractable(final JarEntry entry) {
+		return !entry.isDirectory() && !entry.getName().equalsIgnoreCase(JarFile.MANIFEST_NAME);
+	}
+
+	/**
+	 * Retrieve the file name of the given entry.
+	 * @param entry The <code>ZipEntry</code>.
+	 * @return The <code>String</code> name after the
+	 * last path separator.
+	 */
+	static String getEntryFilename(final ZipEntry entry) {
+		// Explicitly use slash here since entry path is platform independent.
+		final String entryName = entry.getName();
+		return entryName.substring(entryName.lastIndexOf("/")+1);
+	}
+
+	/**
+	 * Extract the given entries into the specified
+	 * directory in parallel.
+	 * @param jar The open <code>JarFile</code>.
+	 * @param entries The <code>Map</code> of the target
+	 * file name <code>String</code> to the
+	 * <code>JarEntry</code> to write.
+	 * @param path The <code>String</code> directory
+	 * to write the entries to.
+	 * @param parallelism The <code>int</code> number of
+	 * threads to use.
+	 * @return The <code>List</code> of the written
+	 * <code>File</code>. <code>null</code> if there
+	 * are none.
+	 * @throws IOException If any file processing failed,
+	 * with each failure as a suppressed exception.
+	 */
+	List<File> extract(final JarFile jar, final Map<String, JarEntry> entries, final String path,
+			final int parallelism) throws IOException {
+		if (entries.isEmpty()) return null;
+		final String filePath = this.getValidDir(path);
+		new File(filePath).mkdirs();
+		final List<ZipEntry> selected = new ArrayList<ZipEntry>(entries.values());
+		final List<File> files = new ArrayList<File>(selected.size());
+		for (final String filename : entries.keySet()) files.add(new File(filePath + filename));
+		final Queue<IOException> failures = new ConcurrentLinkedQueue<IOException>();
+		this.invoke(new ExtractTask(jar, selected, files, 0, selected.size(), failures), parallelism);
+		FileUtils.checkFailures("Failed to extract " + jar.getName(), failures);
+		return files;
+	}
+
+	/**
+	 * Write the contents of the given entry to the
+	 * target file.
+	 * @param jar The <code>JarFile</code> of the entry.
+	 * @param entry The <code>ZipEntry</code> to write.
+	 * @param target The target <code>File</code>.
+	 * @throws IOException If any file processing failed.
+	 */
+	private void extract(final JarFile jar, final ZipEntry entry, final File target) throws IOException {
+		InputStream input = null;
+		try {
+			input = jar.getInputStream(entry);
+			this.copy(input, target);
 		} finally {
 			if (input != null) input.close();
 		}
-		if (list.isEmpty()) return null;
-		return list;
+	}
+
+	/**
+	 * Write the given content as a file at the given
+	 * target location, encoded with the platform default
+	 * charset. If the given target is an existing file,
+	 * the contents of that file will be over-written in
+	 * place, thus through any links to the file.
+	 * @param content The <code>String</code> content.
+	 * @param target The <code>String</code> target
+	 * file to write to.
+	 * @return The <code>File</code> written to.
+	 * @throws IOException If any file processing failed.
+	 */
+	public File writeAsString(final String content, final String target) throws IOException {
+		return this.writeAsString(content, target, Charset.defaultCharset());
 	}
 
 	/**
 	 * Write the given content as a file at the given
 	 * target location. If the given target is an
 	 * existing file, the contents of that file will
-	 * be over-written.
+	 * be over-written in place, thus through any links
+	 * to the file and retaining its owner. Readers may
+	 * see partially written contents.
 	 * @param content The <code>String</code> content.
 	 * @param target The <code>String</code> target
 	 * file to write to.
+	 * @param charset The <code>Charset</code> to encode
+	 * the content with.
 	 * @return The <code>File</code> written to.
 	 * @throws IOException If any file processing failed.
 	 */
-	public File writeAsString(final String content, final String target) throws IOException {
-		// Delete existing.
+	public File writeAsString(final String content, final String target, final Charset charset) throws IOException {
 		final File file = new File(target);
-		file.delete();
-		file.createNewFile();
-		// Write contents.
-		BufferedWriter writer = null;
-		try {
-			writer = new BufferedWriter(new FileWriter(file));
-			writer.write(content);
-		} finally {
-			if (writer != null) writer.close();
-		}
+		Files.write(file.toPath(), content.getBytes(charset));
 		return file;
 	}
 
@@ -372,59 +1304,198 @@ public enum FileUtils {
 		dir.mkdirs();
 		// Retrieve the entry.
 		final ZipEntry entry = jar.getEntry(entryName);
-		// Delete and create target file.
+		if (entry == null) return null;
 		// Explicitly use slash here since entry path is platform independent.
-		final int index = entryName.lastIndexOf("/")+1;
-		final String targetName = entryName.substring(index);
-		final String targetPath = filePath + targetName;
-		final File target = new File(targetPath);
-		target.delete();
-		target.createNewFile();
-		// Write to file.
-		FileOutputStream output = null;
-		InputStream input = null;
+		final File target = new File(filePath + FileUtils.getEntryFilename(entry));
+		this.extract(jar, entry, target);
+		return target;
+	}
+
+	/**
+	 * Write the given XML document to the target.
+	 * The old file will be over-written. The document
+	 * is written to a temporary file that atomically
+	 * replaces the target, thus readers never see a
+	 * partially written document. A symbolic link is
+	 * written through, but other hard links to the file
+	 * and its owner are not retained. The transformer
+	 * is reused by the calling thread.
+	 * @param document The <code>Document</code> to
+	 * be written.
+	 * @param target The <code>String</code> target
+	 * file to write to.
+	 * @return The <code>File</code> instance.
+	 * @throws IOException If file processing failed.
+	 * @throws TransformerException If writing the
+	 * XML document failed.
+	 */
+	public File writeDocument(final Document document, final String target) throws IOException, TransformerException {
+		// Prepare the DOM document for writing.
+		final Source source = new DOMSource(document);
+		// Prepare the output file.
+		final File file = new File(target);
+		final Path path = FileUtils.resolveLinks(file.toPath());
+		final Path temp = FileUtils.newTempFile(path);
+		boolean written = false;
 		try {
-			output = new FileOutputStream(target);
-			input = jar.getInputStream(entry);
-			final byte[] buffer = new byte[8192];
-			while (true) {
-				final int count = input.read(buffer);
-				if (count <= 0) break;
-				else output.write(buffer, 0, count);
+			// Write the DOM document to the file.
+			OutputStream output = null;
+			final Transformer transformer = FileUtils.acquireTransformer();
+			try {
+				output = new BufferedOutputStream(Files.newOutputStream(temp));
+				final Result result = new StreamResult(output);
+				transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+				transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
+				transformer.transform(source, result);
+			} finally {
+				FileUtils.releaseTransformer(transformer);
+				if (output != null) output.close();
 			}
+			FileUtils.replace(temp, path);
+			written = true;
 		} finally {
-			if (output != null) output.close();
-			if (input != null) input.close();
+			if (!written) Files.deleteIfExists(temp);
+		}
+		return file;
+	}
+
+	/**
+	 * Write the given XML contents to the target as a
+	 * stream of events in UTF-8, without building the
+	 * document in memory. The output is not indented.
+	 * The old file will be over-written. The contents
+	 * are written to a temporary file that atomically
+	 * replaces the target, thus readers never see a
+	 * partially written document. A symbolic link is
+	 * written through, but other hard links to the file
+	 * and its owner are not retained.
+	 * @param content The <code>XMLContent</code> to
+	 * write.
+	 * @param target The <code>String</code> target
+	 * file to write to.
+	 * @return The <code>File</code> instance.
+	 * @throws IOException If file processing failed.
+	 * @throws XMLStreamException If writing the XML
+	 * contents failed.
+	 */
+	public File writeXML(final XMLContent content, final String target) throws IOException, XMLStreamException {
+		final File file = new File(target);
+		final Path path = FileUtils.resolveLinks(file.toPath());
+		final Path temp = FileUtils.newTempFile(path);
+		boolean written = false;
+		try {
+			OutputStream output = null;
+			XMLStreamWriter writer = null;
+			try {
+				output = new BufferedOutputStream(Files.newOutputStream(temp));
+				writer = FileUtils.StreamWriterFactory.createXMLStreamWriter(output, "UTF-8");
+				writer.writeStartDocument("UTF-8", "1.0");
+				content.write(writer);
+				writer.writeEndDocument();
+				writer.flush();
+			} finally {
+				try {
+					if (writer != null) writer.close();
+				} finally {
+					if (output != null) output.close();
+				}
+			}
+			FileUtils.replace(temp, path);
+			written = true;
+		} finally {
+			if (!written) Files.deleteIfExists(temp);
+		}
+		return file;
+	}
+
+	/**
+	 * Resolve the given target through any symbolic
+	 * links, so that replacing it replaces the linked
+	 * file instead of the link.
+	 * @param target The target <code>Path</code>.
+	 * @return The absolute <code>Path</code> of the
+	 * linked file, which may not exist.
+	 * @throws IOException If reading a link failed.
+	 */
+	private static Path resolveLinks(final Path target) throws IOException {
+		Path path = target.toAbsolutePath();
+		// Bound the links followed to guard against cycles.
+		for (int i = 0; i < 40 && Files.isSymbolicLink(path); i++) {
+			path = path.resolveSibling(Files.readSymbolicLink(path));
+		}
+		return path;
+	}
+
+	/**
+	 * Create an empty hidden temporary file next to the
+	 * given target, so that it can atomically replace
+	 * the target.
+	 * @param target The target <code>Path</code>.
+	 * @return The temporary file <code>Path</code>.
+	 * @throws IOException If creating the file failed.
+	 */
+	static Path newTempFile(final Path target) throws IOException {
+		final Path absolute = target.toAbsolutePath();
+		final String name = "." + absolute.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp";
+		final Path temp = Files.createFile(absolute.resolveSibling(name));
+		// Retain the permissions of the replaced file.
+		final PosixFileAttributeView targetPosix = Files.getFileAttributeView(absolute, PosixFileAttributeView.class);
+		if (targetPosix != null && Files.isRegularFile(absolute)) {
+			try {
+				Files.getFileAttributeView(temp, PosixFileAttributeView.class).setPermissions(targetPosix.readAttributes().permissions());
+			} catch (final IOException e) {
+				Files.deleteIfExists(temp);
+				throw e;
+			}
+		}
+		return temp;
+	}
+
+	/**
+	 * Replace the target with the given temporary file,
+	 * atomically if the file system supports it.
+	 * @param temp The temporary file <code>Path</code>.
+	 * @param target The target <code>Path</code>.
+	 * @throws IOException If moving the file failed.
+	 */
+	static void replace(final Path temp, final Path target) throws IOException {
+		try {
+			Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (final AtomicMoveNotSupportedException e) {
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Take the transformer of the calling thread,
+	 * creating one if the thread does not have one or
+	 * it is already in use by a nested call.
+	 * @return The <code>Transformer</code> that is given
+	 * back via <code>releaseTransformer</code>.
+	 * @throws TransformerException If creating the
+	 * transformer failed.
+	 */
+	private static Transformer acquireTransformer() throws TransformerException {
+		final Transformer transformer = FileUtils.Transformers.get();
+		if (transformer != null) {
+			FileUtils.Transformers.set(null);
+			return transformer;
+		}
+		// The factory is not guaranteed to be thread-safe.
+		synchronized (FileUtils.TransformFactory) {
+			return FileUtils.TransformFactory.newTransformer();
 		}
-		return target;
 	}
 
 	/**
-	 * Write the given XML document to the target.
-	 * The old file will be over-written.
-	 * @param document The <code>Document</code> to
-	 * be written.
-	 * @param target The <code>String</code> target
-	 * file to write to.
-	 * @return The <code>File</code> instance.
-	 * @throws IOException If file processing failed.
-	 * @throws TransformerException If writing the
-	 * XML document failed.
+	 * Reset the given transformer and give it back to
+	 * the calling thread for reuse.
+	 * @param transformer The <code>Transformer</code>
+	 * to release.
 	 */
-	public File writeDocument(final Document document, final String target) throws IOException, TransformerException {
-		// Prepare the DOM document for writing.
-		final Source source = new DOMSource(document);
-		// Prepare the output file.
-		final File file = new File(target);
-		file.delete();
-		file.createNewFile();
-		final Result result = new StreamResult(file);
-		// Write the DOM document to the file.
-		final Transformer transformer = TransformerFactory.newInstance().newTransformer();
-		transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-		transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
-		transformer.transform(source, result);
-		return file;
+	private static void releaseTransformer(final Transformer transformer) {
+		transformer.reset();
+		FileUtils.Transformers.set(transformer);
 	}
 
 	/**
@@ -446,7 +1517,9 @@ public enum FileUtils {
 
 	/**
 	 * Create a new Jar file using the given files and
-	 * save the Jar file at the target location.
+	 * save the Jar file at the target location. The
+	 * entries are compressed in parallel by a
+	 * <code>JarBuilder</code> with its default settings.
 	 * @param files The <code>List</code> of all the
 	 * <code>File</code> to be jarred.
 	 * @param target The <code>String</code> path to
@@ -457,80 +1530,32 @@ public enum FileUtils {
 	 * @throws IOException If any file processing failed.
 	 */
 	public File jarFiles(final List<File> files, final String target, final Manifest manifest) throws IOException {
-		// Delete and create new file.
-		final File jarfile = new File(target);
-		jarfile.delete();
-		jarfile.createNewFile();
-		// Create a new output stream for the Jar file.
-		JarOutputStream output = null;
-		try {
-			output = new JarOutputStream(new FileOutputStream(jarfile), manifest);
-			// Add all files as Jar entries.
-			final int size = files.size();
-			for (int i = 0; i < size; i++) {
-				final File file = files.get(i);
-				// Extract the initial path to exclude from the Jar structure.
-				String filePath = null;
-				if (file.isDirectory()) filePath = FileUtils.instance.getValidDir(file.getAbsolutePath());
-				else filePath = file.getAbsolutePath();
-				final int index = filePath.lastIndexOf("/")+1;
-				final String initPath = filePath.substring(0, index);
-				// Write entry.
-				this.writeJarEntry(file, output, initPath);
-			}
-		} finally {
-			if (output != null) output.close();
-		}
-		return jarfile;
+		return this.jarFiles(files, target, manifest, false);
 	}
 
 	/**
-	 * Write the given source file as a Jar entry into
-	 * the given Jar output stream.
-	 * @param source The source <code>File</code> to be
-	 * written as a Jar entry into the given target.
-	 * @param target The <code>JarOutputStream</code>
-	 * to write to.
-	 * @param initPath The initial path to exclude from
-	 * the directory structure within the Jar.
+	 * Create a new Jar file using the given files and
+	 * save the Jar file at the target location. The
+	 * entries are compressed in parallel by a
+	 * <code>JarBuilder</code> with its default settings.
+	 * <p>
+	 * If incremental, an existing Jar file at the target
+	 * is updated by copying the compressed entries of the
+	 * unchanged files as is, and only compressing the
+	 * modified and new files.
+	 * @param files The <code>List</code> of all the
+	 * <code>File</code> to be jarred.
+	 * @param target The <code>String</code> path to
+	 * store the new Jar file.
+	 * @param manifest The <code>Manifest</code> to be
+	 * included in the Jar file.
+	 * @param incremental <code>true</code> if the
+	 * existing Jar file should be updated incrementally.
+	 * @return The new Jar <code>File</code>.
 	 * @throws IOException If any file processing failed.
 	 */
-	private void writeJarEntry(final File source, final JarOutputStream target, final String initPath) throws IOException {
-		if (source.isDirectory()) {
-			// Use explicit slash here since this is within Jar.
-			final String sourcePath = FileUtils.instance.getValidDir(source.getAbsolutePath());
-			String sourceName = sourcePath.replace(initPath, "").replace("\\", "/");
-			if (!sourceName.isEmpty()) {
-				if (!sourceName.endsWith("/")) sourceName += "/";
-				final JarEntry entry = new JarEntry(sourceName);
-				entry.setTime(source.lastModified());
-				target.putNextEntry(entry);
-				target.closeEntry();
-			}
-			// Write children.
-			final File[] children = source.listFiles();
-			for (int i = 0; i < children.length; i++) {
-				this.writeJarEntry(children[i], target, initPath);
-			}
-		} else {
-			BufferedInputStream input = null;
-			try {
-				// Write the file contents.
-				final JarEntry entry = new JarEntry(source.getAbsolutePath().replace(initPath, "").replace("\\", "/"));
-				entry.setTime(source.lastModified());
-				target.putNextEntry(entry);
-				input = new BufferedInputStream(new FileInputStream(source));
-				final byte[] buffer = new byte[8192];
-				while (true) {
-					final int count = input.read(buffer);
-					if (count <= 0) break;
-					else target.write(buffer, 0, count);
-				}
-				target.closeEntry();
-			} finally {
-				if (input != null) input.close();
-			}
-		}
+	public File jarFiles(final List<File> files, final String target, final Manifest manifest, final boolean incremental) throws IOException {
+		return new JarBuilder().setManifest(manifest).addAll(files).setIncremental(incremental).build(target);
 	}
 
 	/**
@@ -585,8 +1610,8 @@ public enum FileUtils {
 	 * @param rootDir The <code>String</code> directory
 	 * to search from.
 	 * @return The <code>List</code> of all the
-	 * <code>File</code>. <code>null</code> if there
-	 * are none.
+	 * <code>File</code>. <code>null</code> if the root
+	 * is not a directory.
 	 */
 	public List<File> getFiles(final String rootDir) {
 		return this.getFiles(rootDir, null);
@@ -603,33 +1628,96 @@ public enum FileUtils {
 	 * extension to search for. <code>null</code> if
 	 * all file types should be retrieved.
 	 * @return The <code>List</code> of all matching
-	 * <code>File</code>. <code>null</code> if there
-	 * are none.
+	 * <code>File</code>. <code>null</code> if the root
+	 * is not a directory.
 	 */
 	public List<File> getFiles(final String rootDir, final String extension) {
-		final String validExtension = this.getValidExtension(extension);
-		// Check root directory is a directory.
-		final File root = new File(rootDir);
-		if (!root.isDirectory()) return null;
-		// Recursively find all files.
+		if (!new File(rootDir).isDirectory()) return null;
+		final Predicate<Path> filter = (extension==null) ? null : this.extensionFilter(extension);
 		final List<File> files = new ArrayList<File>();
-		final File[] list = root.listFiles();
-		for (int i = 0; i < list.length; i++) {
-			final File file = list[i];
-			if (file.isHidden()) continue;
-			// Recursive.
-			if (file.isDirectory()) {
-				final List<File> results = this.getFiles(file.getAbsolutePath(), extension);
-				files.addAll(results);
-			} else {
-				// Check extension.
-				if (extension == null) files.add(file);
-				else if (file.getAbsolutePath().toLowerCase().endsWith(validExtension)) files.add(file);
-			}
+		final Stream<Path> stream = this.walk(rootDir, Integer.MAX_VALUE, filter);
+		try {
+			final Iterator<Path> iterator = stream.iterator();
+			while (iterator.hasNext()) files.add(iterator.next().toFile());
+		} finally {
+			stream.close();
 		}
 		return files;
 	}
 
+	/**
+	 * Lazily traverse the files from the specified
+	 * directory including the sub-directories up to the
+	 * given depth but exclude hidden files and hidden
+	 * directories. Directories are opened as the stream
+	 * is consumed, thus the stream can be terminated
+	 * early without visiting the rest of the tree.
+	 * Symbolic links to directories are not followed.
+	 * <p>
+	 * The returned stream should be closed to release
+	 * the open directories if it is not fully consumed.
+	 * Failures of reading directories are thrown as
+	 * <code>UncheckedIOException</code> while consuming
+	 * the stream.
+	 * @param rootDir The <code>String</code> directory
+	 * to search from.
+	 * @param maxDepth The <code>int</code> maximum number
+	 * of directory levels to visit, where <code>1</code>
+	 * only includes the files directly in the root.
+	 * <code>Integer.MAX_VALUE</code> if all levels
+	 * should be visited.
+	 * @param filter The <code>Predicate</code> to test
+	 * the file <code>Path</code> with. <code>null</code>
+	 * if all files should be included.
+	 * @return The <code>Stream</code> of the matching
+	 * file <code>Path</code>. Empty if the root is not
+	 * a directory.
+	 */
+	public Stream<Path> walk(final String rootDir, final int maxDepth, final Predicate<Path> filter) {
+		final FileWalker walker = new FileWalker(Paths.get(rootDir), maxDepth, filter);
+		final Spliterator<Path> spliterator = Spliterators.spliteratorUnknownSize(walker,
+				Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL);
+		return StreamSupport.stream(spliterator, false).onClose(walker);
+	}
+
+	/**
+	 * Create a filter that matches the file names with
+	 * the given extension ignoring case.
+	 * @param extension The <code>String</code> file
+	 * extension to match.
+	 * @return The <code>Predicate</code> of file
+	 * <code>Path</code>.
+	 */
+	public Predicate<Path> extensionFilter(final String extension) {
+		final String validExtension = this.getValidExtension(extension);
+		return new Predicate<Path>() {
+			@Override
+			public boolean test(final Path path) {
+				final String name = path.getFileName().toString();
+				final int offset = name.length() - validExtension.length();
+				return offset >= 0 && name.regionMatches(true, offset, validExtension, 0, validExtension.length());
+			}
+		};
+	}
+
+	/**
+	 * Create a filter that matches the file names with
+	 * the given glob pattern, such as <code>*.{java,class}</code>.
+	 * @param glob The <code>String</code> glob pattern
+	 * in the syntax of <code>FileSystem.getPathMatcher</code>.
+	 * @return The <code>Predicate</code> of file
+	 * <code>Path</code>.
+	 */
+	public Predicate<Path> globFilter(final String glob) {
+		final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+		return new Predicate<Path>() {
+			@Override
+			public boolean test(final Path path) {
+				return matcher.matches(path.getFileName());
+			}
+		};
+	}
+
 	/**
 	 * Retrieve the valid extension including the dot
 	 * separator.
@@ -647,4 +1735,980 @@ public enum FileUtils {
 			else return "."+extension.toLowerCase();
 		}
 	}
+
+	/**
+	 * <code>CopyTask</code> defines the parallel task
+	 * that copies a single directory, forking a task
+	 * for each sub-directory and each batch of files.
+	 */
+	private static final class CopyTask extends RecursiveAction {
+		/**
+		 * The <code>long</code> serial version ID.
+		 */
+		private static final long serialVersionUID = 1L;
+		/**
+		 * The source <code>File</code> directory.
+		 */
+		private final File src;
+		/**
+		 * The target <code>File</code> directory.
+		 */
+		private final File target;
+		/**
+		 * The valid <code>String</code> extension of the
+		 * files to copy.
+		 */
+		private final String extension;
+		/**
+		 * The <code>Queue</code> of <code>IOException</code>
+		 * failures.
+		 */
+		private final Queue<IOException> failures;
+
+		/**
+		 * Constructor of <code>CopyTask</code>.
+		 * @param src The source <code>File</code> directory.
+		 * @param target The target <code>File</code> directory.
+		 * @param extension The valid <code>String</code>
+		 * extension of the files to copy.
+		 * @param failures The <code>Queue</code> to add the
+		 * <code>IOException</code> failures to.
+		 */
+		private CopyTask(final File src, final File target, final String extension, final Queue<IOException> failures) {
+			this.src = src;
+			this.target = target;
+			this.extension = extension;
+			this.failures = failures;
+		}
+
+		@Override
+		protected void compute() {
+			if (!this.target.isDirectory() && !this.target.mkdirs()) {
+				this.failures.add(new IOException("Failed to create directory: " + this.target));
+				return;
+			}
+			final File[] children = this.src.listFiles();
+			if (children == null) {
+				this.failures.add(new IOException("Failed to list directory: " + this.src));
+				return;
+			}
+			final List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+			List<File> batch = null;
+			for (int i = 0; i < children.length; i++) {
+				final File child = children[i];
+				if (child.isDirectory()) {
+					tasks.add(new CopyTask(child, new File(this.target, child.getName()), this.extension, this.failures));
+				} else if (child.getName().toLowerCase().endsWith(this.extension)) {
+					if (batch == null) batch = new ArrayList<File>(FileUtils.BatchSize);
+					batch.add(child);
+					if (batch.size() >= FileUtils.BatchSize) {
+						tasks.add(new CopyBatch(batch, this.target, this.failures));
+						batch = null;
+					}
+				}
+			}
+			if (batch != null) tasks.add(new CopyBatch(batch, this.target, this.failures));
+			ForkJoinTask.invokeAll(tasks);
+		}
+	}
+
+	/**
+	 * <code>CopyBatch</code> defines the parallel task
+	 * that copies a batch of files into a directory.
+	 */
+	private static final class CopyBatch extends RecursiveAction {
+		/**
+		 * The <code>long</code> serial version ID.
+		 */
+		private static final long serialVersionUID = 1L;
+		/**
+		 * The <code>List</code> of source <code>File</code>.
+		 */
+		private final List<File> files;
+		/**
+		 * The target <code>File</code> directory.
+		 */
+		private final File target;
+		/**
+		 * The <code>Queue</code> of <code>IOException</code>
+		 * failures.
+		 */
+		private final Queue<IOException> failures;
+
+		/**
+		 * Constructor of <code>CopyBatch</code>.
+		 * @param files The <code>List</code> of source
+		 * <code>File</code>.
+		 * @param target The target <code>File</code> directory.
+		 * @param failures The <code>Queue</code> to add the
+		 * <code>IOException</code> failures to.
+		 */
+		private CopyBatch(final List<File> files, final File target, final Queue<IOException> failures) {
+			this.files = files;
+			this.target = target;
+			this.failures = failures;
+		}
+
+		@Override
+		protected void compute() {
+			final int size = this.files.size();
+			for (int i = 0; i < size; i++) {
+				final File file = this.files.get(i);
+				try {
+					FileUtils.instance.copyFile(file, new File(this.target, file.getName()));
+				} catch (final IOException e) {
+					this.failures.add(e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * <code>SyncContext</code> defines the options and
+	 * the results shared by the tasks of a single
+	 * directory synchronization.
+	 */
+	private static final class SyncContext {
+		/**
+		 * The valid <code>String</code> extension of the
+		 * files to synchronize.
+		 */
+		private final String extension;
+		/**
+		 * The <code>boolean</code> flag indicating if the
+		 * contents of files are compared.
+		 */
+		private final boolean compareContents;
+		/**
+		 * The <code>boolean</code> flag indicating if the
+		 * extra target files are deleted.
+		 */
+		private final boolean deleteExtra;
+		/**
+		 * The <code>Queue</code> of copied target
+		 * <code>File</code>.
+		 */
+		private final Queue<File> copied;
+		/**
+		 * The <code>Queue</code> of deleted target
+		 * <code>File</code>.
+		 */
+		private final Queue<File> deleted;
+		/**
+		 * The <code>AtomicInteger</code> number of files
+		 * that are up to date.
+		 */
+		private final AtomicInteger unchangedCount;
+		/**
+		 * The <code>Queue</code> of <code>IOException</code>
+		 * failures.
+		 */
+		private final Queue<IOException> failures;
+
+		/**
+		 * Constructor of <code>SyncContext</code>.
+		 * @param extension The valid <code>String</code>
+		 * extension of the files to synchronize.
+		 * @param compareContents <code>true</code> if the
+		 * contents of files are compared.
+		 * @param deleteExtra <code>true</code> if the extra
+		 * target files are deleted.
+		 */
+		private SyncContext(final String extension, final boolean compareContents, final boolean deleteExtra) {
+			this.extension = extension;
+			this.compareContents = compareContents;
+			this.deleteExtra = deleteExtra;
+			this.copied = new ConcurrentLinkedQueue<File>();
+			this.deleted = new ConcurrentLinkedQueue<File>();
+			this.unchangedCount = new AtomicInteger();
+			this.failures = new ConcurrentLinkedQueue<IOException>();
+		}
+
+		/**
+		 * Create the report of the recorded changes.
+		 * @return The <code>SyncReport</code>.
+		 */
+		private SyncReport toReport() {
+			return new SyncReport(this.copied, this.deleted, this.unchangedCount.get());
+		}
+	}
+
+	/**
+	 * <code>SyncTask</code> defines the parallel task
+	 * that synchronizes a single directory, forking a
+	 * task for each sub-directory and each batch of
+	 * files. If the source directory does not exist,
+	 * the task deletes the extra target directory.
+	 */
+	private static final class SyncTask extends RecursiveAction {
+		/**
+		 * The <code>long</code> serial version ID.
+		 */
+		private static final long serialVersionUID = 1L;
+		/**
+		 * The source <code>File</code> directory.
+		 */
+		private final File src;
+		/**
+		 * The target <code>File</code> directory.
+		 */
+		private final File target;
+		/**
+		 * The shared <code>SyncContext</code>.
+		 */
+		private final SyncContext context;
+
+		/**
+		 * Constructor of <code>SyncTask</code>.
+		 * @param src The source <code>File</code> directory.
+		 * @param target The target <code>File</code> directory.
+		 * @param context The shared <code>SyncContext</code>.
+		 */
+		private SyncTask(final File src, final File target, final SyncContext context) {
+			this.src = src;
+			this.target = target;
+			this.context = context;
+		}
+
+		@Override
+		protected void compute() {
+			final boolean extra = !this.src.isDirectory();
+			if (!extra && !this.prepareTarget()) return;
+			final File[] children = extra ? new File[0] : this.src.listFiles();
+			if (children == null) {
+				this.context.failures.add(new IOException("Failed to list directory: " + this.src));
+				return;
+			}
+			final Set<String> names = new HashSet<String>();
+			final List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+			List<File> batch = null;
+			for (int i = 0; i < children.length; i++) {
+				final File child = children[i];
+				names.add(child.getName());
+				if (child.isDirectory()) {
+					tasks.add(new SyncTask(child, new File(this.target, child.getName()), this.context));
+				} else if (child.getName().toLowerCase().endsWith(this.context.extension)) {
+					if (batch == null) batch = new ArrayList<File>(FileUtils.BatchSize);
+					batch.add(child);
+					if (batch.size() >= FileUtils.BatchSize) {
+						tasks.add(new SyncBatch(batch, this.target, this.context));
+						batch = null;
+					}
+				}
+			}
+			if (batch != null) tasks.add(new SyncBatch(batch, this.target, this.context));
+			if (this.context.deleteExtra) this.deleteExtra(names, tasks);
+			ForkJoinTask.invokeAll(tasks);
+			// Remove the extra directory once it is empty.
+			if (extra) {
+				final String[] remaining = this.target.list();
+				if (remaining == null || remaining.length > 0) return;
+				try {
+					Files.delete(this.target.toPath());
+					this.context.deleted.add(this.target);
+				} catch (final IOException e) {
+					this.context.failures.add(e);
+				}
+			}
+		}
+
+		/**
+		 * Create the target directory if it does not exist,
+		 * deleting a target file in its place if the extra
+		 * target files are deleted.
+		 * @return <code>true</code> if the target directory
+		 * exists. <code>false</code> otherwise.
+		 */
+		private boolean prepareTarget() {
+			final Path path = this.target.toPath();
+			if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) return true;
+			try {
+				if (Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+					if (!this.context.deleteExtra) throw new IOException("Target is not a directory: " + this.target);
+					Files.delete(path);
+					this.context.deleted.add(this.target);
+				}
+				if (!this.target.mkdirs()) throw new IOException("Failed to create directory: " + this.target);
+				return true;
+			} catch (final IOException e) {
+				this.context.failures.add(e);
+				return false;
+			}
+		}
+
+		/**
+		 * Delete the target files with the extension that
+		 * are not in the source, and add the tasks that
+		 * delete the target directories that are not in the
+		 * source.
+		 * @param names The <code>Set</code> of the names of
+		 * the source children.
+		 * @param tasks The <code>List</code> to add the
+		 * <code>ForkJoinTask</code> to.
+		 */
+		private void deleteExtra(final Set<String> names, final List<ForkJoinTask<?>> tasks) {
+			final File[] existing = this.target.listFiles();
+			if (existing == null) {
+				this.context.failures.add(new IOException("Failed to list directory: " + this.target));
+				return;
+			}
+			for (int i = 0; i < existing.length; i++) {
+				final File child = existing[i];
+				if (names.contains(child.getName())) continue;
+				// Links are deleted without following them.
+				if (Files.isDirectory(child.toPath(), LinkOption.NOFOLLOW_LINKS)) {
+					tasks.add(new SyncTask(new File(this.src, child.getName()), child, this.context));
+				} else if (child.getName().toLowerCase().endsWith(this.context.extension)) {
+					try {
+						Files.delete(child.toPath());
+						this.context.deleted.add(child);
+					} catch (final IOException e) {
+						this.context.failures.add(e);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * <code>SyncBatch</code> defines the parallel task
+	 * that synchronizes a batch of files into a
+	 * directory.
+	 */
+	private static final class SyncBatch extends RecursiveAction {
+		/**
+		 * The <code>long</code> serial version ID.
+		 */
+		private static final long serialVersionUID = 1L;
+		/**
+		 * The <code>List</code> of source <code>File</code>.
+		 */
+		private final List<File> files;
+		/**
+		 * The target <code>File</code> directory.
+		 */
+		private final File target;
+		/**
+		 * The shared <code>SyncContext</code>.
+		 */
+		private final SyncContext context;
+
+		/**
+		 * Constructor of <code>SyncBatch</code>.
+		 * @param files The <code>List</code> of source
+		 * <code>File</code>.
+		 * @param target The target <code>File</code> directory.
+		 * @param context The shared <code>SyncContext</code>.
+		 */
+		private SyncBatch(final List<File> files, final File target, final SyncContext context) {
+			this.files = files;
+			this.target = target;
+			this.context = context;
+		}
+
+		@Override
+		protected void compute() {
+			final int size = this.files.size();
+			for (int i = 0; i < size; i++) {
+				final File file = this.files.get(i);
+				FileUtils.instance.sync(file, new File(this.target, file.getName()), this.context);
+			}
+		}
+	}
+
+	/**
+	 * <code>DeleteTask</code> defines the parallel task
+	 * that deletes a single file or a directory tree,
+	 * forking a task for each sub-directory and each
+	 * batch of files.
+	 */
+	private static final class DeleteTask extends RecursiveTask<Boolean> {
+		/**
+		 * The <code>long</code> serial version ID.
+		 */
+		private static final long serialVersionUID = 1L;
+		/**
+		 * The <code>File</code> to delete.
+		 */
+		private final File file;
+		/**
+		 * The <code>List</code> of <code>File</code> that
+		 * are not directories to delete. <code>null</code>
+		 * if the task deletes a directory.
+		 */
+		private final List<File> batch;
+		/**
+		 * The <code>Queue</code> of <code>IOException</code>
+		 * failures.
+		 */
+		private final Queue<IOException> failures;
+
+		/**
+		 * Constructor of <code>DeleteTask</code>.
+		 * @param file The <code>File</code> to delete.
+		 * @param failures The <code>Queue</code> to add the
+		 * <code>IOException</code> failures to.
+		 */
+		private DeleteTask(final File file, final Queue<IOException> failures) {
+			this.file = file;
+			this.batch = null;
+			this.failures = failures;
+		}
+
+		/**
+		 * Constructor of <code>DeleteTask</code>.
+		 * @param batch The <code>List</code> of <code>File</code>
+		 * that are not directories to delete.
+		 * @param failures The <code>Queue</code> to add the
+		 * <code>IOException</code> failures to.
+		 */
+		private DeleteTask(final List<File> batch, final Queue<IOException> failures) {
+			this.file = null;
+			this.batch = batch;
+			this.failures = failures;
+		}
+
+		@Override
+		protected Boolean compute() {
+			if (this.batch != null) {
+				boolean succeeded = true;
+				final int size = this.batch.size();
+				for (int i = 0; i < size; i++) {
+					succeeded &= this.delete(this.batch.get(i));
+				}
+				return succeeded;
+			}
+			if (Files.isDirectory(this.file.toPath(), LinkOption.NOFOLLOW_LINKS)) {
+				final File[] children = this.file.listFiles();
+				if (children == null) {
+					this.failures.add(new IOException("Failed to list directory: " + this.file));
+					return false;
+				}
+				final List<DeleteTask> tasks = new ArrayList<DeleteTask>();
+				List<File> batch = null;
+				for (int i = 0; i < children.length; i++) {
+					final File child = children[i];
+					if (Files.isDirectory(child.toPath(), LinkOption.NOFOLLOW_LINKS)) {
+						tasks.add(new DeleteTask(child, this.failures));
+					} else {
+						if (batch == null) batch = new ArrayList<File>(FileUtils.BatchSize);
+						batch.add(child);
+						if (batch.size() >= FileUtils.BatchSize) {
+							tasks.add(new DeleteTask(batch, this.failures));
+							batch = null;
+						}
+					}
+				}
+				if (batch != null) tasks.add(new DeleteTask(batch, this.failures));
+				ForkJoinTask.invokeAll(tasks);
+				// The directory cannot be deleted if any child remains.
+				for (int i = 0; i < tasks.size(); i++) {
+					if (!tasks.get(i).join()) return false;
+				}
+			}
+			return this.delete(this.file);
+		}
+
+		/**
+		 * Delete the given file or empty directory.
+		 * @param target The <code>File</code> to delete.
+		 * @return <code>true</code> if deleted.
+		 * <code>false</code> otherwise.
+		 */
+		private boolean delete(final File target) {
+			try {
+				Files.delete(target.toPath());
+				return true;
+			} catch (final IOException e) {
+				this.failures.add(e);
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * <code>ExtractTask</code> defines the parallel task
+	 * that extracts a range of Jar entries, splitting
+	 * the range until each part is small enough in the
+	 * number of entries and the compressed bytes.
+	 */
+	private static final class ExtractTask extends RecursiveAction {
+		/**
+		 * The <code>long</code> serial version ID.
+		 */
+		private static final long serialVersionUID = 1L;
+		/**
+		 * The open <code>JarFile</code>.
+		 */
+		private final JarFile jar;
+		/**
+		 * The <code>List</code> of <code>ZipEntry</code>
+		 * to extract.
+		 */
+		private final List<ZipEntry> entries;
+		/**
+		 * The <code>List</code> of target <code>File</code>
+		 * of the entries at the same indices.
+		 */
+		private final List<File> files;
+		/**
+		 * The <code>int</code> inclusive start index.
+		 */
+		private final int from;
+		/**
+		 * The <code>int</code> exclusive end index.
+		 */
+		private final int to;
+		/**
+		 * The <code>Queue</code> of <code>IOException</code>
+		 * failures.
+		 */
+		private final Queue<IOException> failures;
+
+		/**
+		 * Constructor of <code>ExtractTask</code>.
+		 * @param jar The open <code>JarFile</code>.
+		 * @param entries The <code>List</code> of
+		 * <code>ZipEntry</code> to extract.
+		 * @param files The <code>List</code> of target
+		 * <code>File</code> of the entries.
+		 * @param from The <code>int</code> inclusive start
+		 * index.
+		 * @param to The <code>int</code> exclusive end index.
+		 * @param failures The <code>Queue</code> to add the
+		 * <code>IOException</code> failures to.
+		 */
+		private ExtractTask(final JarFile jar, final List<ZipEntry> entries, final List<File> files, final int from,
+				final int to, final Queue<IOException> failures) {
+			this.jar = jar;
+			this.entries = entries;
+			this.files = files;
+			this.from = from;
+			this.to = to;
+			this.failures = failures;
+		}
+
+		@Override
+		protected void compute() {
+			final int count = this.to - this.from;
+			if (count > 1 && (count > FileUtils.BatchSize || this.getCompressedSize() > FileUtils.ExtractBatchSize)) {
+				final int middle = (this.from + this.to) >>> 1;
+				ForkJoinTask.invokeAll(new ExtractTask(this.jar, this.entries, this.files, this.from, middle, this.failures),
+						new ExtractTask(this.jar, this.entries, this.files, middle, this.to, this.failures));
+				return;
+			}
+			for (int i = this.from; i < this.to; i++) {
+				try {
+					FileUtils.instance.extract(this.jar, this.entries.get(i), this.files.get(i));
+				} catch (final IOException e) {
+					this.failures.add(e);
+				}
+			}
+		}
+
+		/**
+		 * Retrieve the total compressed size of the range.
+		 * @return The <code>long</code> number of bytes.
+		 */
+		private long getCompressedSize() {
+			long size = 0;
+			for (int i = this.from; i < this.to; i++) {
+				size += Math.max(0, this.entries.get(i).getCompressedSize());
+			}
+			return size;
+		}
+	}
+
+	/**
+	 * <code>FileWalker</code> defines the depth-first
+	 * iterator of the files in a directory tree, which
+	 * keeps a stack of the directory streams that are
+	 * being iterated.
+	 */
+	private static final class FileWalker implements Iterator<Path>, Runnable {
+		/**
+		 * The <code>int</code> maximum number of directory
+		 * levels to visit.
+		 */
+		private final int maxDepth;
+		/**
+		 * The <code>Predicate</code> of the files to
+		 * include. <code>null</code> if all are included.
+		 */
+		private final Predicate<Path> filter;
+		/**
+		 * The <code>Deque</code> of the open
+		 * <code>DirectoryStream</code>.
+		 */
+		private final Deque<DirectoryStream<Path>> streams;
+		/**
+		 * The <code>Deque</code> of the <code>Iterator</code>
+		 * of the open directory streams.
+		 */
+		private final Deque<Iterator<Path>> iterators;
+		/**
+		 * The next <code>Path</code> to return.
+		 */
+		private Path next;
+
+		/**
+		 * Constructor of <code>FileWalker</code>.
+		 * @param root The root <code>Path</code>.
+		 * @param maxDepth The <code>int</code> maximum
+		 * number of directory levels to visit.
+		 * @param filter The <code>Predicate</code> of the
+		 * files to include.
+		 */
+		private FileWalker(final Path root, final int maxDepth, final Predicate<Path> filter) {
+			this.maxDepth = maxDepth;
+			this.filter = filter;
+			this.streams = new ArrayDeque<DirectoryStream<Path>>();
+			this.iterators = new ArrayDeque<Iterator<Path>>();
+			if (maxDepth > 0 && Files.isDirectory(root)) this.open(root);
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (this.next == null) this.advance();
+			return this.next != null;
+		}
+
+		@Override
+		public Path next() {
+			if (!this.hasNext()) throw new NoSuchElementException();
+			final Path path = this.next;
+			this.next = null;
+			return path;
+		}
+
+		/**
+		 * Advance to the next matching file, opening and
+		 * closing directories as they are reached and
+		 * exhausted.
+		 */
+		private void advance() {
+			while (!this.iterators.isEmpty()) {
+				final Iterator<Path> iterator = this.iterators.peek();
+				final Path path;
+				try {
+					if (!iterator.hasNext()) {
+						this.iterators.pop();
+						FileWalker.close(this.streams.pop());
+						continue;
+					}
+					path = iterator.next();
+				} catch (final DirectoryIteratorException e) {
+					throw new UncheckedIOException(e.getCause());
+				}
+				try {
+					if (Files.isHidden(path)) continue;
+					final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+					if (attributes.isDirectory()) {
+						if (this.iterators.size() < this.maxDepth) this.open(path);
+						continue;
+					}
+					if (attributes.isSymbolicLink() && Files.isDirectory(path)) continue;
+				} catch (final NoSuchFileException e) {
+					// Deleted concurrently.
+					continue;
+				} catch (final IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				if (this.filter == null || this.filter.test(path)) {
+					this.next = path;
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Open the given directory as the top of the stack.
+		 * @param directory The directory <code>Path</code>.
+		 */
+		private void open(final Path directory) {
+			try {
+				final DirectoryStream<Path> stream = Files.newDirectoryStream(directory);
+				this.streams.push(stream);
+				this.iterators.push(stream.iterator());
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		/**
+		 * Close all the open directories.
+		 */
+		@Override
+		public void run() {
+			while (!this.streams.isEmpty()) FileWalker.close(this.streams.pop());
+			this.iterators.clear();
+		}
+
+		/**
+		 * Close the given directory stream.
+		 * @param stream The <code>DirectoryStream</code>
+		 * to close.
+		 */
+		private static void close(final DirectoryStream<Path> stream) {
+			try {
+				stream.close();
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * <code>Latin1Sequence</code> defines the character
+	 * sequence view of <code>ISO-8859-1</code> contents
+	 * in a byte buffer, where each byte is a character.
+	 */
+	private static final class Latin1Sequence implements CharSequence {
+		/**
+		 * The <code>ByteBuffer</code> of the contents,
+		 * starting at index zero.
+		 */
+		private final ByteBuffer buffer;
+
+		/**
+		 * Constructor of <code>Latin1Sequence</code>.
+		 * @param buffer The <code>ByteBuffer</code> of the
+		 * contents between its position and limit.
+		 */
+		private Latin1Sequence(final ByteBuffer buffer) {
+			this.buffer = buffer.slice();
+		}
+
+		@Override
+		public int length() {
+			return this.buffer.limit();
+		}
+
+		@Override
+		public char charAt(final int index) {
+			if (index < 0 || index >= this.buffer.limit()) throw new IndexOutOfBoundsException(String.valueOf(index));
+			return (char)(this.buffer.get(index) & 0xFF);
+		}
+
+		@Override
+		public CharSequence subSequence(final int start, final int end) {
+			if (start < 0 || end > this.buffer.limit() || start > end) {
+				throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + this.buffer.limit());
+			}
+			final ByteBuffer duplicate = this.buffer.duplicate();
+			duplicate.position(start);
+			duplicate.limit(end);
+			return new Latin1Sequence(duplicate);
+		}
+
+		@Override
+		public String toString() {
+			final byte[] bytes = new byte[this.buffer.limit()];
+			this.buffer.duplicate().get(bytes);
+			return new String(bytes, StandardCharsets.ISO_8859_1);
+		}
+	}
+
+	/**
+	 * <code>ElementReader</code> defines the iterator of
+	 * the matching elements of a streaming XML reader,
+	 * which builds each matching element into its own
+	 * document as it is reached.
+	 */
+	private static final class ElementReader implements Iterator<Element>, Runnable {
+		/**
+		 * The <code>XMLStreamReader</code> to read from.
+		 */
+		private final XMLStreamReader reader;
+		/**
+		 * The <code>InputStream</code> of the reader.
+		 */
+		private final InputStream input;
+		/**
+		 * The <code>String</code> local name of the
+		 * elements to read.
+		 */
+		private final String name;
+		/**
+		 * The next <code>Element</code> to return.
+		 */
+		private Element next;
+		/**
+		 * The <code>boolean</code> flag indicating if the
+		 * end of the document is reached.
+		 */
+		private boolean ended;
+
+		/**
+		 * Constructor of <code>ElementReader</code>.
+		 * @param reader The <code>XMLStreamReader</code>
+		 * to read from.
+		 * @param input The <code>InputStream</code> of
+		 * the reader.
+		 * @param name The <code>String</code> local name
+		 * of the elements to read.
+		 */
+		private ElementReader(final XMLStreamReader reader, final InputStream input, final String name) {
+			this.reader = reader;
+			this.input = input;
+			this.name = name;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (this.next == null && !this.ended) this.advance();
+			return this.next != null;
+		}
+
+		@Override
+		public Element next() {
+			if (!this.hasNext()) throw new NoSuchElementException();
+			final Element element = this.next;
+			this.next = null;
+			return element;
+		}
+
+		/**
+		 * Advance to the next matching element, skipping
+		 * all the other events.
+		 */
+		private void advance() {
+			try {
+				while (this.reader.hasNext()) {
+					final int event = this.reader.next();
+					if (event == XMLStreamConstants.START_ELEMENT && this.name.equals(this.reader.getLocalName())) {
+						this.next = this.readElement();
+						return;
+					}
+				}
+				this.ended = true;
+			} catch (final XMLStreamException e) {
+				throw new UncheckedIOException(new IOException(e.getMessage(), e));
+			} catch (final ParserConfigurationException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		/**
+		 * Build the element at the current start element
+		 * event, consuming the events up to its end.
+		 * @return The <code>Element</code> as the root of
+		 * a new document.
+		 * @throws XMLStreamException If parsing failed.
+		 * @throws ParserConfigurationException If creating
+		 * the document builder failed.
+		 */
+		private Element readElement() throws XMLStreamException, ParserConfigurationException {
+			final DocumentBuilder builder = FileUtils.acquireDocumentBuilder();
+			final Document document;
+			try {
+				document = builder.newDocument();
+			} finally {
+				FileUtils.releaseDocumentBuilder(builder);
+			}
+			final Element root = this.createElement(document);
+			document.appendChild(root);
+			Node parent = root;
+			int depth = 1;
+			while (depth > 0) {
+				switch (this.reader.next()) {
+				case XMLStreamConstants.START_ELEMENT:
+					final Element element = this.createElement(document);
+					parent.appendChild(element);
+					parent = element;
+					depth++;
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					parent = parent.getParentNode();
+					depth--;
+					break;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.SPACE:
+				case XMLStreamConstants.ENTITY_REFERENCE:
+					parent.appendChild(document.createTextNode(this.reader.getText()));
+					break;
+				case XMLStreamConstants.CDATA:
+					parent.appendChild(document.createCDATASection(this.reader.getText()));
+					break;
+				case XMLStreamConstants.COMMENT:
+					parent.appendChild(document.createComment(this.reader.getText()));
+					break;
+				case XMLStreamConstants.PROCESSING_INSTRUCTION:
+					parent.appendChild(document.createProcessingInstruction(this.reader.getPITarget(), this.reader.getPIData()));
+					break;
+				default:
+					break;
+				}
+			}
+			return root;
+		}
+
+		/**
+		 * Create the element at the current start element
+		 * event with its namespace declarations and its
+		 * attributes.
+		 * @param document The <code>Document</code> to
+		 * create the element with.
+		 * @return The <code>Element</code>.
+		 */
+		private Element createElement(final Document document) {
+			final Element element = document.createElementNS(ElementReader.toURI(this.reader.getNamespaceURI()),
+					ElementReader.toQName(this.reader.getPrefix(), this.reader.getLocalName()));
+			final int namespaces = this.reader.getNamespaceCount();
+			for (int i = 0; i < namespaces; i++) {
+				final String prefix = this.reader.getNamespacePrefix(i);
+				final String qname = (prefix == null || prefix.isEmpty()) ? XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix;
+				final String uri = this.reader.getNamespaceURI(i);
+				element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, qname, (uri == null) ? "" : uri);
+			}
+			final int attributes = this.reader.getAttributeCount();
+			for (int i = 0; i < attributes; i++) {
+				element.setAttributeNS(ElementReader.toURI(this.reader.getAttributeNamespace(i)),
+						ElementReader.toQName(this.reader.getAttributePrefix(i), this.reader.getAttributeLocalName(i)),
+						this.reader.getAttributeValue(i));
+			}
+			return element;
+		}
+
+		/**
+		 * Convert the given namespace URI to the form used
+		 * by the document.
+		 * @param uri The <code>String</code> URI.
+		 * @return The <code>String</code> URI.
+		 * <code>null</code> if there is no namespace.
+		 */
+		private static String toURI(final String uri) {
+			return (uri == null || uri.isEmpty()) ? null : uri;
+		}
+
+		/**
+		 * Create the qualified name of the given prefix
+		 * and local name.
+		 * @param prefix The <code>String</code> prefix.
+		 * @param localName The <code>String</code> local
+		 * name.
+		 * @return The <code>String</code> qualified name.
+		 */
+		private static String toQName(final String prefix, final String localName) {
+			return (prefix == null || prefix.isEmpty()) ? localName : prefix + ":" + localName;
+		}
+
+		/**
+		 * Close the reader and its input stream.
+		 */
+		@Override
+		public void run() {
+			try {
+				this.reader.close();
+			} catch (final XMLStreamException e) {
+				throw new UncheckedIOException(new IOException(e.getMessage(), e));
+			} finally {
+				try {
+					this.input.close();
+				} catch (final IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		}
+	}
 }
@@ -0,0 +1,909 @@
+package hemera.core.utility;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipException;
+
+/**
+ * <code>JarBuilder</code> defines the builder of Jar
+ * files that compresses the entries in parallel and
+ * writes them in a deterministic order.
+ * <p>
+ * Each added directory contributes its contents at
+ * the root of the Jar file, and each added file is
+ * placed at the root by its name. Directories are
+ * written in the order of their names, with each
+ * directory entry followed by its contents. The
+ * manifest is always the first entry.
+ * <p>
+ * The entries are compressed by a pool of threads,
+ * while the Jar file is written sequentially in the
+ * entry order. Only a bounded number of compressed
+ * entries are held in memory at a time. An entry is
+ * stored instead of deflated if its extension is one
+ * of the stored extensions, such as already compressed
+ * archives and images, or if deflating does not make
+ * it smaller. Files that are too large to compress in
+ * memory are read in chunks and deflated into
+ * temporary files next to the target, thus entries of
+ * any size are supported with bounded memory.
+ * <p>
+ * By default the entries have the modification times
+ * of their files. If a timestamp is set, all entries
+ * have that time instead, encoded independently of
+ * the local time zone, thus building the same files
+ * always produces identical bytes.
+ * <p>
+ * In the incremental mode, an existing Jar file at
+ * the target is used as the base. The entries of the
+ * files whose sizes and modification times, or whose
+ * sizes and checksums, match the existing entries are
+ * copied as raw compressed bytes without compressing
+ * them again. Only the modified and new files are
+ * compressed, and entries whose files are removed are
+ * dropped.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.1
+ */
+public final class JarBuilder {
+	/**
+	 * The <code>List</code> of default extensions of
+	 * the files that are already compressed.
+	 */
+	private static final List<String> DefaultStoredExtensions = Arrays.asList(".jar", ".war", ".zip", ".gz", ".bz2",
+			".xz", ".7z", ".png", ".jpg", ".jpeg", ".gif", ".mp3", ".mp4");
+	/**
+	 * The <code>long</code> size of the largest file
+	 * that is compressed in memory.
+	 */
+	private static final long StreamThreshold = 8388608;
+	/**
+	 * The <code>long</code> maximum number of bytes held
+	 * in memory by the entries that are compressed ahead
+	 * of being written.
+	 */
+	private static final long WindowBytes = 67108864;
+	/**
+	 * The <code>int</code> size of the chunks that large
+	 * files are read in.
+	 */
+	private static final int ChunkSize = 65536;
+	/**
+	 * The <code>long</code> resolution of the MS-DOS
+	 * modification times in milliseconds.
+	 */
+	private static final long DosResolution = 2000;
+	/**
+	 * The <code>List</code> of added <code>File</code>.
+	 */
+	private final List<File> files;
+	/**
+	 * The <code>Set</code> of lower case extension
+	 * <code>String</code> of the files to store.
+	 */
+	private final Set<String> storedExtensions;
+	/**
+	 * The <code>Manifest</code> to include.
+	 */
+	private Manifest manifest;
+	/**
+	 * The <code>int</code> deflate compression level.
+	 */
+	private int level;
+	/**
+	 * The <code>Long</code> fixed modification time of
+	 * all entries. <code>null</code> if the times of the
+	 * files are used.
+	 */
+	private Long timestamp;
+	/**
+	 * The <code>int</code> number of compressing threads.
+	 */
+	private int parallelism;
+	/**
+	 * The <code>boolean</code> flag indicating if the
+	 * existing Jar file is updated incrementally.
+	 */
+	private boolean incremental;
+
+	/**
+	 * Constructor of <code>JarBuilder</code>.
+	 * <p>
+	 * The builder initially has an empty manifest, the
+	 * default compression level, the default stored
+	 * extensions and one thread per processor.
+	 */
+	public JarBuilder() {
+		this.files = new ArrayList<File>();
+		this.storedExtensions = new HashSet<String>();
+		this.setStoredExtensions(JarBuilder.DefaultStoredExtensions);
+		this.manifest = new Manifest();
+		this.level = Deflater.DEFAULT_COMPRESSION;
+		this.parallelism = Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Add the given file or directory.
+	 * @param file The <code>File</code> to add.
+	 * @return This <code>JarBuilder</code>.
+	 */
+	public JarBuilder add(final File file) {
+		this.files.add(file);
+		return this;
+	}
+
+	/**
+	 * Add all the given files and directories.
+	 * @param files The <code>List</code> of
+	 * <code>File</code> to add.
+	 * @return This <code>JarBuilder</code>.
+	 */
+	public JarBuilder addAll(final List<File> files) {
+		this.files.addAll(files);
+		return this;
+	}
+
+	/**
+	 * Set the manifest to include.
+	 * @param manifest The <code>Manifest</code> to
+	 * include.
+	 * @return This <code>JarBuilder</code>.
+	 */
+	public JarBuilder setManifest(final Manifest manifest) {
+		if (manifest == null) throw new IllegalArgumentException("Manifest cannot be null.");
+		this.manifest = manifest;
+		return this;
+	}
+
+	/**
+	 * Set the deflate compression level.
+	 * @param level The <code>int</code> level from
+	 * <code>Deflater.NO_COMPRESSION</code>, which stores
+	 * all entries, to <code>Deflater.BEST_COMPRESSION</code>.
+	 * <code>Deflater.DEFAULT_COMPRESSION</code> for the
+	 * default level.
+	 * @return This <code>JarBuilder</code>.
+	 */
+	public JarBuilder setLevel(final int level) {
+		if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+			throw new IllegalArgumentException("Invalid compression level: " + level);
+		}
+		this.level = level;
+		return this;
+	}
+
+	/**
+	 * Set the fixed modification time of all entries.
+	 * @param timestamp The <code>long</code> time in
+	 * milliseconds since the epoch.
+	 * @return This <code>JarBuilder</code>.
+	 */
+	public JarBuilder setTimestamp(final long timestamp) {
+		this.timestamp = Long.valueOf(timestamp);
+		return this;
+	}
+
+	/**
+	 * Set the extensions of the files that should be
+	 * stored without compression.
+	 * @param extensions The <code>List</code> of file
+	 * extension <code>String</code>, which are matched
+	 * ignoring case.
+	 * @return This <code>JarBuilder</code>.
+	 */
+	public JarBuilder setStoredExtensions(final List<String> extensions) {
+		this.storedExtensions.clear();
+		for (final String extension : extensions) {
+			final String valid = FileUtils.instance.getValidExtension(extension);
+			if (!valid.isEmpty()) this.storedExtensions.add(valid);
+		}
+		return this;
+	}
+
+	/**
+	 * Set the number of threads that compress entries.
+	 * @param parallelism The <code>int</code> number of
+	 * threads.
+	 * @return This <code>JarBuilder</code>.
+	 */
+	public JarBuilder setParallelism(final int parallelism) {
+		if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be positive.");
+		this.parallelism = parallelism;
+		return this;
+	}
+
+	/**
+	 * Set if the existing Jar file at the target should
+	 * be updated incrementally, reusing the compressed
+	 * entries of the unchanged files. An existing file
+	 * that is not a valid Jar file is replaced entirely.
+	 * @param incremental <code>true</code> to update the
+	 * existing Jar file incrementally.
+	 * @return This <code>JarBuilder</code>.
+	 */
+	public JarBuilder setIncremental(final boolean incremental) {
+		this.incremental = incremental;
+		return this;
+	}
+
+	/**
+	 * Build the Jar file at the given target location.
+	 * The Jar file is written to a temporary file that
+	 * atomically replaces the target.
+	 * @param target The <code>String</code> path to
+	 * store the Jar file.
+	 * @return The Jar <code>File</code>.
+	 * @throws IOException If reading any file or writing
+	 * the Jar file failed, or there are duplicate entries.
+	 */
+	public File build(final String target) throws IOException {
+		final List<Source> sources = this.collect();
+		final File jarfile = new File(target);
+		final Path temp = FileUtils.newTempFile(jarfile.toPath());
+		boolean written = false;
+		try {
+			FileChannel previous = null;
+			long built = 0;
+			try {
+				final Map<String, ZipDirectory.Record> records = new HashMap<String, ZipDirectory.Record>();
+				if (this.incremental && jarfile.isFile()) {
+					built = jarfile.lastModified();
+					previous = FileChannel.open(jarfile.toPath(), StandardOpenOption.READ);
+					try {
+						for (final ZipDirectory.Record record : ZipDirectory.read(previous)) {
+							if (record.isCopyable()) records.put(record.name, record);
+						}
+					} catch (final ZipException e) {
+						// Not a valid Jar file, thus build it entirely.
+						records.clear();
+					}
+				}
+				this.write(sources, temp, previous, records, built);
+			} finally {
+				if (previous != null) previous.close();
+			}
+			FileUtils.replace(temp, jarfile.toPath());
+			written = true;
+		} finally {
+			if (!written) Files.deleteIfExists(temp);
+		}
+		return jarfile;
+	}
+
+	/**
+	 * Collect the entries of the manifest and all the
+	 * added files in the entry order.
+	 * @return The <code>List</code> of <code>Source</code>.
+	 * @throws IOException If an entry is duplicated.
+	 */
+	private List<Source> collect() throws IOException {
+		final List<Source> sources = new ArrayList<Source>();
+		final ByteArrayOutputStream manifestBytes = new ByteArrayOutputStream();
+		this.manifest.write(manifestBytes);
+		final long now = System.currentTimeMillis();
+		sources.add(new Source(JarFile.MANIFEST_NAME, null, manifestBytes.toByteArray(), now));
+		for (final File file : this.files) {
+			if (file.isDirectory()) {
+				final File[] children = JarBuilder.listSorted(file);
+				for (int i = 0; i < children.length; i++) this.collect(children[i], "", sources);
+			} else {
+				this.collect(file, "", sources);
+			}
+		}
+		// Reject duplicates as JarOutputStream does.
+		final Set<String> names = new HashSet<String>();
+		for (final Source source : sources) {
+			if (!names.add(source.name)) throw new ZipException("duplicate entry: " + source.name);
+		}
+		return sources;
+	}
+
+	/**
+	 * Collect the entries of the given file.
+	 * @param file The <code>File</code> to collect.
+	 * @param parent The <code>String</code> entry name
+	 * of the parent directory.
+	 * @param sources The <code>List</code> of
+	 * <code>Source</code> to add to.
+	 */
+	private void collect(final File file, final String parent, final List<Source> sources) {
+		// Use explicit slash here since this is within Jar.
+		final String name = parent + file.getName();
+		if (file.isDirectory()) {
+			final String directory = name + "/";
+			sources.add(new Source(directory, null, null, file.lastModified()));
+			final File[] children = JarBuilder.listSorted(file);
+			for (int i = 0; i < children.length; i++) this.collect(children[i], directory, sources);
+		} else {
+			sources.add(new Source(name, file, null, file.lastModified()));
+		}
+	}
+
+	/**
+	 * List the children of the given directory in the
+	 * order of their names.
+	 * @param directory The directory <code>File</code>.
+	 * @return The <code>File</code> array of children.
+	 */
+	private static File[] listSorted(final File directory) {
+		final File[] children = directory.listFiles();
+		if (children == null) return new File[0];
+		Arrays.sort(children);
+		return children;
+	}
+
+	/**
+	 * Compress the given entries in parallel and write
+	 * them in order to the given file.
+	 * @param sources The <code>List</code> of
+	 * <code>Source</code> to write.
+	 * @param path The <code>Path</code> to write to.
+	 * @param previous The <code>FileChannel</code> of
+	 * the existing Jar file. <code>null</code> if there
+	 * is none.
+	 * @param records The <code>Map</code> of the entry
+	 * name <code>String</code> to the reusable
+	 * <code>ZipDirectory.Record</code> of the existing
+	 * Jar file.
+	 * @param built The <code>long</code> modification
+	 * time of the existing Jar file.
+	 * @throws IOException If reading any file or writing
+	 * the Jar file failed.
+	 */
+	private void write(final List<Source> sources, final Path path, final FileChannel previous,
+			final Map<String, ZipDirectory.Record> records, final long built) throws IOException {
+		final ZoneId zone = (this.timestamp == null) ? ZoneId.systemDefault() : ZoneOffset.UTC;
+		// Bound the number and the bytes of compressed entries held in memory.
+		final int window = this.parallelism * 4;
+		final ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+		final Queue<File> spills = new ConcurrentLinkedQueue<File>();
+		ZipWriter writer = null;
+		try {
+			writer = new ZipWriter(new BufferedOutputStream(Files.newOutputStream(path), 65536));
+			final Deque<Future<Compressed>> pending = new ArrayDeque<Future<Compressed>>();
+			final int size = sources.size();
+			final long[] footprints = new long[size];
+			long held = 0;
+			int submitted = 0;
+			for (int i = 0; i < size; i++) {
+				while (submitted < size && submitted < i + window) {
+					final Source source = sources.get(submitted);
+					final long footprint = JarBuilder.getFootprint(source);
+					// Always compress the next entry to write however large it is.
+					if (submitted > i && held + footprint > JarBuilder.WindowBytes) break;
+					footprints[submitted] = footprint;
+					held += footprint;
+					final ZipDirectory.Record record = (source.file == null) ? null : records.get(source.name);
+					// A file modified within the time resolution of the existing Jar file may have
+					// changed after it was read, keeping the same time.
+					final boolean trustTime = this.timestamp == null && source.time + JarBuilder.DosResolution <= built;
+					pending.add(pool.submit(new CompressTask(source, this.getDosTime(source, zone), this.level,
+							this.storedExtensions, previous, record, trustTime, path, spills)));
+					submitted++;
+				}
+				final Source source = sources.get(i);
+				final Compressed compressed = JarBuilder.await(pending.poll());
+				held -= footprints[i];
+				// Mark the first entry as a Jar file as JarOutputStream does.
+				final byte[] extra = (i == 0) ? new byte[] {(byte)0xFE, (byte)0xCA, 0, 0} : null;
+				writer.writeHeader(source.name, compressed.method, this.getDosTime(source, zone), compressed.crc,
+						compressed.size, compressed.length, extra);
+				if (compressed.data != null) writer.write(compressed.data, 0, (int)compressed.length);
+				else if (compressed.file != null) JarBuilder.transfer(writer, compressed, spills);
+				else writer.transfer(previous, compressed.offset, compressed.length);
+			}
+			writer.finish();
+		} finally {
+			pool.shutdownNow();
+			try {
+				if (writer != null) writer.close();
+			} finally {
+				JarBuilder.deleteSpills(pool, spills);
+			}
+		}
+	}
+
+	/**
+	 * Retrieve the number of bytes the given entry holds
+	 * in memory while it is compressed ahead of being
+	 * written, which includes its contents and their
+	 * compressed copy.
+	 * @param source The <code>Source</code> entry.
+	 * @return The <code>long</code> number of bytes.
+	 */
+	private static long getFootprint(final Source source) {
+		if (source.data != null) return source.data.length * 2L;
+		if (source.file == null) return 0;
+		final long length = source.file.length();
+		return (length > JarBuilder.StreamThreshold) ? JarBuilder.ChunkSize * 2L : length * 2;
+	}
+
+	/**
+	 * Write the compressed data of the given entry from
+	 * its file, and delete the file if it is temporary.
+	 * @param writer The <code>ZipWriter</code> to write
+	 * with.
+	 * @param compressed The <code>Compressed</code> entry
+	 * with its data in a file.
+	 * @param spills The <code>Queue</code> of temporary
+	 * <code>File</code> to remove the file from.
+	 * @throws IOException If reading or writing failed.
+	 */
+	private static void transfer(final ZipWriter writer, final Compressed compressed, final Queue<File> spills) throws IOException {
+		FileChannel channel = null;
+		try {
+			channel = FileChannel.open(compressed.file.toPath(), StandardOpenOption.READ);
+			writer.transfer(channel, compressed.offset, compressed.length);
+		} finally {
+			if (channel != null) channel.close();
+			if (compressed.temporary) {
+				Files.deleteIfExists(compressed.file.toPath());
+				spills.remove(compressed.file);
+			}
+		}
+	}
+
+	/**
+	 * Delete the temporary files of the entries that are
+	 * not written, once the compressing threads stop.
+	 * @param pool The <code>ForkJoinPool</code> that is
+	 * shut down.
+	 * @param spills The <code>Queue</code> of remaining
+	 * temporary <code>File</code>.
+	 * @throws IOException If deleting any file failed.
+	 */
+	private static void deleteSpills(final ForkJoinPool pool, final Queue<File> spills) throws IOException {
+		if (spills.isEmpty()) return;
+		try {
+			pool.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		while (!spills.isEmpty()) Files.deleteIfExists(spills.poll().toPath());
+	}
+
+	/**
+	 * Retrieve the MS-DOS modification time of the given
+	 * entry.
+	 * @param source The <code>Source</code> entry.
+	 * @param zone The <code>ZoneId</code> of the local
+	 * date-time.
+	 * @return The <code>long</code> MS-DOS time.
+	 */
+	private long getDosTime(final Source source, final ZoneId zone) {
+		final long time = (this.timestamp == null) ? source.time : this.timestamp.longValue();
+		return ZipWriter.toDosTime(time, zone);
+	}
+
+	/**
+	 * Read the given file in chunks, updating the given
+	 * checksum and writing the contents to the given
+	 * stream.
+	 * @param file The <code>File</code> to read.
+	 * @param crc The <code>CRC32</code> to update.
+	 * @param output The <code>OutputStream</code> to
+	 * write to. <code>null</code> if the contents are
+	 * only checksummed.
+	 * @return The <code>long</code> number of bytes read.
+	 * @throws IOException If reading or writing failed.
+	 */
+	private static long read(final File file, final CRC32 crc, final OutputStream output) throws IOException {
+		final byte[] buffer = new byte[JarBuilder.ChunkSize];
+		long total = 0;
+		InputStream input = null;
+		try {
+			input = Files.newInputStream(file.toPath());
+			while (true) {
+				final int count = input.read(buffer);
+				if (count < 0) break;
+				crc.update(buffer, 0, count);
+				if (output != null) output.write(buffer, 0, count);
+				total += count;
+			}
+		} finally {
+			if (input != null) input.close();
+		}
+		return total;
+	}
+
+	/**
+	 * Wait for the given compression to complete.
+	 * @param future The <code>Future</code> of the
+	 * <code>Compressed</code> entry.
+	 * @return The <code>Compressed</code> entry.
+	 * @throws IOException If the compression failed.
+	 */
+	private static Compressed await(final Future<Compressed> future) throws IOException {
+		try {
+			return future.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while compressing.", e);
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException) throw (IOException)cause;
+			if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+			if (cause instanceof Error) throw (Error)cause;
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * <code>Source</code> defines a single entry to be
+	 * written, with its contents in a file or in memory.
+	 */
+	private static final class Source {
+		/**
+		 * The <code>String</code> entry name.
+		 */
+		private final String name;
+		/**
+		 * The <code>File</code> of the contents.
+		 * <code>null</code> if the contents are in memory
+		 * or the entry is a directory.
+		 */
+		private final File file;
+		/**
+		 * The <code>byte</code> array of the contents.
+		 * <code>null</code> if the contents are in a file
+		 * or the entry is a directory.
+		 */
+		private final byte[] data;
+		/**
+		 * The <code>long</code> modification time.
+		 */
+		private final long time;
+
+		/**
+		 * Constructor of <code>Source</code>.
+		 * @param name The <code>String</code> entry name.
+		 * @param file The <code>File</code> of the contents.
+		 * @param data The <code>byte</code> array of the
+		 * contents.
+		 * @param time The <code>long</code> modification
+		 * time.
+		 */
+		private Source(final String name, final File file, final byte[] data, final long time) {
+			this.name = name;
+			this.file = file;
+			this.data = data;
+			this.time = time;
+		}
+	}
+
+	/**
+	 * <code>Compressed</code> defines the compressed
+	 * data of an entry.
+	 */
+	private static final class Compressed {
+		/**
+		 * The <code>int</code> compression method.
+		 */
+		private final int method;
+		/**
+		 * The <code>long</code> CRC-32 of the contents.
+		 */
+		private final long crc;
+		/**
+		 * The <code>long</code> number of uncompressed
+		 * bytes.
+		 */
+		private final long size;
+		/**
+		 * The <code>byte</code> array of compressed data.
+		 * <code>null</code> if the data is copied from a
+		 * file.
+		 */
+		private final byte[] data;
+		/**
+		 * The <code>File</code> of the compressed data.
+		 * <code>null</code> if the data is in memory or in
+		 * the existing Jar file.
+		 */
+		private final File file;
+		/**
+		 * The <code>boolean</code> flag indicating if the
+		 * file is a temporary file to delete once written.
+		 */
+		private final boolean temporary;
+		/**
+		 * The <code>long</code> position of the compressed
+		 * data in its file.
+		 */
+		private final long offset;
+		/**
+		 * The <code>long</code> number of compressed bytes.
+		 */
+		private final long length;
+
+		/**
+		 * Constructor of <code>Compressed</code>.
+		 * @param method The <code>int</code> compression
+		 * method.
+		 * @param crc The <code>long</code> CRC-32 of the
+		 * contents.
+		 * @param size The <code>long</code> number of
+		 * uncompressed bytes.
+		 * @param data The <code>byte</code> array of
+		 * compressed data.
+		 * @param length The <code>int</code> number of
+		 * compressed bytes in the array.
+		 */
+		private Compressed(final int method, final long crc, final long size, final byte[] data, final int length) {
+			this.method = method;
+			this.crc = crc;
+			this.size = size;
+			this.data = data;
+			this.file = null;
+			this.temporary = false;
+			this.offset = -1;
+			this.length = length;
+		}
+
+		/**
+		 * Constructor of <code>Compressed</code>.
+		 * @param method The <code>int</code> compression
+		 * method.
+		 * @param crc The <code>long</code> CRC-32 of the
+		 * contents.
+		 * @param size The <code>long</code> number of
+		 * uncompressed bytes.
+		 * @param file The <code>File</code> of compressed
+		 * data.
+		 * @param length The <code>long</code> number of
+		 * compressed bytes in the file.
+		 * @param temporary <code>true</code> if the file is
+		 * deleted once written.
+		 */
+		private Compressed(final int method, final long crc, final long size, final File file, final long length,
+				final boolean temporary) {
+			this.method = method;
+			this.crc = crc;
+			this.size = size;
+			this.data = null;
+			this.file = file;
+			this.temporary = temporary;
+			this.offset = 0;
+			this.length = length;
+		}
+
+		/**
+		 * Constructor of <code>Compressed</code>.
+		 * @param record The <code>ZipDirectory.Record</code>
+		 * of the reused entry.
+		 * @param offset The <code>long</code> position of
+		 * the compressed data in the existing Jar file.
+		 */
+		private Compressed(final ZipDirectory.Record record, final long offset) {
+			this.method = record.method;
+			this.crc = record.crc;
+			this.size = record.size;
+			this.data = null;
+			this.file = null;
+			this.temporary = false;
+			this.offset = offset;
+			this.length = record.compressedSize;
+		}
+	}
+
+	/**
+	 * <code>CompressTask</code> defines the task that
+	 * reads and compresses a single entry, or reuses the
+	 * entry of the existing Jar file if it is unchanged.
+	 */
+	private static final class CompressTask implements Callable<Compressed> {
+		/**
+		 * The <code>Source</code> to compress.
+		 */
+		private final Source source;
+		/**
+		 * The <code>int</code> deflate compression level.
+		 */
+		private final int level;
+		/**
+		 * The <code>Set</code> of lower case extension
+		 * <code>String</code> of the files to store.
+		 */
+		private final Set<String> storedExtensions;
+		/**
+		 * The <code>long</code> MS-DOS modification time
+		 * of the entry.
+		 */
+		private final long dosTime;
+		/**
+		 * The <code>FileChannel</code> of the existing Jar
+		 * file. <code>null</code> if there is none.
+		 */
+		private final FileChannel previous;
+		/**
+		 * The existing <code>ZipDirectory.Record</code> of
+		 * the entry. <code>null</code> if there is none.
+		 */
+		private final ZipDirectory.Record record;
+		/**
+		 * The <code>boolean</code> flag indicating if equal
+		 * sizes and modification times are trusted to mean
+		 * the entry is unchanged.
+		 */
+		private final boolean trustTime;
+		/**
+		 * The <code>Path</code> of the Jar file being
+		 * written, next to which temporary files are
+		 * created.
+		 */
+		private final Path path;
+		/**
+		 * The <code>Queue</code> to add the created
+		 * temporary <code>File</code> to.
+		 */
+		private final Queue<File> spills;
+
+		/**
+		 * Constructor of <code>CompressTask</code>.
+		 * @param source The <code>Source</code> to compress.
+		 * @param dosTime The <code>long</code> MS-DOS
+		 * modification time of the entry.
+		 * @param level The <code>int</code> deflate
+		 * compression level.
+		 * @param storedExtensions The <code>Set</code> of
+		 * lower case extensions of the files to store.
+		 * @param previous The <code>FileChannel</code> of
+		 * the existing Jar file.
+		 * @param record The existing <code>ZipDirectory.Record</code>
+		 * of the entry.
+		 * @param trustTime <code>true</code> if equal sizes
+		 * and modification times mean the entry is unchanged.
+		 * @param path The <code>Path</code> of the Jar file
+		 * being written.
+		 * @param spills The <code>Queue</code> to add the
+		 * created temporary <code>File</code> to.
+		 */
+		private CompressTask(final Source source, final long dosTime, final int level, final Set<String> storedExtensions,
+				final FileChannel previous, final ZipDirectory.Record record, final boolean trustTime, final Path path,
+				final Queue<File> spills) {
+			this.source = source;
+			this.dosTime = dosTime;
+			this.level = level;
+			this.storedExtensions = storedExtensions;
+			this.previous = previous;
+			this.record = record;
+			this.trustTime = trustTime;
+			this.path = path;
+			this.spills = spills;
+		}
+
+		@Override
+		public Compressed call() throws IOException {
+			if (this.source.file == null && this.source.data == null) {
+				return new Compressed(ZipWriter.Stored, 0, 0, new byte[0], 0);
+			}
+			// Reuse the existing entry without reading the file if the time matches.
+			final boolean sized = this.record != null && this.record.size == this.source.file.length();
+			if (sized && this.trustTime && this.record.dosTime == this.dosTime) return this.reuse();
+			if (this.source.file != null && this.source.file.length() > JarBuilder.StreamThreshold) return this.stream(sized);
+			final byte[] bytes = (this.source.data != null) ? this.source.data : FileUtils.instance.readAsBytes(this.source.file);
+			final CRC32 crc = new CRC32();
+			crc.update(bytes, 0, bytes.length);
+			if (sized && this.record.size == bytes.length && this.record.crc == crc.getValue()) return this.reuse();
+			final Compressed stored = new Compressed(ZipWriter.Stored, crc.getValue(), bytes.length, bytes, bytes.length);
+			if (this.level == Deflater.NO_COMPRESSION || this.isStored()) return stored;
+			final Deflater deflater = new Deflater(this.level, true);
+			try {
+				deflater.setInput(bytes);
+				deflater.finish();
+				// Store the entry if deflating does not make it smaller.
+				final byte[] output = new byte[bytes.length];
+				int length = 0;
+				while (!deflater.finished() && length < output.length) {
+					length += deflater.deflate(output, length, output.length-length);
+				}
+				if (!deflater.finished() || length >= bytes.length) return stored;
+				return new Compressed(ZipWriter.Deflated, crc.getValue(), bytes.length, output, length);
+			} finally {
+				deflater.end();
+			}
+		}
+
+		/**
+		 * Compress the large file of the entry in chunks into
+		 * a temporary file, or reuse the existing entry if
+		 * the checksum matches.
+		 * @param sized <code>true</code> if the existing
+		 * entry has the same size.
+		 * @return The <code>Compressed</code> entry with its
+		 * data in a file.
+		 * @throws IOException If reading the file or writing
+		 * the temporary file failed.
+		 */
+		private Compressed stream(final boolean sized) throws IOException {
+			final File file = this.source.file;
+			final boolean stored = (this.level == Deflater.NO_COMPRESSION || this.isStored());
+			// Check the checksum first to avoid compressing a reused or stored entry.
+			if (sized || stored) {
+				final CRC32 crc = new CRC32();
+				final long size = JarBuilder.read(file, crc, null);
+				if (sized && this.record.size == size && this.record.crc == crc.getValue()) return this.reuse();
+				if (stored) return new Compressed(ZipWriter.Stored, crc.getValue(), size, file, size, false);
+			}
+			final Path spill = FileUtils.newTempFile(this.path);
+			this.spills.add(spill.toFile());
+			final CRC32 crc = new CRC32();
+			final long size;
+			final Deflater deflater = new Deflater(this.level, true);
+			try {
+				OutputStream output = null;
+				try {
+					output = new DeflaterOutputStream(Files.newOutputStream(spill), deflater, JarBuilder.ChunkSize);
+					size = JarBuilder.read(file, crc, output);
+				} finally {
+					if (output != null) output.close();
+				}
+			} finally {
+				deflater.end();
+			}
+			final long length = Files.size(spill);
+			// Store the entry if deflating does not make it smaller.
+			if (length >= size) {
+				Files.delete(spill);
+				this.spills.remove(spill.toFile());
+				return new Compressed(ZipWriter.Stored, crc.getValue(), size, file, size, false);
+			}
+			return new Compressed(ZipWriter.Deflated, crc.getValue(), size, spill.toFile(), length, true);
+		}
+
+		/**
+		 * Reuse the compressed data of the existing entry.
+		 * @return The <code>Compressed</code> entry that is
+		 * copied from the existing Jar file.
+		 * @throws IOException If locating the data failed.
+		 */
+		private Compressed reuse() throws IOException {
+			return new Compressed(this.record, ZipDirectory.getDataOffset(this.previous, this.record));
+		}
+
+		/**
+		 * Check if the entry has one of the stored
+		 * extensions.
+		 * @return <code>true</code> if the entry should be
+		 * stored. <code>false</code> otherwise.
+		 */
+		private boolean isStored() {
+			final String name = this.source.name;
+			final int index = name.lastIndexOf('.');
+			if (index < 0 || name.indexOf('/', index) >= 0) return false;
+			return this.storedExtensions.contains(name.substring(index).toLowerCase());
+		}
+	}
+}
@@ -0,0 +1,638 @@
+package hemera.core.utility;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+
+/**
+ * <code>JarExtractor</code> defines the extractor of
+ * the entries of a Jar file into a directory, which
+ * keeps a cache manifest of the extracted entries, so
+ * that extracting the same Jar file again only writes
+ * the entries that changed.
+ * <p>
+ * The cache manifest is a hidden file in the target
+ * directory, specific to the Jar file and the selected
+ * entries. It records the size and the modification
+ * time of the Jar file, and the checksum and the size
+ * of each extracted entry together with the time its
+ * file was written. An extracted file is up to date
+ * if its entry has the same checksum and size, and the
+ * file still has the recorded size and modification
+ * time. With verification enabled, the contents of the
+ * file are also checked against the entry checksum.
+ * The files are verified in parallel.
+ * <p>
+ * If the Jar file has the recorded size and time, the
+ * entries are taken from the cache manifest and the
+ * Jar file is only opened if any file is out of date.
+ * Only the out of date entries are extracted, and in
+ * parallel.
+ * <p>
+ * As with <code>FileUtils.writeAll</code>, entries
+ * are written into the directory by their file names,
+ * and directories and the Jar manifest are not
+ * extracted.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public final class JarExtractor {
+	/**
+	 * The <code>int</code> value identifying the format
+	 * of the cache manifest.
+	 */
+	private static final int CacheFormat = 0x484A5801;
+	/**
+	 * The <code>int</code> maximum number of files
+	 * verified by a single task.
+	 */
+	private static final int VerifyBatchSize = 64;
+	/**
+	 * The <code>long</code> maximum number of bytes
+	 * checksummed by a single task.
+	 */
+	private static final long VerifyBatchBytes = 1048576;
+	/**
+	 * The Jar <code>File</code> to extract.
+	 */
+	private final File jarFile;
+	/**
+	 * The <code>String</code> path of the package whose
+	 * entries are extracted. <code>null</code> if all
+	 * entries are extracted.
+	 */
+	private String packagePath;
+	/**
+	 * The <code>List</code> of <code>File</code> to
+	 * exclude by their names.
+	 */
+	private final List<File> exclusion;
+	/**
+	 * The <code>boolean</code> flag indicating if the
+	 * contents of the files are verified.
+	 */
+	private boolean verify;
+	/**
+	 * The <code>int</code> number of threads.
+	 */
+	private int parallelism;
+	/**
+	 * The <code>int</code> number of entries written by
+	 * the last extraction.
+	 */
+	private int extractedCount;
+
+	/**
+	 * Constructor of <code>JarExtractor</code>.
+	 * <p>
+	 * The extractor initially extracts all the entries
+	 * without verifying the contents of the files.
+	 * @param jarFile The Jar <code>File</code> to
+	 * extract.
+	 */
+	public JarExtractor(final File jarFile) {
+		this.jarFile = jarFile;
+		this.exclusion = new ArrayList<File>();
+		this.parallelism = FileUtils.DefaultParallelism;
+	}
+
+	/**
+	 * Set the package whose entries are extracted,
+	 * including all of its sub-packages.
+	 * @param packagePath The <code>String</code> path
+	 * of the package in the format of a/b/c instead of
+	 * a.b.c. <code>null</code> if all the entries are
+	 * extracted.
+	 * @return This <code>JarExtractor</code>.
+	 */
+	public JarExtractor setPackage(final String packagePath) {
+		this.packagePath = packagePath;
+		return this;
+	}
+
+	/**
+	 * Exclude the given files by their names, ignoring
+	 * case.
+	 * @param exclusion The <code>List</code> of all
+	 * <code>File</code> to exclude.
+	 * @return This <code>JarExtractor</code>.
+	 */
+	public JarExtractor setExclusion(final List<File> exclusion) {
+		this.exclusion.clear();
+		if (exclusion != null) this.exclusion.addAll(exclusion);
+		return this;
+	}
+
+	/**
+	 * Set if the contents of the extracted files are
+	 * verified against the entry checksums, in addition
+	 * to their sizes and modification times.
+	 * @param verify <code>true</code> if the contents
+	 * are verified. <code>false</code> otherwise.
+	 * @return This <code>JarExtractor</code>.
+	 */
+	public JarExtractor setVerify(final boolean verify) {
+		this.verify = verify;
+		return this;
+	}
+
+	/**
+	 * Set the number of threads that verify and extract
+	 * the files.
+	 * @param parallelism The <code>int</code> number of
+	 * threads.
+	 * @return This <code>JarExtractor</code>.
+	 */
+	public JarExtractor setParallelism(final int parallelism) {
+		if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be positive.");
+		this.parallelism = parallelism;
+		return this;
+	}
+
+	/**
+	 * Extract the selected entries that are not up to
+	 * date into the given directory, and update the
+	 * cache manifest.
+	 * @param path The <code>String</code> directory
+	 * to write the entries to.
+	 * @return The <code>List</code> of all the selected
+	 * entry <code>File</code>, including the ones that
+	 * are up to date. <code>null</code> if there are
+	 * none.
+	 * @throws IOException If any file processing failed.
+	 */
+	public List<File> extract(final String path) throws IOException {
+		this.extractedCount = 0;
+		final String dirPath = FileUtils.instance.getValidDir(path);
+		final File dir = new File(dirPath);
+		dir.mkdirs();
+		final String key = this.getKey();
+		final File cacheFile = new File(dir, "." + this.jarFile.getName() + "." + Integer.toHexString(key.hashCode()) + ".cache");
+		final Cache cache = this.readCache(cacheFile, key);
+		final Map<String, Record> cached = (cache == null) ? new HashMap<String, Record>() : cache.records;
+		final long jarSize = this.jarFile.length();
+		final long jarModified = this.jarFile.lastModified();
+		final boolean current = (cache != null && cache.jarSize == jarSize && cache.jarModified == jarModified);
+		JarFile jar = null;
+		try {
+			// Use the cached entries if the Jar file is unchanged, otherwise list the entries.
+			final List<Record> records;
+			if (current) {
+				records = new ArrayList<Record>(cached.values());
+			} else {
+				jar = new JarFile(this.jarFile);
+				records = this.listRecords(jar, cacheFile.getName());
+			}
+			final boolean[] stale = new boolean[records.size()];
+			this.invoke(new VerifyTask(dir, records, cached, this.verify, stale, 0, records.size()));
+			final Map<String, JarEntry> entries = new LinkedHashMap<String, JarEntry>();
+			for (int i = 0; i < stale.length; i++) {
+				if (!stale[i]) continue;
+				if (jar == null) jar = new JarFile(this.jarFile);
+				final Record record = records.get(i);
+				final JarEntry entry = jar.getJarEntry(record.entryName);
+				if (entry != null) entries.put(record.filename, entry);
+			}
+			if (!entries.isEmpty()) FileUtils.instance.extract(jar, entries, dirPath, this.parallelism);
+			this.extractedCount = entries.size();
+			if (current && entries.isEmpty()) return this.toFiles(dirPath, records);
+			// Record the written files.
+			final List<Record> updated = new ArrayList<Record>(records.size());
+			for (int i = 0; i < records.size(); i++) {
+				final Record record = records.get(i);
+				if (!stale[i]) {
+					updated.add(cached.get(record.filename));
+				} else {
+					final JarEntry entry = entries.get(record.filename);
+					if (entry == null) continue;
+					final long modified = new File(dirPath + record.filename).lastModified();
+					updated.add(new Record(record.filename, record.entryName, entry.getCrc(), entry.getSize(), modified));
+				}
+			}
+			this.writeCache(cacheFile, key, jarSize, jarModified, updated);
+			return this.toFiles(dirPath, updated);
+		} finally {
+			if (jar != null) jar.close();
+		}
+	}
+
+	/**
+	 * Retrieve the number of entries written by the
+	 * last extraction.
+	 * @return The <code>int</code> number of entries.
+	 */
+	public int getExtractedCount() {
+		return this.extractedCount;
+	}
+
+	/**
+	 * Retrieve the key that identifies the Jar file and
+	 * the selected entries.
+	 * @return The <code>String</code> key.
+	 * @throws IOException If resolving the Jar file
+	 * failed.
+	 */
+	private String getKey() throws IOException {
+		final StringBuilder builder = new StringBuilder(this.jarFile.getCanonicalPath());
+		if (this.packagePath != null) builder.append("\npackage:").append(this.packagePath);
+		final TreeSet<String> excluded = new TreeSet<String>();
+		for (final File file : this.exclusion) excluded.add(file.getName().toLowerCase());
+		for (final String name : excluded) builder.append("\nexclude:").append(name);
+		return builder.toString();
+	}
+
+	/**
+	 * List the selected entries of the given Jar file.
+	 * @param jar The open <code>JarFile</code>.
+	 * @param cacheName The <code>String</code> name of
+	 * the cache manifest, which is never extracted.
+	 * @return The <code>List</code> of <code>Record</code>
+	 * of the entries, without modification times.
+	 */
+	private List<Record> listRecords(final JarFile jar, final String cacheName) {
+		final Set<String> excluded = new HashSet<String>();
+		for (final File file : this.exclusion) excluded.add(file.getName().toLowerCase());
+		final Map<String, Record> records = new LinkedHashMap<String, Record>();
+		final Enumeration<JarEntry> enumeration = jar.entries();
+		while (enumeration.hasMoreElements()) {
+			final JarEntry entry = enumeration.nextElement();
+			if (!FileUtils.isExtractable(entry)) continue;
+			if (this.packagePath != null && !entry.getName().startsWith(this.packagePath)) continue;
+			final String filename = FileUtils.getEntryFilename(entry);
+			if (excluded.contains(filename.toLowerCase()) || filename.equals(cacheName)) continue;
+			// Keep the last entry of the same file name.
+			records.remove(filename);
+			records.put(filename, new Record(filename, entry.getName(), entry.getCrc(), entry.getSize(), -1));
+		}
+		return new ArrayList<Record>(records.values());
+	}
+
+	/**
+	 * Read the cache manifest.
+	 * @param cacheFile The cache manifest <code>File</code>.
+	 * @param key The <code>String</code> key of the
+	 * selection.
+	 * @return The <code>Cache</code>. <code>null</code>
+	 * if there is no valid cache manifest.
+	 */
+	private Cache readCache(final File cacheFile, final String key) {
+		if (!cacheFile.isFile()) return null;
+		DataInputStream input = null;
+		try {
+			input = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile.toPath())));
+			if (input.readInt() != JarExtractor.CacheFormat || !input.readUTF().equals(key)) return null;
+			final long jarSize = input.readLong();
+			final long jarModified = input.readLong();
+			final int count = input.readInt();
+			final Map<String, Record> records = new LinkedHashMap<String, Record>();
+			for (int i = 0; i < count; i++) {
+				final Record record = new Record(input.readUTF(), input.readUTF(), input.readLong(), input.readLong(), input.readLong());
+				records.put(record.filename, record);
+			}
+			return new Cache(jarSize, jarModified, records);
+		} catch (final IOException e) {
+			// A corrupted cache manifest is rebuilt.
+			return null;
+		} finally {
+			if (input != null) {
+				try {
+					input.close();
+				} catch (final IOException e) {
+					// Ignore.
+				}
+			}
+		}
+	}
+
+	/**
+	 * Atomically write the cache manifest.
+	 * @param cacheFile The cache manifest <code>File</code>.
+	 * @param key The <code>String</code> key of the
+	 * selection.
+	 * @param jarSize The <code>long</code> size of the
+	 * Jar file.
+	 * @param jarModified The <code>long</code> time the
+	 * Jar file was modified.
+	 * @param records The <code>List</code> of extracted
+	 * <code>Record</code>.
+	 * @throws IOException If writing failed.
+	 */
+	private void writeCache(final File cacheFile, final String key, final long jarSize, final long jarModified,
+			final List<Record> records) throws IOException {
+		final Path temp = FileUtils.newTempFile(cacheFile.toPath());
+		boolean written = false;
+		try {
+			DataOutputStream output = null;
+			try {
+				output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)));
+				output.writeInt(JarExtractor.CacheFormat);
+				output.writeUTF(key);
+				output.writeLong(jarSize);
+				output.writeLong(jarModified);
+				output.writeInt(records.size());
+				for (final Record record : records) {
+					output.writeUTF(record.filename);
+					output.writeUTF(record.entryName);
+					output.writeLong(record.crc);
+					output.writeLong(record.size);
+					output.writeLong(record.modified);
+				}
+			} finally {
+				if (output != null) output.close();
+			}
+			FileUtils.replace(temp, cacheFile.toPath());
+			written = true;
+		} finally {
+			if (!written) Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Retrieve the files of the given records.
+	 * @param dirPath The <code>String</code> valid path
+	 * of the directory.
+	 * @param records The <code>List</code> of
+	 * <code>Record</code>.
+	 * @return The <code>List</code> of <code>File</code>.
+	 * <code>null</code> if there are none.
+	 */
+	private List<File> toFiles(final String dirPath, final List<Record> records) {
+		if (records.isEmpty()) return null;
+		final List<File> files = new ArrayList<File>(records.size());
+		for (final Record record : records) files.add(new File(dirPath + record.filename));
+		return files;
+	}
+
+	/**
+	 * Invoke the given task in a new pool, and shut down
+	 * the pool once the task completes.
+	 * @param task The <code>ForkJoinTask</code> to invoke.
+	 */
+	private void invoke(final ForkJoinTask<?> task) {
+		final ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+		try {
+			pool.invoke(task);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Compute the CRC-32 of the contents of the given
+	 * file.
+	 * @param file The <code>File</code> to read.
+	 * @return The <code>long</code> checksum.
+	 * @throws IOException If reading failed.
+	 */
+	private static long checksum(final File file) throws IOException {
+		final CRC32 crc = new CRC32();
+		final ByteBuffer buffer = ByteBuffer.allocate(65536);
+		FileChannel channel = null;
+		try {
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			while (channel.read(buffer) >= 0) {
+				buffer.flip();
+				crc.update(buffer);
+				buffer.clear();
+			}
+		} finally {
+			if (channel != null) channel.close();
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * <code>Cache</code> defines the contents of a cache
+	 * manifest.
+	 */
+	private static final class Cache {
+		/**
+		 * The <code>long</code> recorded size of the Jar
+		 * file.
+		 */
+		private final long jarSize;
+		/**
+		 * The <code>long</code> recorded modification time
+		 * of the Jar file.
+		 */
+		private final long jarModified;
+		/**
+		 * The <code>Map</code> of file name <code>String</code>
+		 * to <code>Record</code> in the recorded order.
+		 */
+		private final Map<String, Record> records;
+
+		/**
+		 * Constructor of <code>Cache</code>.
+		 * @param jarSize The <code>long</code> recorded size
+		 * of the Jar file.
+		 * @param jarModified The <code>long</code> recorded
+		 * modification time of the Jar file.
+		 * @param records The <code>Map</code> of file name
+		 * <code>String</code> to <code>Record</code>.
+		 */
+		private Cache(final long jarSize, final long jarModified, final Map<String, Record> records) {
+			this.jarSize = jarSize;
+			this.jarModified = jarModified;
+			this.records = records;
+		}
+	}
+
+	/**
+	 * <code>Record</code> defines the cached information
+	 * of a single extracted entry.
+	 */
+	private static final class Record {
+		/**
+		 * The <code>String</code> name of the extracted
+		 * file.
+		 */
+		private final String filename;
+		/**
+		 * The <code>String</code> name of the entry.
+		 */
+		private final String entryName;
+		/**
+		 * The <code>long</code> CRC-32 of the entry.
+		 */
+		private final long crc;
+		/**
+		 * The <code>long</code> uncompressed size of the
+		 * entry.
+		 */
+		private final long size;
+		/**
+		 * The <code>long</code> modification time of the
+		 * extracted file. <code>-1</code> if the entry has
+		 * not been extracted.
+		 */
+		private final long modified;
+
+		/**
+		 * Constructor of <code>Record</code>.
+		 * @param filename The <code>String</code> name of
+		 * the extracted file.
+		 * @param entryName The <code>String</code> name of
+		 * the entry.
+		 * @param crc The <code>long</code> CRC-32.
+		 * @param size The <code>long</code> uncompressed
+		 * size.
+		 * @param modified The <code>long</code> modification
+		 * time of the extracted file.
+		 */
+		private Record(final String filename, final String entryName, final long crc, final long size, final long modified) {
+			this.filename = filename;
+			this.entryName = entryName;
+			this.crc = crc;
+			this.size = size;
+			this.modified = modified;
+		}
+	}
+
+	/**
+	 * <code>VerifyTask</code> defines the parallel task
+	 * that checks if a range of extracted files are up
+	 * to date, splitting the range until each part is
+	 * small enough in the number of files, and in the
+	 * number of bytes if the contents are verified.
+	 */
+	private static final class VerifyTask extends RecursiveAction {
+		/**
+		 * The <code>long</code> serial version ID.
+		 */
+		private static final long serialVersionUID = 1L;
+		/**
+		 * The target directory <code>File</code>.
+		 */
+		private final File dir;
+		/**
+		 * The <code>List</code> of <code>Record</code> of
+		 * the selected entries.
+		 */
+		private final List<Record> records;
+		/**
+		 * The <code>Map</code> of file name <code>String</code>
+		 * to the cached <code>Record</code>.
+		 */
+		private final Map<String, Record> cached;
+		/**
+		 * The <code>boolean</code> flag indicating if the
+		 * contents are verified.
+		 */
+		private final boolean verify;
+		/**
+		 * The <code>boolean</code> array of the flags
+		 * indicating if the files at the same indices are
+		 * out of date.
+		 */
+		private final boolean[] stale;
+		/**
+		 * The <code>int</code> inclusive start index.
+		 */
+		private final int from;
+		/**
+		 * The <code>int</code> exclusive end index.
+		 */
+		private final int to;
+
+		/**
+		 * Constructor of <code>VerifyTask</code>.
+		 * @param dir The target directory <code>File</code>.
+		 * @param records The <code>List</code> of
+		 * <code>Record</code> of the selected entries.
+		 * @param cached The <code>Map</code> of file name
+		 * <code>String</code> to the cached <code>Record</code>.
+		 * @param verify <code>true</code> if the contents
+		 * are verified.
+		 * @param stale The <code>boolean</code> array to
+		 * set the out of date flags in.
+		 * @param from The <code>int</code> inclusive start
+		 * index.
+		 * @param to The <code>int</code> exclusive end index.
+		 */
+		private VerifyTask(final File dir, final List<Record> records, final Map<String, Record> cached, final boolean verify,
+				final boolean[] stale, final int from, final int to) {
+			this.dir = dir;
+			this.records = records;
+			this.cached = cached;
+			this.verify = verify;
+			this.stale = stale;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			final int count = this.to - this.from;
+			if (count > 1 && (count > JarExtractor.VerifyBatchSize || (this.verify && this.getSize() > JarExtractor.VerifyBatchBytes))) {
+				final int middle = (this.from + this.to) >>> 1;
+				ForkJoinTask.invokeAll(new VerifyTask(this.dir, this.records, this.cached, this.verify, this.stale, this.from, middle),
+						new VerifyTask(this.dir, this.records, this.cached, this.verify, this.stale, middle, this.to));
+				return;
+			}
+			for (int i = this.from; i < this.to; i++) {
+				this.stale[i] = !this.isCurrent(this.records.get(i));
+			}
+		}
+
+		/**
+		 * Check if the file of the given record is up to
+		 * date.
+		 * @param record The <code>Record</code> of the
+		 * selected entry.
+		 * @return <code>true</code> if the file is up to
+		 * date. <code>false</code> otherwise.
+		 */
+		private boolean isCurrent(final Record record) {
+			final Record previous = this.cached.get(record.filename);
+			if (previous == null || previous.modified < 0 || previous.crc != record.crc || previous.size != record.size
+					|| !previous.entryName.equals(record.entryName)) {
+				return false;
+			}
+			final File file = new File(this.dir, record.filename);
+			if (file.length() != record.size || file.lastModified() != previous.modified || !file.isFile()) return false;
+			if (!this.verify) return true;
+			try {
+				return JarExtractor.checksum(file) == record.crc;
+			} catch (final IOException e) {
+				return false;
+			}
+		}
+
+		/**
+		 * Retrieve the total size of the range.
+		 * @return The <code>long</code> number of bytes.
+		 */
+		private long getSize() {
+			long size = 0;
+			for (int i = this.from; i < this.to; i++) {
+				size += Math.max(0, this.records.get(i).size);
+			}
+			return size;
+		}
+	}
+}
@@ -0,0 +1,511 @@
+package hemera.core.utility;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * <code>MappedJarFile</code> defines the read-only Jar
+ * file that is memory-mapped and indexed once, for
+ * callers that repeatedly list and read the entries of
+ * the same Jar files.
+ * <p>
+ * The central directory is read when the file is
+ * opened. Entry names are indexed by a trie of their
+ * path segments, thus the entries of a package are
+ * listed in time proportional to the length of the
+ * package path and the number of entries listed,
+ * regardless of the number of entries in the file.
+ * <p>
+ * The contents of stored entries are returned as
+ * read-only slices of the mapped memory without being
+ * copied. Deflated entries are inflated on access.
+ * Signatures of signed Jar files are not verified.
+ * <p>
+ * This class is thread-safe. The mapped memory is
+ * released once the file and all the buffers returned
+ * by it are garbage collected.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public final class MappedJarFile implements Closeable {
+	/**
+	 * The <code>File</code> that is mapped.
+	 */
+	private final File file;
+	/**
+	 * The read-only <code>MappedByteBuffer</code> of the
+	 * whole file.
+	 */
+	private final MappedByteBuffer buffer;
+	/**
+	 * The <code>Map</code> of the entry name
+	 * <code>String</code> to the <code>Entry</code>.
+	 */
+	private final Map<String, Entry> entries;
+	/**
+	 * The root <code>Node</code> of the name trie.
+	 */
+	private final Node root;
+	/**
+	 * The <code>boolean</code> flag indicating if the
+	 * file is closed.
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * Constructor of <code>MappedJarFile</code>.
+	 * @param file The Jar <code>File</code> to open.
+	 * @throws ZipException If the file is not a valid
+	 * Jar file.
+	 * @throws IOException If reading the file failed,
+	 * or the file is larger than a mapping can hold.
+	 */
+	public MappedJarFile(final File file) throws IOException {
+		this.file = file;
+		final List<ZipDirectory.Record> records;
+		FileChannel channel = null;
+		try {
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			final long size = channel.size();
+			if (size > Integer.MAX_VALUE) throw new IOException("File is too large to map: " + file);
+			records = ZipDirectory.read(channel);
+			this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		} finally {
+			// The mapping remains valid after the channel is closed.
+			if (channel != null) channel.close();
+		}
+		this.entries = new HashMap<String, Entry>(records.size()*2);
+		this.root = new Node();
+		for (final ZipDirectory.Record record : records) {
+			final Entry entry = new Entry(record);
+			this.entries.put(record.name, entry);
+			if (!entry.isDirectory()) this.index(entry);
+		}
+	}
+
+	/**
+	 * Add the given entry to the name trie.
+	 * @param entry The file <code>Entry</code> to add.
+	 */
+	private void index(final Entry entry) {
+		// Use explicit slash here since entry path is platform independent.
+		final String name = entry.getName();
+		Node node = this.root;
+		int start = 0;
+		while (true) {
+			final int separator = name.indexOf('/', start);
+			final String segment = (separator < 0) ? name.substring(start) : name.substring(start, separator);
+			Node child = node.children.get(segment);
+			if (child == null) {
+				child = new Node();
+				node.children.put(segment, child);
+			}
+			node = child;
+			if (separator < 0) break;
+			start = separator+1;
+		}
+		node.entry = entry;
+	}
+
+	/**
+	 * Retrieve the entry with the given name.
+	 * @param name The <code>String</code> entry name.
+	 * @return The <code>Entry</code>. <code>null</code>
+	 * if there is no such entry.
+	 */
+	public Entry getEntry(final String name) {
+		this.checkOpen();
+		return this.entries.get(name);
+	}
+
+	/**
+	 * Retrieve all the file entries.
+	 * @return The immutable <code>List</code> of all
+	 * the file <code>Entry</code>.
+	 */
+	public List<Entry> list() {
+		return this.list("");
+	}
+
+	/**
+	 * Retrieve the file entries whose names start with
+	 * the given prefix, such as all the entries within
+	 * a package and its sub-packages. A prefix that ends
+	 * with a separator is resolved in time proportional
+	 * to its length. Directory entries are excluded.
+	 * @param prefix The <code>String</code> name prefix,
+	 * such as <code>a/b/c/</code> for the package
+	 * <code>a.b.c</code>.
+	 * @return The immutable <code>List</code> of the
+	 * matching <code>Entry</code>.
+	 */
+	public List<Entry> list(final String prefix) {
+		this.checkOpen();
+		Node node = this.root;
+		int start = 0;
+		while (true) {
+			final int separator = prefix.indexOf('/', start);
+			if (separator < 0) break;
+			node = node.children.get(prefix.substring(start, separator));
+			if (node == null) return Collections.emptyList();
+			start = separator+1;
+		}
+		final String partial = prefix.substring(start);
+		if (partial.isEmpty()) return node.getSubtree();
+		// The prefix ends within a segment, thus match the segments of the children.
+		final List<Entry> list = new ArrayList<Entry>();
+		for (final Map.Entry<String, Node> child : node.children.entrySet()) {
+			if (child.getKey().startsWith(partial)) list.addAll(child.getValue().getSubtree());
+		}
+		return Collections.unmodifiableList(list);
+	}
+
+	/**
+	 * Retrieve the contents of the given entry as a
+	 * read-only buffer. The contents of a stored entry
+	 * are a slice of the mapped memory without copying.
+	 * The contents of a deflated entry are inflated into
+	 * a new buffer.
+	 * @param entry The <code>Entry</code> of this file.
+	 * @return The read-only <code>ByteBuffer</code> of
+	 * the contents, positioned at zero.
+	 * @throws ZipException If the entry is malformed or
+	 * its compression method is not supported.
+	 */
+	public ByteBuffer getBuffer(final Entry entry) throws ZipException {
+		final ByteBuffer data = this.getData(entry);
+		if (entry.method == ZipWriter.Stored) return data;
+		if (entry.size > Integer.MAX_VALUE) throw new ZipException("Entry is too large to inflate: " + entry.getName());
+		final byte[] compressed = new byte[data.remaining()];
+		data.get(compressed);
+		final byte[] contents = new byte[(int)entry.size];
+		final Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(compressed);
+			int length = 0;
+			while (length < contents.length) {
+				final int count = inflater.inflate(contents, length, contents.length-length);
+				if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) break;
+				length += count;
+			}
+			if (length != contents.length) throw new ZipException("Invalid entry size: " + entry.getName());
+		} catch (final DataFormatException e) {
+			throw new ZipException("Invalid deflated data of entry: " + entry.getName());
+		} finally {
+			inflater.end();
+		}
+		return ByteBuffer.wrap(contents).asReadOnlyBuffer();
+	}
+
+	/**
+	 * Retrieve the input stream of the contents of the
+	 * given entry, reading directly from the mapped
+	 * memory.
+	 * @param entry The <code>Entry</code> of this file.
+	 * @return The <code>InputStream</code> of the
+	 * contents.
+	 * @throws ZipException If the entry is malformed or
+	 * its compression method is not supported.
+	 */
+	public InputStream getInputStream(final Entry entry) throws ZipException {
+		final InputStream input = new BufferInputStream(this.getData(entry));
+		if (entry.method == ZipWriter.Stored) return input;
+		final Inflater inflater = new Inflater(true);
+		return new InflaterInputStream(input, inflater, 8192) {
+			/**
+			 * The <code>boolean</code> flag indicating if the
+			 * inflater is released.
+			 */
+			private boolean ended;
+
+			@Override
+			public void close() throws IOException {
+				if (this.ended) return;
+				this.ended = true;
+				inflater.end();
+				super.close();
+			}
+		};
+	}
+
+	/**
+	 * Retrieve the compressed data of the given entry as
+	 * a slice of the mapped memory.
+	 * @param entry The <code>Entry</code> of this file.
+	 * @return The read-only <code>ByteBuffer</code> of
+	 * the compressed data.
+	 * @throws ZipException If the entry is malformed or
+	 * its compression method is not supported.
+	 */
+	private ByteBuffer getData(final Entry entry) throws ZipException {
+		this.checkOpen();
+		if (this.entries.get(entry.getName()) != entry) {
+			throw new IllegalArgumentException("Entry does not belong to " + this.file + ": " + entry.getName());
+		}
+		if (!entry.record.isCopyable()) throw new ZipException("Unsupported compression of entry: " + entry.getName());
+		long offset = entry.dataOffset;
+		if (offset < 0) {
+			final ByteBuffer header = this.buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+			final long headerOffset = entry.record.headerOffset;
+			if (headerOffset+30 > header.capacity() || header.getInt((int)headerOffset) != 0x04034b50) {
+				throw new ZipException("Invalid local header of entry: " + entry.getName());
+			}
+			offset = headerOffset+30+(header.getShort((int)headerOffset+26)&0xFFFF)+(header.getShort((int)headerOffset+28)&0xFFFF);
+			entry.dataOffset = offset;
+		}
+		if (offset+entry.record.compressedSize > this.buffer.capacity()) throw new ZipException("Truncated entry: " + entry.getName());
+		final ByteBuffer data = this.buffer.duplicate();
+		data.position((int)offset);
+		data.limit((int)(offset+entry.record.compressedSize));
+		return data.slice();
+	}
+
+	/**
+	 * Retrieve the mapped Jar file.
+	 * @return The <code>File</code>.
+	 */
+	public File getFile() {
+		return this.file;
+	}
+
+	/**
+	 * Check that the file is not closed.
+	 */
+	private void checkOpen() {
+		if (this.closed) throw new IllegalStateException("Jar file is closed: " + this.file);
+	}
+
+	/**
+	 * Close the file. The buffers and streams that are
+	 * already returned remain valid.
+	 */
+	@Override
+	public void close() {
+		this.closed = true;
+	}
+
+	/**
+	 * <code>Entry</code> defines a single entry of a
+	 * <code>MappedJarFile</code>.
+	 */
+	public static final class Entry {
+		/**
+		 * The <code>ZipDirectory.Record</code> of the entry.
+		 */
+		private final ZipDirectory.Record record;
+		/**
+		 * The <code>int</code> compression method.
+		 */
+		private final int method;
+		/**
+		 * The <code>long</code> number of uncompressed
+		 * bytes.
+		 */
+		private final long size;
+		/**
+		 * The <code>long</code> position of the compressed
+		 * data, located when it is first accessed.
+		 */
+		private volatile long dataOffset;
+
+		/**
+		 * Constructor of <code>Entry</code>.
+		 * @param record The <code>ZipDirectory.Record</code>
+		 * of the entry.
+		 */
+		private Entry(final ZipDirectory.Record record) {
+			this.record = record;
+			this.method = record.method;
+			this.size = record.size;
+			this.dataOffset = -1;
+		}
+
+		/**
+		 * Retrieve the name of the entry.
+		 * @return The <code>String</code> name.
+		 */
+		public String getName() {
+			return this.record.name;
+		}
+
+		/**
+		 * Check if the entry is a directory.
+		 * @return <code>true</code> if the entry is a
+		 * directory. <code>false</code> otherwise.
+		 */
+		public boolean isDirectory() {
+			return this.record.name.endsWith("/");
+		}
+
+		/**
+		 * Check if the entry is stored without compression,
+		 * thus its contents are accessed without copying.
+		 * @return <code>true</code> if the entry is stored.
+		 * <code>false</code> otherwise.
+		 */
+		public boolean isStored() {
+			return this.method == ZipWriter.Stored;
+		}
+
+		/**
+		 * Retrieve the number of uncompressed bytes.
+		 * @return The <code>long</code> size.
+		 */
+		public long getSize() {
+			return this.size;
+		}
+
+		/**
+		 * Retrieve the number of compressed bytes.
+		 * @return The <code>long</code> size.
+		 */
+		public long getCompressedSize() {
+			return this.record.compressedSize;
+		}
+
+		/**
+		 * Retrieve the CRC-32 of the contents.
+		 * @return The <code>long</code> checksum.
+		 */
+		public long getCrc() {
+			return this.record.crc;
+		}
+
+		/**
+		 * Retrieve the modification time of the entry.
+		 * @return The <code>long</code> time in milliseconds
+		 * since the epoch.
+		 */
+		public long getTime() {
+			return ZipDirectory.toTime(this.record.dosTime);
+		}
+
+		@Override
+		public String toString() {
+			return this.record.name;
+		}
+	}
+
+	/**
+	 * <code>Node</code> defines a single path segment of
+	 * the name trie.
+	 */
+	private static final class Node {
+		/**
+		 * The <code>Map</code> of the segment
+		 * <code>String</code> to the child <code>Node</code>
+		 * in the order of the central directory.
+		 */
+		private final Map<String, Node> children;
+		/**
+		 * The file <code>Entry</code> whose name ends at
+		 * this node. <code>null</code> if there is none.
+		 */
+		private Entry entry;
+		/**
+		 * The cached immutable <code>List</code> of all the
+		 * <code>Entry</code> at and below this node.
+		 */
+		private volatile List<Entry> subtree;
+
+		/**
+		 * Constructor of <code>Node</code>.
+		 */
+		private Node() {
+			this.children = new LinkedHashMap<String, Node>(4);
+		}
+
+		/**
+		 * Retrieve all the entries at and below this node,
+		 * building the list when it is first needed.
+		 * @return The immutable <code>List</code> of
+		 * <code>Entry</code>.
+		 */
+		private List<Entry> getSubtree() {
+			List<Entry> list = this.subtree;
+			if (list != null) return list;
+			final List<Entry> entries = new ArrayList<Entry>();
+			this.collect(entries);
+			list = Collections.unmodifiableList(entries);
+			this.subtree = list;
+			return list;
+		}
+
+		/**
+		 * Collect all the entries at and below this node.
+		 * @param entries The <code>List</code> to add the
+		 * <code>Entry</code> to.
+		 */
+		private void collect(final List<Entry> entries) {
+			if (this.entry != null) entries.add(this.entry);
+			for (final Node child : this.children.values()) {
+				final List<Entry> cached = child.subtree;
+				if (cached != null) entries.addAll(cached);
+				else child.collect(entries);
+			}
+		}
+	}
+
+	/**
+	 * <code>BufferInputStream</code> defines the input
+	 * stream that reads the remaining bytes of a buffer.
+	 */
+	private static final class BufferInputStream extends InputStream {
+		/**
+		 * The <code>ByteBuffer</code> to read.
+		 */
+		private final ByteBuffer buffer;
+
+		/**
+		 * Constructor of <code>BufferInputStream</code>.
+		 * @param buffer The <code>ByteBuffer</code> to read.
+		 */
+		private BufferInputStream(final ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return this.buffer.hasRemaining() ? (this.buffer.get() & 0xFF) : -1;
+		}
+
+		@Override
+		public int read(final byte[] bytes, final int offset, final int length) {
+			if (length == 0) return 0;
+			if (!this.buffer.hasRemaining()) return -1;
+			final int count = Math.min(length, this.buffer.remaining());
+			this.buffer.get(bytes, offset, count);
+			return count;
+		}
+
+		@Override
+		public long skip(final long n) {
+			final int count = (int)Math.max(0, Math.min(n, this.buffer.remaining()));
+			this.buffer.position(this.buffer.position()+count);
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return this.buffer.remaining();
+		}
+	}
+}
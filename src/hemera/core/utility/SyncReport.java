@@ -0,0 +1,102 @@
+package hemera.core.utility;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <code>SyncReport</code> defines the immutable report
+ * of the changes made by synchronizing a directory.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public final class SyncReport {
+	/**
+	 * The <code>List</code> of target <code>File</code>
+	 * that are copied.
+	 */
+	private final List<File> copied;
+	/**
+	 * The <code>List</code> of target <code>File</code>
+	 * that are deleted.
+	 */
+	private final List<File> deleted;
+	/**
+	 * The <code>int</code> number of files that are
+	 * already up to date.
+	 */
+	private final int unchangedCount;
+
+	/**
+	 * Constructor of <code>SyncReport</code>.
+	 * @param copied The <code>Collection</code> of target
+	 * <code>File</code> that are copied.
+	 * @param deleted The <code>Collection</code> of
+	 * target <code>File</code> that are deleted.
+	 * @param unchangedCount The <code>int</code> number
+	 * of files that are already up to date.
+	 */
+	SyncReport(final Collection<File> copied, final Collection<File> deleted, final int unchangedCount) {
+		this.copied = SyncReport.toSortedList(copied);
+		this.deleted = SyncReport.toSortedList(deleted);
+		this.unchangedCount = unchangedCount;
+	}
+
+	/**
+	 * Create an immutable sorted list of the given files.
+	 * @param files The <code>Collection</code> of
+	 * <code>File</code>.
+	 * @return The immutable sorted <code>List</code>.
+	 */
+	private static List<File> toSortedList(final Collection<File> files) {
+		final List<File> list = new ArrayList<File>(files);
+		Collections.sort(list);
+		return Collections.unmodifiableList(list);
+	}
+
+	/**
+	 * Retrieve the files that are copied because they
+	 * are new or modified.
+	 * @return The immutable <code>List</code> of target
+	 * <code>File</code> in the order of their paths.
+	 */
+	public List<File> getCopied() {
+		return this.copied;
+	}
+
+	/**
+	 * Retrieve the files and directories that are
+	 * deleted because they are not in the source.
+	 * @return The immutable <code>List</code> of target
+	 * <code>File</code> in the order of their paths.
+	 */
+	public List<File> getDeleted() {
+		return this.deleted;
+	}
+
+	/**
+	 * Retrieve the number of files that are already up
+	 * to date, thus not copied.
+	 * @return The <code>int</code> number of files.
+	 */
+	public int getUnchangedCount() {
+		return this.unchangedCount;
+	}
+
+	/**
+	 * Check if the synchronization changed the target.
+	 * @return <code>true</code> if any file is copied or
+	 * deleted. <code>false</code> otherwise.
+	 */
+	public boolean isChanged() {
+		return !this.copied.isEmpty() || !this.deleted.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "Copied " + this.copied.size() + ", deleted " + this.deleted.size() + ", unchanged " + this.unchangedCount + ".";
+	}
+}
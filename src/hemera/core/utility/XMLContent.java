@@ -0,0 +1,27 @@
+package hemera.core.utility;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * <code>XMLContent</code> defines the interface of the
+ * contents of a XML document that are written as a
+ * stream of events, without building the document in
+ * memory.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public interface XMLContent {
+
+	/**
+	 * Write the contents with the given writer. The
+	 * start and the end of the document are written by
+	 * the caller, and any element left open is closed
+	 * once this method returns.
+	 * @param writer The <code>XMLStreamWriter</code>
+	 * to write with.
+	 * @throws XMLStreamException If writing failed.
+	 */
+	public void write(final XMLStreamWriter writer) throws XMLStreamException;
+}
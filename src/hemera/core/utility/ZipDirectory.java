@@ -0,0 +1,290 @@
+package hemera.core.utility;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipException;
+
+/**
+ * <code>ZipDirectory</code> defines the reader of the
+ * central directory of a Zip file, which provides the
+ * raw records of the entries including the locations
+ * of their compressed data. Thus the entries can be
+ * located and copied without inflating them.
+ * <p>
+ * Zip64 records are supported. Multi-disk archives
+ * are not.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.1
+ */
+final class ZipDirectory {
+	/**
+	 * The <code>int</code> general purpose flag that
+	 * indicates the entry is encrypted.
+	 */
+	private static final int EncryptedFlag = 0x1;
+	/**
+	 * The <code>int</code> maximum length of the end of
+	 * central directory record including its comment.
+	 */
+	private static final int MaxEndLength = 22 + 0xFFFF;
+
+	/**
+	 * Constructor of <code>ZipDirectory</code>.
+	 */
+	private ZipDirectory() {
+	}
+
+	/**
+	 * Read the records of the central directory of the
+	 * Zip file of the given channel.
+	 * @param channel The <code>FileChannel</code> of
+	 * the Zip file.
+	 * @return The <code>List</code> of <code>Record</code>
+	 * in the order of the central directory.
+	 * @throws ZipException If the file is not a valid
+	 * Zip file.
+	 * @throws IOException If reading failed.
+	 */
+	static List<Record> read(final FileChannel channel) throws IOException {
+		final long fileSize = channel.size();
+		// Locate the end of central directory record from the end.
+		final int tailLength = (int)Math.min(fileSize, ZipDirectory.MaxEndLength);
+		final ByteBuffer tail = ZipDirectory.read(channel, fileSize-tailLength, tailLength);
+		int end = -1;
+		for (int i = tailLength-22; i >= 0; i--) {
+			if (tail.getInt(i) == 0x06054b50 && i+22+(tail.getShort(i+20)&0xFFFF) <= tailLength) {
+				end = i;
+				break;
+			}
+		}
+		if (end < 0) throw new ZipException("End of central directory is not found.");
+		long count = tail.getShort(end+10) & 0xFFFF;
+		long centralSize = tail.getInt(end+12) & 0xFFFFFFFFL;
+		long centralOffset = tail.getInt(end+16) & 0xFFFFFFFFL;
+		// Use the Zip64 end record if it is present.
+		final long endPosition = fileSize-tailLength+end;
+		if (endPosition >= 20) {
+			final ByteBuffer locator = ZipDirectory.read(channel, endPosition-20, 20);
+			if (locator.getInt(0) == 0x07064b50) {
+				final long recordOffset = locator.getLong(8);
+				if (recordOffset < 0 || recordOffset > endPosition-56) throw new ZipException("Invalid Zip64 end record offset.");
+				final ByteBuffer record = ZipDirectory.read(channel, recordOffset, 56);
+				if (record.getInt(0) != 0x06064b50) throw new ZipException("Zip64 end record is not found.");
+				count = record.getLong(32);
+				centralSize = record.getLong(40);
+				centralOffset = record.getLong(48);
+			}
+		}
+		if (centralOffset < 0 || centralSize < 0 || centralOffset+centralSize > fileSize || centralSize > Integer.MAX_VALUE) {
+			throw new ZipException("Invalid central directory location.");
+		}
+		final ByteBuffer central = ZipDirectory.read(channel, centralOffset, (int)centralSize);
+		final List<Record> records = new ArrayList<Record>((int)Math.min(count, 65536));
+		int position = 0;
+		for (long i = 0; i < count; i++) {
+			if (position+46 > centralSize || central.getInt(position) != 0x02014b50) {
+				throw new ZipException("Invalid central directory record " + i + ".");
+			}
+			final int flags = central.getShort(position+8) & 0xFFFF;
+			final int method = central.getShort(position+10) & 0xFFFF;
+			final long dosTime = central.getInt(position+12) & 0xFFFFFFFFL;
+			final long crc = central.getInt(position+16) & 0xFFFFFFFFL;
+			long compressedSize = central.getInt(position+20) & 0xFFFFFFFFL;
+			long size = central.getInt(position+24) & 0xFFFFFFFFL;
+			final int nameLength = central.getShort(position+28) & 0xFFFF;
+			final int extraLength = central.getShort(position+30) & 0xFFFF;
+			final int commentLength = central.getShort(position+32) & 0xFFFF;
+			long headerOffset = central.getInt(position+42) & 0xFFFFFFFFL;
+			final int next = position+46+nameLength+extraLength+commentLength;
+			if (next > centralSize) throw new ZipException("Invalid central directory record " + i + ".");
+			final byte[] nameBytes = new byte[nameLength];
+			final ByteBuffer duplicate = central.duplicate();
+			duplicate.position(position+46);
+			duplicate.get(nameBytes);
+			final String name = new String(nameBytes, StandardCharsets.UTF_8);
+			// Read the Zip64 values of the fields at their maximum.
+			if (size == 0xFFFFFFFFL || compressedSize == 0xFFFFFFFFL || headerOffset == 0xFFFFFFFFL) {
+				int extra = position+46+nameLength;
+				final int extraEnd = extra+extraLength;
+				while (extra+4 <= extraEnd) {
+					final int id = central.getShort(extra) & 0xFFFF;
+					final int length = central.getShort(extra+2) & 0xFFFF;
+					if (id == 0x0001) {
+						int field = extra+4;
+						final int fieldEnd = Math.min(field+length, extraEnd);
+						if (size == 0xFFFFFFFFL && field+8 <= fieldEnd) {
+							size = central.getLong(field);
+							field += 8;
+						}
+						if (compressedSize == 0xFFFFFFFFL && field+8 <= fieldEnd) {
+							compressedSize = central.getLong(field);
+							field += 8;
+						}
+						if (headerOffset == 0xFFFFFFFFL && field+8 <= fieldEnd) {
+							headerOffset = central.getLong(field);
+						}
+						break;
+					}
+					extra += 4+length;
+				}
+			}
+			records.add(new Record(name, flags, method, dosTime, crc, compressedSize, size, headerOffset));
+			position = next;
+		}
+		return records;
+	}
+
+	/**
+	 * Retrieve the position of the compressed data of
+	 * the given record, by reading its local header.
+	 * @param channel The <code>FileChannel</code> of
+	 * the Zip file.
+	 * @param record The <code>Record</code> to locate.
+	 * @return The <code>long</code> position of the
+	 * first compressed byte.
+	 * @throws ZipException If the local header is not
+	 * valid.
+	 * @throws IOException If reading failed.
+	 */
+	static long getDataOffset(final FileChannel channel, final Record record) throws IOException {
+		final ByteBuffer header = ZipDirectory.read(channel, record.headerOffset, 30);
+		if (header.getInt(0) != 0x04034b50) throw new ZipException("Invalid local header of entry: " + record.name);
+		final long offset = record.headerOffset+30+(header.getShort(26)&0xFFFF)+(header.getShort(28)&0xFFFF);
+		if (offset+record.compressedSize > channel.size()) throw new ZipException("Truncated entry: " + record.name);
+		return offset;
+	}
+
+	/**
+	 * Convert the given MS-DOS time of an entry to the
+	 * time since the epoch in the default time zone.
+	 * @param dosTime The <code>long</code> MS-DOS time.
+	 * @return The <code>long</code> time in milliseconds
+	 * since the epoch. <code>-1</code> if the MS-DOS time
+	 * is not valid.
+	 */
+	static long toTime(final long dosTime) {
+		try {
+			final LocalDateTime date = LocalDateTime.of((int)((dosTime >> 25) & 0x7F)+1980, (int)((dosTime >> 21) & 0x0F),
+					(int)((dosTime >> 16) & 0x1F), (int)((dosTime >> 11) & 0x1F), (int)((dosTime >> 5) & 0x3F), (int)((dosTime << 1) & 0x3E));
+			return date.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+		} catch (final DateTimeException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Read the given range of the channel.
+	 * @param channel The <code>FileChannel</code> to
+	 * read from.
+	 * @param position The <code>long</code> position
+	 * to start at.
+	 * @param length The <code>int</code> number of bytes
+	 * to read.
+	 * @return The little-endian <code>ByteBuffer</code>
+	 * of the bytes.
+	 * @throws IOException If reading failed or the range
+	 * is beyond the end.
+	 */
+	private static ByteBuffer read(final FileChannel channel, final long position, final int length) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position+buffer.position()) < 0) throw new EOFException("Unexpected end of Zip file.");
+		}
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * <code>Record</code> defines the central directory
+	 * record of a single entry.
+	 */
+	static final class Record {
+		/**
+		 * The <code>String</code> entry name.
+		 */
+		final String name;
+		/**
+		 * The <code>int</code> general purpose flags.
+		 */
+		final int flags;
+		/**
+		 * The <code>int</code> compression method.
+		 */
+		final int method;
+		/**
+		 * The <code>long</code> modification time in the
+		 * MS-DOS format.
+		 */
+		final long dosTime;
+		/**
+		 * The <code>long</code> CRC-32 of the uncompressed
+		 * data.
+		 */
+		final long crc;
+		/**
+		 * The <code>long</code> number of compressed bytes.
+		 */
+		final long compressedSize;
+		/**
+		 * The <code>long</code> number of uncompressed
+		 * bytes.
+		 */
+		final long size;
+		/**
+		 * The <code>long</code> position of the local
+		 * header.
+		 */
+		final long headerOffset;
+
+		/**
+		 * Constructor of <code>Record</code>.
+		 * @param name The <code>String</code> entry name.
+		 * @param flags The <code>int</code> general purpose
+		 * flags.
+		 * @param method The <code>int</code> compression
+		 * method.
+		 * @param dosTime The <code>long</code> modification
+		 * time in the MS-DOS format.
+		 * @param crc The <code>long</code> CRC-32.
+		 * @param compressedSize The <code>long</code>
+		 * number of compressed bytes.
+		 * @param size The <code>long</code> number of
+		 * uncompressed bytes.
+		 * @param headerOffset The <code>long</code>
+		 * position of the local header.
+		 */
+		private Record(final String name, final int flags, final int method, final long dosTime, final long crc,
+				final long compressedSize, final long size, final long headerOffset) {
+			this.name = name;
+			this.flags = flags;
+			this.method = method;
+			this.dosTime = dosTime;
+			this.crc = crc;
+			this.compressedSize = compressedSize;
+			this.size = size;
+			this.headerOffset = headerOffset;
+		}
+
+		/**
+		 * Check if the compressed data of the entry can be
+		 * copied as is into a new Zip file.
+		 * @return <code>true</code> if the entry is stored
+		 * or deflated and not encrypted. <code>false</code>
+		 * otherwise.
+		 */
+		boolean isCopyable() {
+			return (this.method == ZipWriter.Stored || this.method == ZipWriter.Deflated)
+					&& (this.flags & ZipDirectory.EncryptedFlag) == 0;
+		}
+	}
+}
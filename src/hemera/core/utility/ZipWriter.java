@@ -0,0 +1,345 @@
+package hemera.core.utility;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * <code>ZipWriter</code> defines the writer of the raw
+ * Zip file format, which writes entries whose data is
+ * already compressed along with the known checksums
+ * and sizes. Thus the entries can be compressed in
+ * parallel or copied from another Zip file without
+ * being inflated.
+ * <p>
+ * Entry names are encoded in UTF-8. Zip64 records are
+ * written for the entries and the central directory
+ * that exceed the limits of the original format.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.1
+ */
+final class ZipWriter implements Closeable {
+	/**
+	 * The <code>int</code> compression method that
+	 * stores the data as is.
+	 */
+	static final int Stored = 0;
+	/**
+	 * The <code>int</code> compression method that
+	 * deflates the data.
+	 */
+	static final int Deflated = 8;
+	/**
+	 * The <code>int</code> general purpose flag that
+	 * indicates the name is encoded in UTF-8.
+	 */
+	private static final int UTF8Flag = 0x800;
+	/**
+	 * The <code>long</code> largest value of a field
+	 * before its Zip64 form is used.
+	 */
+	private static final long Zip32Limit = 0xFFFFFFFFL;
+	/**
+	 * The <code>int</code> largest number of entries
+	 * before the Zip64 end record is used.
+	 */
+	private static final int Zip32Entries = 0xFFFF;
+	/**
+	 * The <code>OutputStream</code> to write to.
+	 */
+	private final OutputStream output;
+	/**
+	 * The <code>ByteArrayOutputStream</code> of the
+	 * central directory records.
+	 */
+	private final ByteArrayOutputStream central;
+	/**
+	 * The <code>byte</code> array of the little-endian
+	 * encoding buffer.
+	 */
+	private final byte[] buffer;
+	/**
+	 * The <code>byte</code> array of the buffer used to
+	 * copy data from channels, created when needed.
+	 */
+	private byte[] copyBuffer;
+	/**
+	 * The <code>long</code> number of bytes written.
+	 */
+	private long offset;
+	/**
+	 * The <code>long</code> number of entries written.
+	 */
+	private long count;
+	/**
+	 * The <code>boolean</code> flag indicating if the
+	 * central directory is written.
+	 */
+	private boolean finished;
+
+	/**
+	 * Constructor of <code>ZipWriter</code>.
+	 * @param output The <code>OutputStream</code> to
+	 * write to, which should be buffered.
+	 */
+	ZipWriter(final OutputStream output) {
+		this.output = output;
+		this.central = new ByteArrayOutputStream(8192);
+		this.buffer = new byte[8];
+	}
+
+	/**
+	 * Write the header of an entry. The given number of
+	 * compressed bytes must be written via the
+	 * <code>write</code> method afterwards.
+	 * @param name The <code>String</code> entry name.
+	 * @param method The <code>int</code> compression
+	 * method.
+	 * @param dosTime The <code>long</code> modification
+	 * time in the MS-DOS format.
+	 * @param crc The <code>long</code> CRC-32 of the
+	 * uncompressed data.
+	 * @param size The <code>long</code> number of
+	 * uncompressed bytes.
+	 * @param compressedSize The <code>long</code> number
+	 * of compressed bytes.
+	 * @param extra The <code>byte</code> array of the
+	 * extra field. <code>null</code> if there is none.
+	 * @throws IOException If writing failed.
+	 */
+	void writeHeader(final String name, final int method, final long dosTime, final long crc, final long size,
+			final long compressedSize, final byte[] extra) throws IOException {
+		if (this.finished) throw new IOException("Zip file is already finished.");
+		final byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		if (nameBytes.length > 0xFFFF) throw new IOException("Entry name is too long: " + name);
+		final byte[] extraBytes = (extra == null) ? new byte[0] : extra;
+		final boolean zip64 = size >= ZipWriter.Zip32Limit || compressedSize >= ZipWriter.Zip32Limit;
+		final int localExtraLength = extraBytes.length + (zip64 ? 20 : 0);
+		if (localExtraLength > 0xFFFF) throw new IOException("Entry extra field is too long: " + name);
+		final int version = zip64 ? 45 : (method == ZipWriter.Deflated || name.endsWith("/")) ? 20 : 10;
+		final long headerOffset = this.offset;
+		// Local file header.
+		this.writeInt(this.output, 0x04034b50L);
+		this.writeShort(this.output, version);
+		this.writeShort(this.output, ZipWriter.UTF8Flag);
+		this.writeShort(this.output, method);
+		this.writeInt(this.output, dosTime);
+		this.writeInt(this.output, crc);
+		this.writeInt(this.output, zip64 ? ZipWriter.Zip32Limit : compressedSize);
+		this.writeInt(this.output, zip64 ? ZipWriter.Zip32Limit : size);
+		this.writeShort(this.output, nameBytes.length);
+		this.writeShort(this.output, localExtraLength);
+		this.output.write(nameBytes);
+		if (zip64) {
+			this.writeShort(this.output, 0x0001);
+			this.writeShort(this.output, 16);
+			this.writeLong(this.output, size);
+			this.writeLong(this.output, compressedSize);
+		}
+		this.output.write(extraBytes);
+		this.offset += 30 + nameBytes.length + localExtraLength;
+		// Central directory record.
+		final boolean largeSize = size >= ZipWriter.Zip32Limit;
+		final boolean largeCompressed = compressedSize >= ZipWriter.Zip32Limit;
+		final boolean largeOffset = headerOffset >= ZipWriter.Zip32Limit;
+		final int zip64Length = (largeSize ? 8 : 0) + (largeCompressed ? 8 : 0) + (largeOffset ? 8 : 0);
+		final int centralExtraLength = extraBytes.length + ((zip64Length > 0) ? 4 + zip64Length : 0);
+		if (centralExtraLength > 0xFFFF) throw new IOException("Entry extra field is too long: " + name);
+		final int centralVersion = (zip64Length > 0) ? 45 : version;
+		this.writeInt(this.central, 0x02014b50L);
+		this.writeShort(this.central, centralVersion);
+		this.writeShort(this.central, centralVersion);
+		this.writeShort(this.central, ZipWriter.UTF8Flag);
+		this.writeShort(this.central, method);
+		this.writeInt(this.central, dosTime);
+		this.writeInt(this.central, crc);
+		this.writeInt(this.central, largeCompressed ? ZipWriter.Zip32Limit : compressedSize);
+		this.writeInt(this.central, largeSize ? ZipWriter.Zip32Limit : size);
+		this.writeShort(this.central, nameBytes.length);
+		this.writeShort(this.central, centralExtraLength);
+		this.writeShort(this.central, 0);
+		this.writeShort(this.central, 0);
+		this.writeShort(this.central, 0);
+		this.writeInt(this.central, 0);
+		this.writeInt(this.central, largeOffset ? ZipWriter.Zip32Limit : headerOffset);
+		this.central.write(nameBytes);
+		if (zip64Length > 0) {
+			this.writeShort(this.central, 0x0001);
+			this.writeShort(this.central, zip64Length);
+			if (largeSize) this.writeLong(this.central, size);
+			if (largeCompressed) this.writeLong(this.central, compressedSize);
+			if (largeOffset) this.writeLong(this.central, headerOffset);
+		}
+		this.central.write(extraBytes);
+		this.count++;
+	}
+
+	/**
+	 * Write the compressed data of the current entry.
+	 * @param data The <code>byte</code> array of data.
+	 * @param offset The <code>int</code> offset of the
+	 * data in the array.
+	 * @param length The <code>int</code> number of bytes
+	 * to write.
+	 * @throws IOException If writing failed.
+	 */
+	void write(final byte[] data, final int offset, final int length) throws IOException {
+		this.output.write(data, offset, length);
+		this.offset += length;
+	}
+
+	/**
+	 * Write the compressed data of the current entry by
+	 * copying the given range of the given channel, such
+	 * as the data of an entry of another Zip file.
+	 * @param channel The <code>FileChannel</code> to
+	 * copy from.
+	 * @param position The <code>long</code> position of
+	 * the first byte to copy.
+	 * @param length The <code>long</code> number of bytes
+	 * to copy.
+	 * @throws IOException If reading or writing failed.
+	 */
+	void transfer(final FileChannel channel, final long position, final long length) throws IOException {
+		if (this.copyBuffer == null) this.copyBuffer = new byte[65536];
+		final ByteBuffer buffer = ByteBuffer.wrap(this.copyBuffer);
+		long remaining = length;
+		while (remaining > 0) {
+			buffer.clear();
+			buffer.limit((int)Math.min(this.copyBuffer.length, remaining));
+			final int count = channel.read(buffer, position+length-remaining);
+			if (count < 0) throw new EOFException("Unexpected end of copied data.");
+			this.output.write(this.copyBuffer, 0, count);
+			remaining -= count;
+		}
+		this.offset += length;
+	}
+
+	/**
+	 * Write the central directory and the end records.
+	 * No more entries can be written afterwards.
+	 * @throws IOException If writing failed.
+	 */
+	void finish() throws IOException {
+		if (this.finished) return;
+		this.finished = true;
+		final long centralOffset = this.offset;
+		final long centralSize = this.central.size();
+		this.central.writeTo(this.output);
+		this.offset += centralSize;
+		final boolean zip64 = this.count > ZipWriter.Zip32Entries || centralOffset >= ZipWriter.Zip32Limit
+				|| centralSize >= ZipWriter.Zip32Limit;
+		if (zip64) {
+			final long recordOffset = this.offset;
+			// Zip64 end of central directory record.
+			this.writeInt(this.output, 0x06064b50L);
+			this.writeLong(this.output, 44);
+			this.writeShort(this.output, 45);
+			this.writeShort(this.output, 45);
+			this.writeInt(this.output, 0);
+			this.writeInt(this.output, 0);
+			this.writeLong(this.output, this.count);
+			this.writeLong(this.output, this.count);
+			this.writeLong(this.output, centralSize);
+			this.writeLong(this.output, centralOffset);
+			// Zip64 end of central directory locator.
+			this.writeInt(this.output, 0x07064b50L);
+			this.writeInt(this.output, 0);
+			this.writeLong(this.output, recordOffset);
+			this.writeInt(this.output, 1);
+			this.offset += 76;
+		}
+		// End of central directory record.
+		final int entries = (int)Math.min(this.count, ZipWriter.Zip32Entries);
+		this.writeInt(this.output, 0x06054b50L);
+		this.writeShort(this.output, 0);
+		this.writeShort(this.output, 0);
+		this.writeShort(this.output, entries);
+		this.writeShort(this.output, entries);
+		this.writeInt(this.output, Math.min(centralSize, ZipWriter.Zip32Limit));
+		this.writeInt(this.output, Math.min(centralOffset, ZipWriter.Zip32Limit));
+		this.writeShort(this.output, 0);
+		this.offset += 22;
+		this.output.flush();
+	}
+
+	/**
+	 * Finish the Zip file if it is not yet finished
+	 * and close the output stream.
+	 * @throws IOException If writing failed.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			this.finish();
+		} finally {
+			this.output.close();
+		}
+	}
+
+	/**
+	 * Convert the given time to the MS-DOS format used
+	 * by the Zip file format, which is a local date-time
+	 * with a resolution of two seconds. Times before
+	 * 1980 are clamped.
+	 * @param time The <code>long</code> time in
+	 * milliseconds since the epoch.
+	 * @param zone The <code>ZoneId</code> of the local
+	 * date-time.
+	 * @return The <code>long</code> MS-DOS time.
+	 */
+	static long toDosTime(final long time, final ZoneId zone) {
+		final LocalDateTime date = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), zone);
+		final int year = date.getYear();
+		if (year < 1980) return (1 << 21) | (1 << 16);
+		if (year > 2107) return (127L << 25) | (12 << 21) | (31 << 16) | (23 << 11) | (59 << 5) | 29;
+		return ((long)(year-1980) << 25) | (date.getMonthValue() << 21) | (date.getDayOfMonth() << 16)
+				| (date.getHour() << 11) | (date.getMinute() << 5) | (date.getSecond() >> 1);
+	}
+
+	/**
+	 * Write the given value as two little-endian bytes.
+	 * @param stream The <code>OutputStream</code> to
+	 * write to.
+	 * @param value The <code>int</code> value.
+	 * @throws IOException If writing failed.
+	 */
+	private void writeShort(final OutputStream stream, final int value) throws IOException {
+		this.buffer[0] = (byte)value;
+		this.buffer[1] = (byte)(value >>> 8);
+		stream.write(this.buffer, 0, 2);
+	}
+
+	/**
+	 * Write the given value as four little-endian bytes.
+	 * @param stream The <code>OutputStream</code> to
+	 * write to.
+	 * @param value The <code>long</code> value.
+	 * @throws IOException If writing failed.
+	 */
+	private void writeInt(final OutputStream stream, final long value) throws IOException {
+		for (int i = 0; i < 4; i++) this.buffer[i] = (byte)(value >>> (i*8));
+		stream.write(this.buffer, 0, 4);
+	}
+
+	/**
+	 * Write the given value as eight little-endian bytes.
+	 * @param stream The <code>OutputStream</code> to
+	 * write to.
+	 * @param value The <code>long</code> value.
+	 * @throws IOException If writing failed.
+	 */
+	private void writeLong(final OutputStream stream, final long value) throws IOException {
+		for (int i = 0; i < 8; i++) this.buffer[i] = (byte)(value >>> (i*8));
+		stream.write(this.buffer, 0, 8);
+	}
+}
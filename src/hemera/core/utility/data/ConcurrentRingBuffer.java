@@ -0,0 +1,182 @@
+package hemera.core.utility.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <code>ConcurrentRingBuffer</code> defines a bounded
+ * lock-free queue data structure backed by a fixed
+ * size array of slots that is reused in a cyclic
+ * fashion.
+ * <p>
+ * Each slot carries a sequence number that is used
+ * to determine if the slot is available for writing
+ * or reading. Producers and consumers claim slots by
+ * atomically advancing the tail and head positions,
+ * thus no locks are ever acquired. Multiple producers
+ * and multiple consumers are supported.
+ * <p>
+ * The capacity is always rounded up to the next power
+ * of two to allow index calculation with masking.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public class ConcurrentRingBuffer<E> {
+	/**
+	 * The <code>AtomicReferenceArray</code> of element
+	 * slots.
+	 */
+	private final AtomicReferenceArray<E> elements;
+	/**
+	 * The <code>AtomicLongArray</code> of the slot
+	 * sequence numbers.
+	 */
+	private final AtomicLongArray sequences;
+	/**
+	 * The <code>int</code> mask used to calculate the
+	 * slot index from a position.
+	 */
+	private final int mask;
+	/**
+	 * The <code>AtomicLong</code> position of the next
+	 * slot to write to.
+	 */
+	private final AtomicLong tail;
+	/**
+	 * The <code>AtomicLong</code> position of the next
+	 * slot to read from.
+	 */
+	private final AtomicLong head;
+
+	/**
+	 * Constructor of <code>ConcurrentRingBuffer</code>.
+	 * @param capacity The <code>int</code> minimum
+	 * capacity. The actual capacity is rounded up to
+	 * the next power of two.
+	 */
+	public ConcurrentRingBuffer(final int capacity) {
+		if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive.");
+		int size = 1;
+		while (size < capacity) size <<= 1;
+		this.elements = new AtomicReferenceArray<E>(size);
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) this.sequences.set(i, i);
+		this.mask = size - 1;
+		this.tail = new AtomicLong(0);
+		this.head = new AtomicLong(0);
+	}
+
+	/**
+	 * Insert the given element at the tail of the
+	 * buffer if there is space available.
+	 * @param element The <code>E</code> element to
+	 * insert. This value cannot be <code>null</code>.
+	 * @return <code>true</code> if the element is
+	 * inserted. <code>false</code> if the buffer is
+	 * full.
+	 */
+	public boolean offer(final E element) {
+		if (element == null) throw new NullPointerException("Element cannot be null.");
+		while (true) {
+			final long position = this.tail.get();
+			final int index = (int)(position & this.mask);
+			final long sequence = this.sequences.get(index);
+			final long difference = sequence - position;
+			// Slot is available for writing.
+			if (difference == 0) {
+				if (this.tail.compareAndSet(position, position+1)) {
+					this.elements.set(index, element);
+					this.sequences.set(index, position+1);
+					return true;
+				}
+			}
+			// Slot still holds an element that has not been consumed.
+			else if (difference < 0) {
+				return false;
+			}
+			// Otherwise another producer claimed the slot, retry.
+		}
+	}
+
+	/**
+	 * Retrieve and remove the element at the head of
+	 * the buffer.
+	 * @return The <code>E</code> element. If the buffer
+	 * is empty, <code>null</code>.
+	 */
+	public E poll() {
+		while (true) {
+			final long position = this.head.get();
+			final int index = (int)(position & this.mask);
+			final long sequence = this.sequences.get(index);
+			final long difference = sequence - (position+1);
+			// Slot has been written to.
+			if (difference == 0) {
+				if (this.head.compareAndSet(position, position+1)) {
+					final E element = this.elements.get(index);
+					this.elements.set(index, null);
+					this.sequences.set(index, position+this.mask+1);
+					return element;
+				}
+			}
+			// Slot has not been written to yet.
+			else if (difference < 0) {
+				return null;
+			}
+			// Otherwise another consumer claimed the slot, retry.
+		}
+	}
+
+	/**
+	 * Remove up to the given number of elements from
+	 * the head of the buffer into the given array.
+	 * @param array The <code>E</code> array to drain
+	 * the elements into, starting at index zero.
+	 * @param limit The <code>int</code> maximum number
+	 * of elements to drain.
+	 * @return The <code>int</code> number of elements
+	 * drained.
+	 */
+	public int drain(final E[] array, final int limit) {
+		final int max = Math.min(limit, array.length);
+		int count = 0;
+		while (count < max) {
+			final E element = this.poll();
+			if (element == null) break;
+			array[count] = element;
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Check if the buffer is currently empty.
+	 * @return <code>true</code> if there are no
+	 * elements in the buffer. <code>false</code>
+	 * otherwise.
+	 */
+	public boolean isEmpty() {
+		return this.head.get() >= this.tail.get();
+	}
+
+	/**
+	 * Retrieve the approximate number of elements in
+	 * the buffer.
+	 * @return The <code>int</code> size.
+	 */
+	public int size() {
+		final long size = this.tail.get() - this.head.get();
+		if (size < 0) return 0;
+		else return (int)Math.min(size, this.capacity());
+	}
+
+	/**
+	 * Retrieve the capacity of the buffer.
+	 * @return The <code>int</code> capacity.
+	 */
+	public int capacity() {
+		return this.mask + 1;
+	}
+}
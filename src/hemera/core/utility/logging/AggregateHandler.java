@@ -0,0 +1,231 @@
+package hemera.core.utility.logging;
+
+import hemera.core.utility.data.ConcurrentRingBuffer;
+
+import java.lang.ref.WeakReference;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+/**
+ * <code>AggregateHandler</code> defines the
+ * implementation of a <code>Handler</code> that
+ * aggregates the log records of all the loggers
+ * into a single target without a global lock.
+ * <p>
+ * Each logging thread appends its records into its
+ * own lane, which is a bounded lock-free buffer
+ * that only that thread writes to. A single merger
+ * thread periodically drains all the lanes and
+ * writes the records to the target handler in the
+ * order of their timestamps. Records are held back
+ * for a short delay before being written, so records
+ * from slower threads can still be ordered correctly.
+ * Records that reach the handler later than the
+ * delay are written in the order they are drained.
+ * <p>
+ * Since only the merger thread ever publishes to the
+ * target, the target is never contended.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+final class AggregateHandler extends Handler implements Runnable {
+	/**
+	 * The <code>int</code> capacity of a single lane.
+	 */
+	private static final int LaneSize = 1024;
+	/**
+	 * The <code>long</code> time in nanoseconds the
+	 * merger waits between merges.
+	 */
+	private static final long MergeInterval = TimeUnit.MILLISECONDS.toNanos(10);
+	/**
+	 * The <code>long</code> time in milliseconds a
+	 * record is held back before being written.
+	 */
+	private static final long MergeDelay = 100;
+	/**
+	 * The <code>long</code> time in nanoseconds a
+	 * thread with a full lane parks before trying
+	 * again.
+	 */
+	private static final long BlockWait = TimeUnit.MICROSECONDS.toNanos(50);
+	/**
+	 * The <code>Comparator</code> ordering records by
+	 * timestamp and then by sequence number.
+	 */
+	private static final Comparator<LogRecord> order = new Comparator<LogRecord>() {
+		@Override
+		public int compare(final LogRecord a, final LogRecord b) {
+			final int result = Long.compare(a.getMillis(), b.getMillis());
+			if (result != 0) return result;
+			return Long.compare(a.getSequenceNumber(), b.getSequenceNumber());
+		}
+	};
+	/**
+	 * The target <code>Handler</code> records are
+	 * written to by the merger.
+	 */
+	private final Handler target;
+	/**
+	 * The <code>CopyOnWriteArrayList</code> of all the
+	 * registered <code>Lane</code>. Lanes are only added
+	 * when a new thread logs, which is rare.
+	 */
+	private final CopyOnWriteArrayList<Lane> lanes;
+	/**
+	 * The <code>ThreadLocal</code> of the <code>Lane</code>
+	 * of the current thread.
+	 */
+	private final ThreadLocal<Lane> lane;
+	/**
+	 * The <code>PriorityQueue</code> of drained records
+	 * pending to be written. This structure is only
+	 * accessed by the merging thread.
+	 */
+	private final PriorityQueue<LogRecord> pending;
+	/**
+	 * The merger <code>Thread</code>.
+	 */
+	private final Thread merger;
+	/**
+	 * The <code>Boolean</code> flag indicating if the
+	 * handler is accepting records.
+	 */
+	private volatile boolean running;
+
+	/**
+	 * Constructor of <code>AggregateHandler</code>.
+	 * @param target The <code>Handler</code> to write
+	 * the merged records to. This handler should not
+	 * flush automatically.
+	 */
+	AggregateHandler(final Handler target) {
+		this.target = target;
+		this.lanes = new CopyOnWriteArrayList<Lane>();
+		this.lane = new ThreadLocal<Lane>() {
+			@Override
+			protected Lane initialValue() {
+				final Lane lane = new Lane(Thread.currentThread());
+				AggregateHandler.this.lanes.add(lane);
+				return lane;
+			}
+		};
+		this.pending = new PriorityQueue<LogRecord>(AggregateHandler.LaneSize, AggregateHandler.order);
+		this.merger = new Thread(this, "hemera-log-merger");
+		this.merger.setDaemon(true);
+		this.running = true;
+		this.merger.start();
+	}
+
+	@Override
+	public void publish(final LogRecord record) {
+		if (!this.running || !this.isLoggable(record)) return;
+		// Infer caller on the logging thread.
+		record.getSourceClassName();
+		final ConcurrentRingBuffer<LogRecord> buffer = this.lane.get().buffer;
+		while (!buffer.offer(record)) {
+			if (!this.running) return;
+			LockSupport.unpark(this.merger);
+			LockSupport.parkNanos(this, AggregateHandler.BlockWait);
+		}
+	}
+
+	@Override
+	public void run() {
+		while (this.running) {
+			LockSupport.parkNanos(this, AggregateHandler.MergeInterval);
+			this.merge(System.currentTimeMillis() - AggregateHandler.MergeDelay);
+		}
+	}
+
+	/**
+	 * Drain all the lanes and write all the pending
+	 * records with a timestamp at or before the given
+	 * watermark in order. Lanes of terminated threads
+	 * are removed once empty.
+	 * @param watermark The <code>long</code> time in
+	 * milliseconds up to which records are written.
+	 */
+	private void merge(final long watermark) {
+		final Iterator<Lane> iterator = this.lanes.iterator();
+		while (iterator.hasNext()) {
+			final Lane lane = iterator.next();
+			final boolean alive = lane.isAlive();
+			while (true) {
+				final LogRecord record = lane.buffer.poll();
+				if (record == null) break;
+				this.pending.add(record);
+			}
+			if (!alive) this.lanes.remove(lane);
+		}
+		boolean written = false;
+		while (!this.pending.isEmpty() && this.pending.peek().getMillis() <= watermark) {
+			this.target.publish(this.pending.poll());
+			written = true;
+		}
+		if (written) this.target.flush();
+	}
+
+	@Override
+	public void flush() {
+		// Written records are flushed by the merger.
+		LockSupport.unpark(this.merger);
+	}
+
+	@Override
+	public synchronized void close() throws SecurityException {
+		if (!this.running) return;
+		this.running = false;
+		LockSupport.unpark(this.merger);
+		try {
+			this.merger.join();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		this.merge(Long.MAX_VALUE);
+		this.target.close();
+	}
+
+	/**
+	 * <code>Lane</code> defines the buffer of records
+	 * of a single logging thread.
+	 */
+	private static final class Lane {
+		/**
+		 * The <code>WeakReference</code> to the owning
+		 * <code>Thread</code>.
+		 */
+		private final WeakReference<Thread> owner;
+		/**
+		 * The <code>ConcurrentRingBuffer</code> of the
+		 * records of the thread.
+		 */
+		private final ConcurrentRingBuffer<LogRecord> buffer;
+
+		/**
+		 * Constructor of <code>Lane</code>.
+		 * @param owner The owning <code>Thread</code>.
+		 */
+		private Lane(final Thread owner) {
+			this.owner = new WeakReference<Thread>(owner);
+			this.buffer = new ConcurrentRingBuffer<LogRecord>(AggregateHandler.LaneSize);
+		}
+
+		/**
+		 * Check if the owning thread is still alive.
+		 * @return <code>true</code> if the thread is
+		 * alive. <code>false</code> otherwise.
+		 */
+		private boolean isAlive() {
+			final Thread thread = this.owner.get();
+			return thread != null && thread.isAlive();
+		}
+	}
+}
@@ -0,0 +1,333 @@
+package hemera.core.utility.logging;
+
+import hemera.core.utility.data.ConcurrentRingBuffer;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * <code>AsyncDispatcher</code> defines the unit that
+ * moves log records off the logging threads. Records
+ * are handed off into a bounded lock-free ring buffer
+ * and a single background writer thread drains the
+ * buffer in batches, publishing the records to the
+ * target handlers of the submitting handler.
+ * <p>
+ * When the buffer is full, the configured overflow
+ * policy decides if the submitting thread waits or
+ * the record is discarded.
+ * <p>
+ * A shutdown hook is registered when the dispatcher
+ * is started, which drains all remaining records and
+ * flushes the target handlers before the process
+ * exits.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.3
+ */
+final class AsyncDispatcher implements Runnable {
+	/**
+	 * The <code>int</code> maximum number of records
+	 * written in a single batch.
+	 */
+	private static final int BatchSize = 256;
+	/**
+	 * The <code>long</code> maximum time in nanoseconds
+	 * the writer thread parks when the buffer is empty.
+	 */
+	private static final long IdleWait = TimeUnit.MILLISECONDS.toNanos(100);
+	/**
+	 * The <code>long</code> time in nanoseconds a
+	 * blocked submitting thread parks before trying
+	 * again.
+	 */
+	private static final long BlockWait = TimeUnit.MICROSECONDS.toNanos(50);
+	/**
+	 * The <code>long</code> time in milliseconds the
+	 * shutdown hook waits for the writer to finish.
+	 */
+	private static final long ShutdownWait = 5000;
+	/**
+	 * The <code>ConcurrentRingBuffer</code> of pending
+	 * <code>Entry</code>.
+	 */
+	private final ConcurrentRingBuffer<Entry> buffer;
+	/**
+	 * The <code>int</code> requested capacity of the
+	 * buffer.
+	 */
+	private final int capacity;
+	/**
+	 * The <code>OverflowPolicy</code> applied when the
+	 * buffer is full.
+	 */
+	private final OverflowPolicy policy;
+	/**
+	 * The <code>int</code> level value at or above
+	 * which records are never dropped under the
+	 * <code>DropBelowSeverity</code> policy.
+	 */
+	private final int overflowLevel;
+	/**
+	 * The writer <code>Thread</code>.
+	 */
+	private final Thread writer;
+	/**
+	 * The <code>LongAdder</code> number of records
+	 * dropped due to overflow.
+	 */
+	private final LongAdder dropped;
+	/**
+	 * The <code>Set</code> of target <code>Handler</code>
+	 * written to in the current batch. This structure
+	 * is only accessed by the draining thread.
+	 */
+	private final Set<Handler> written;
+	/**
+	 * The <code>Boolean</code> flag indicating if the
+	 * dispatcher is accepting records.
+	 */
+	private volatile boolean running;
+	/**
+	 * The <code>Boolean</code> flag indicating if the
+	 * writer thread is about to park or parked.
+	 */
+	private volatile boolean sleeping;
+
+	/**
+	 * Constructor of <code>AsyncDispatcher</code>.
+	 * @param capacity The <code>int</code> capacity of
+	 * the buffer.
+	 * @param policy The <code>OverflowPolicy</code>
+	 * applied when the buffer is full.
+	 * @param overflowLevel The <code>Level</code> at or
+	 * above which records are never dropped under the
+	 * <code>DropBelowSeverity</code> policy.
+	 */
+	AsyncDispatcher(final int capacity, final OverflowPolicy policy, final Level overflowLevel) {
+		this.buffer = new ConcurrentRingBuffer<Entry>(capacity);
+		this.capacity = capacity;
+		this.policy = policy;
+		this.overflowLevel = overflowLevel.intValue();
+		this.writer = new Thread(this, "hemera-async-logger");
+		this.writer.setDaemon(true);
+		this.dropped = new LongAdder();
+		this.written = Collections.newSetFromMap(new IdentityHashMap<Handler, Boolean>());
+	}
+
+	/**
+	 * Start the writer thread and register the flush
+	 * on shutdown hook.
+	 */
+	void start() {
+		this.running = true;
+		this.writer.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			@Override
+			public void run() {
+				AsyncDispatcher.this.shutdown();
+			}
+		}, "hemera-async-logger-shutdown"));
+	}
+
+	/**
+	 * Submit the given record to be published by the
+	 * given handler on the writer thread.
+	 * @param handler The <code>AsyncHandler</code> that
+	 * received the record.
+	 * @param record The <code>LogRecord</code> to be
+	 * published.
+	 */
+	void submit(final AsyncHandler handler, final LogRecord record) {
+		// Write directly once shutdown has started.
+		if (!this.running) {
+			handler.write(record);
+			return;
+		}
+		final Entry entry = new Entry(handler, record);
+		while (!this.buffer.offer(entry)) {
+			final boolean drop = (this.policy == OverflowPolicy.Drop) ||
+					(this.policy == OverflowPolicy.DropBelowSeverity && record.getLevel().intValue() < this.overflowLevel);
+			if (drop) {
+				this.dropped.increment();
+				LoggingMetrics.instance.recordDropped();
+				return;
+			}
+			if (!this.running) {
+				handler.write(record);
+				return;
+			}
+			LockSupport.unpark(this.writer);
+			LockSupport.parkNanos(this, AsyncDispatcher.BlockWait);
+		}
+		if (this.sleeping) LockSupport.unpark(this.writer);
+	}
+
+	@Override
+	public void run() {
+		final Entry[] batch = new Entry[AsyncDispatcher.BatchSize];
+		while (true) {
+			final int count = this.buffer.drain(batch, batch.length);
+			if (count > 0) {
+				this.write(batch, count);
+				continue;
+			}
+			if (!this.running) break;
+			// Check again after publishing the flag so a
+			// submission is either seen here or wakes us.
+			this.sleeping = true;
+			if (this.buffer.isEmpty() && this.running) {
+				LockSupport.parkNanos(this, AsyncDispatcher.IdleWait);
+			}
+			this.sleeping = false;
+		}
+	}
+
+	/**
+	 * Publish the given batch of entries and flush all
+	 * the target handlers written to.
+	 * @param batch The <code>Entry</code> array.
+	 * @param count The <code>int</code> number of valid
+	 * entries in the array.
+	 */
+	private void write(final Entry[] batch, final int count) {
+		for (int i = 0; i < count; i++) {
+			final Entry entry = batch[i];
+			batch[i] = null;
+			if (entry.retired != null) {
+				this.written.remove(entry.retired);
+				entry.retired.close();
+				continue;
+			}
+			try {
+				entry.handler.write(entry.record);
+			} catch (final RuntimeException e) {
+				// Keep the writer alive.
+				e.printStackTrace();
+			}
+			final Handler[] targets = entry.handler.targets;
+			for (int j = 0; j < targets.length; j++) this.written.add(targets[j]);
+		}
+		for (final Handler target : this.written) target.flush();
+		this.written.clear();
+	}
+
+	/**
+	 * Stop accepting records, wait for the writer to
+	 * complete and write out any remaining records on
+	 * the invoking thread. Subsequent invocations only
+	 * wait for the first one to complete.
+	 */
+	synchronized void shutdown() {
+		if (!this.running && !this.writer.isAlive() && this.buffer.isEmpty()) return;
+		this.running = false;
+		LockSupport.unpark(this.writer);
+		try {
+			this.writer.join(AsyncDispatcher.ShutdownWait);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (this.writer.isAlive()) return;
+		final Entry[] batch = new Entry[AsyncDispatcher.BatchSize];
+		while (true) {
+			final int count = this.buffer.drain(batch, batch.length);
+			if (count <= 0) break;
+			this.write(batch, count);
+		}
+	}
+
+	/**
+	 * Close the given handler on the writer thread once
+	 * all the records submitted before are written. The
+	 * request is never dropped.
+	 * @param handler The <code>Handler</code> to close.
+	 */
+	void retire(final Handler handler) {
+		final Entry entry = new Entry(handler);
+		while (this.running) {
+			if (this.buffer.offer(entry)) {
+				if (this.sleeping) LockSupport.unpark(this.writer);
+				return;
+			}
+			LockSupport.unpark(this.writer);
+			LockSupport.parkNanos(this, AsyncDispatcher.BlockWait);
+		}
+		// Records are written directly once shutdown has started.
+		handler.close();
+	}
+
+	/**
+	 * Check if this dispatcher is created with the
+	 * given configuration values.
+	 * @param capacity The <code>int</code> capacity of
+	 * the buffer.
+	 * @param policy The <code>OverflowPolicy</code>
+	 * applied when the buffer is full.
+	 * @param overflowLevel The <code>Level</code> at or
+	 * above which records are never dropped.
+	 * @return <code>true</code> if all the values are
+	 * the same. <code>false</code> otherwise.
+	 */
+	boolean isConfigured(final int capacity, final OverflowPolicy policy, final Level overflowLevel) {
+		return this.capacity == capacity && this.policy == policy && this.overflowLevel == overflowLevel.intValue();
+	}
+
+	/**
+	 * Retrieve the number of records dropped due to
+	 * buffer overflow.
+	 * @return The <code>long</code> dropped count.
+	 */
+	long getDroppedCount() {
+		return this.dropped.sum();
+	}
+
+	/**
+	 * <code>Entry</code> defines the immutable pairing
+	 * of a record and the handler it was submitted to,
+	 * or a handler to be closed.
+	 */
+	private static final class Entry {
+		/**
+		 * The <code>AsyncHandler</code> instance.
+		 */
+		private final AsyncHandler handler;
+		/**
+		 * The <code>LogRecord</code> instance.
+		 */
+		private final LogRecord record;
+		/**
+		 * The <code>Handler</code> to be closed.
+		 * <code>null</code> if the entry is a record.
+		 */
+		private final Handler retired;
+
+		/**
+		 * Constructor of <code>Entry</code>.
+		 * @param handler The <code>AsyncHandler</code>.
+		 * @param record The <code>LogRecord</code>.
+		 */
+		private Entry(final AsyncHandler handler, final LogRecord record) {
+			this.handler = handler;
+			this.record = record;
+			this.retired = null;
+		}
+
+		/**
+		 * Constructor of <code>Entry</code>.
+		 * @param retired The <code>Handler</code> to be
+		 * closed.
+		 */
+		private Entry(final Handler retired) {
+			this.handler = null;
+			this.record = null;
+			this.retired = retired;
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package hemera.core.utility.logging;
+
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+/**
+ * <code>AsyncHandler</code> defines the implementation
+ * of a <code>Handler</code> that hands off published
+ * records to the <code>AsyncDispatcher</code>, which
+ * in turn publishes the records to the set of target
+ * handlers on its background writer thread.
+ * <p>
+ * The caller information of the record is resolved
+ * on the logging thread before the hand off, since
+ * it is inferred from the current call stack.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.2
+ */
+final class AsyncHandler extends Handler {
+	/**
+	 * The <code>AsyncDispatcher</code> instance.
+	 */
+	final AsyncDispatcher dispatcher;
+	/**
+	 * The array of target <code>Handler</code>.
+	 */
+	final Handler[] targets;
+
+	/**
+	 * Constructor of <code>AsyncHandler</code>.
+	 * @param dispatcher The <code>AsyncDispatcher</code>
+	 * to hand off records to.
+	 * @param targets The array of target <code>Handler</code>
+	 * to publish records to.
+	 */
+	AsyncHandler(final AsyncDispatcher dispatcher, final Handler... targets) {
+		this.dispatcher = dispatcher;
+		this.targets = targets;
+	}
+
+	@Override
+	public void publish(final LogRecord record) {
+		if (!this.isLoggable(record)) return;
+		// Infer caller on the logging thread.
+		record.getSourceClassName();
+		this.dispatcher.submit(this, record);
+	}
+
+	/**
+	 * Publish the given record to all the targets.
+	 * @param record The <code>LogRecord</code> to be
+	 * published.
+	 */
+	void write(final LogRecord record) {
+		for (int i = 0; i < this.targets.length; i++) {
+			this.targets[i].publish(record);
+		}
+	}
+
+	@Override
+	public void flush() {
+		for (int i = 0; i < this.targets.length; i++) {
+			this.targets[i].flush();
+		}
+	}
+
+	@Override
+	public void close() throws SecurityException {
+		// Drain pending records before the targets close.
+		this.dispatcher.shutdown();
+		for (int i = 0; i < this.targets.length; i++) {
+			this.targets[i].close();
+		}
+	}
+}
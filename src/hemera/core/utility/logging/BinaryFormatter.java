@@ -0,0 +1,282 @@
+package hemera.core.utility.logging;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Formatter;
+import java.util.logging.LogRecord;
+
+/**
+ * <code>BinaryFormatter</code> defines the compact
+ * binary encoding of log records, which is intended
+ * for very high volume loggers. Records are not
+ * formatted on the logging path, and are converted
+ * back into the text format of <code>LoggingFormatter</code>
+ * offline by <code>BinaryLogDecoder</code>.
+ * <p>
+ * Each segment starts with the magic bytes followed
+ * by the format version. The rest of the segment is
+ * a sequence of tagged entries in big-endian order:
+ * <ul>
+ * <li><code>Define</code>: the <code>int</code> id and
+ * the <code>UTF-8</code> string it stands for.</li>
+ * <li><code>Record</code>: a fixed header of the
+ * <code>long</code> timestamp, the <code>int</code>
+ * level value, the <code>int</code> thread ID, the
+ * <code>int</code> ids of the class and method names,
+ * followed by either the raw <code>UTF-8</code>
+ * message, or the <code>int</code> id of the message
+ * pattern and the typed arguments.</li>
+ * </ul>
+ * Class names, method names and message patterns are
+ * interned per segment, so each segment can be
+ * decoded independently. Strings are written as the
+ * <code>int</code> byte length followed by the bytes.
+ * <p>
+ * Instances are not thread-safe and should only be
+ * used by a single handler, which serializes its
+ * invocations.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+class BinaryFormatter extends Formatter implements RecordEncoder {
+	/**
+	 * The <code>int</code> magic value of a segment.
+	 */
+	static final int Magic = 0x484C4F47;
+	/**
+	 * The <code>byte</code> version of the format.
+	 */
+	static final byte Version = 1;
+	/**
+	 * The <code>byte</code> tag of a define entry.
+	 */
+	static final byte TagDefine = 1;
+	/**
+	 * The <code>byte</code> tag of a record entry.
+	 */
+	static final byte TagRecord = 2;
+	/**
+	 * The <code>byte</code> payload kind of a raw
+	 * message.
+	 */
+	static final byte KindMessage = 0;
+	/**
+	 * The <code>byte</code> payload kind of a pattern
+	 * with arguments.
+	 */
+	static final byte KindPattern = 1;
+	/**
+	 * The <code>byte</code> argument type of a
+	 * <code>null</code> value.
+	 */
+	static final byte ArgumentNull = 0;
+	/**
+	 * The <code>byte</code> argument type of an
+	 * integral number stored as a <code>long</code>.
+	 */
+	static final byte ArgumentLong = 1;
+	/**
+	 * The <code>byte</code> argument type of a
+	 * floating point number stored as a <code>double</code>.
+	 */
+	static final byte ArgumentDouble = 2;
+	/**
+	 * The <code>byte</code> argument type of a value
+	 * stored as its <code>UTF-8</code> string.
+	 */
+	static final byte ArgumentString = 3;
+	/**
+	 * The <code>int</code> maximum number of interned
+	 * strings per segment, after which the interned
+	 * strings are cleared.
+	 */
+	private static final int MaxDefined = 4096;
+	/**
+	 * The <code>Map</code> of the interned <code>String</code>
+	 * to its <code>Integer</code> id in the current
+	 * segment.
+	 */
+	private final Map<String, Integer> defined;
+	/**
+	 * The <code>List</code> of the <code>String</code>
+	 * interned while encoding the current record.
+	 */
+	private final List<String> added;
+	/**
+	 * The <code>LoggingFormatter</code> used to format
+	 * records as text.
+	 */
+	private final LoggingFormatter text;
+	/**
+	 * The <code>int</code> next id to intern with.
+	 */
+	private int nextId;
+
+	/**
+	 * Constructor of <code>BinaryFormatter</code>.
+	 */
+	BinaryFormatter() {
+		this.defined = new HashMap<String, Integer>();
+		this.added = new ArrayList<String>();
+		this.text = new LoggingFormatter();
+	}
+
+	@Override
+	public String format(final LogRecord record) {
+		return this.text.format(record);
+	}
+
+	@Override
+	public boolean start(final ByteBuffer buffer) {
+		this.defined.clear();
+		if (buffer.remaining() < 5) return false;
+		buffer.putInt(BinaryFormatter.Magic);
+		buffer.put(BinaryFormatter.Version);
+		return true;
+	}
+
+	@Override
+	public int encode(final LogRecord record, final ByteBuffer buffer) {
+		final int start = buffer.position();
+		this.added.clear();
+		try {
+			if (this.defined.size() >= BinaryFormatter.MaxDefined) this.defined.clear();
+			final int classId = this.intern(record.getSourceClassName(), buffer);
+			final int methodId = this.intern(record.getSourceMethodName(), buffer);
+			final Object[] parameters = record.getParameters();
+			final int patternId = (parameters==null) ? -1 : this.intern(record.getMessage(), buffer);
+			buffer.put(BinaryFormatter.TagRecord);
+			buffer.putLong(record.getMillis());
+			buffer.putInt(record.getLevel().intValue());
+			buffer.putInt(record.getThreadID());
+			buffer.putInt(classId);
+			buffer.putInt(methodId);
+			if (parameters == null) {
+				buffer.put(BinaryFormatter.KindMessage);
+				BinaryFormatter.putString(record.getMessage(), buffer);
+			} else {
+				buffer.put(BinaryFormatter.KindPattern);
+				buffer.putInt(patternId);
+				buffer.putShort((short)parameters.length);
+				for (int i = 0; i < parameters.length; i++) {
+					BinaryFormatter.putArgument(parameters[i], buffer);
+				}
+			}
+			return buffer.position() - start;
+		} catch (final BufferOverflowException e) {
+			// Discard definitions that were not written.
+			for (int i = 0; i < this.added.size(); i++) this.defined.remove(this.added.get(i));
+			buffer.position(start);
+			return -1;
+		}
+	}
+
+	@Override
+	public boolean isTruncatable() {
+		return false;
+	}
+
+	/**
+	 * Retrieve the id of the given string, writing a
+	 * define entry if the string has not been interned
+	 * in the current segment.
+	 * @param value The <code>String</code> to intern.
+	 * @param buffer The <code>ByteBuffer</code> to write
+	 * the define entry to.
+	 * @return The <code>int</code> id. <code>-1</code>
+	 * if the value is <code>null</code>.
+	 */
+	private int intern(final String value, final ByteBuffer buffer) {
+		if (value == null) return -1;
+		final Integer existing = this.defined.get(value);
+		if (existing != null) return existing;
+		final int id = this.nextId;
+		this.nextId++;
+		this.defined.put(value, id);
+		this.added.add(value);
+		buffer.put(BinaryFormatter.TagDefine);
+		buffer.putInt(id);
+		BinaryFormatter.putString(value, buffer);
+		return id;
+	}
+
+	/**
+	 * Write the given argument with its type.
+	 * @param argument The <code>Object</code> argument.
+	 * @param buffer The <code>ByteBuffer</code> to
+	 * write to.
+	 */
+	private static void putArgument(final Object argument, final ByteBuffer buffer) {
+		if (argument == null) {
+			buffer.put(BinaryFormatter.ArgumentNull);
+		} else if (argument instanceof Long || argument instanceof Integer || argument instanceof Short || argument instanceof Byte) {
+			buffer.put(BinaryFormatter.ArgumentLong);
+			buffer.putLong(((Number)argument).longValue());
+		} else if (argument instanceof Double || argument instanceof Float) {
+			buffer.put(BinaryFormatter.ArgumentDouble);
+			buffer.putDouble(((Number)argument).doubleValue());
+		} else {
+			buffer.put(BinaryFormatter.ArgumentString);
+			BinaryFormatter.putString(argument.toString(), buffer);
+		}
+	}
+
+	/**
+	 * Write the given string as its <code>int</code>
+	 * length followed by its <code>UTF-8</code> bytes,
+	 * without creating an intermediate byte array.
+	 * @param value The <code>String</code> to write.
+	 * <code>null</code> is written as length
+	 * <code>-1</code>.
+	 * @param buffer The <code>ByteBuffer</code> to
+	 * write to.
+	 * @throws BufferOverflowException If the buffer
+	 * does not have enough space remaining.
+	 */
+	private static void putString(final String value, final ByteBuffer buffer) {
+		if (value == null) {
+			buffer.putInt(-1);
+			return;
+		}
+		final int length = value.length();
+		// Compute the encoded length first.
+		int bytes = 0;
+		for (int i = 0; i < length; i++) {
+			final char c = value.charAt(i);
+			if (c < 0x80) bytes += 1;
+			else if (c < 0x800) bytes += 2;
+			else if (Character.isHighSurrogate(c) && i+1 < length && Character.isLowSurrogate(value.charAt(i+1))) {
+				bytes += 4;
+				i++;
+			} else bytes += 3;
+		}
+		if (buffer.remaining() < bytes+4) throw new BufferOverflowException();
+		buffer.putInt(bytes);
+		for (int i = 0; i < length; i++) {
+			final char c = value.charAt(i);
+			if (c < 0x80) {
+				buffer.put((byte)c);
+			} else if (c < 0x800) {
+				buffer.put((byte)(0xC0 | (c >> 6)));
+				buffer.put((byte)(0x80 | (c & 0x3F)));
+			} else if (Character.isHighSurrogate(c) && i+1 < length && Character.isLowSurrogate(value.charAt(i+1))) {
+				final int point = Character.toCodePoint(c, value.charAt(i+1));
+				buffer.put((byte)(0xF0 | (point >> 18)));
+				buffer.put((byte)(0x80 | ((point >> 12) & 0x3F)));
+				buffer.put((byte)(0x80 | ((point >> 6) & 0x3F)));
+				buffer.put((byte)(0x80 | (point & 0x3F)));
+				i++;
+			} else {
+				// Lone surrogates are written as is, like modified UTF-8.
+				buffer.put((byte)(0xE0 | (c >> 12)));
+				buffer.put((byte)(0x80 | ((c >> 6) & 0x3F)));
+				buffer.put((byte)(0x80 | (c & 0x3F)));
+			}
+		}
+	}
+}
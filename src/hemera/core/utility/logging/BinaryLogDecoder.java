@@ -0,0 +1,220 @@
+package hemera.core.utility.logging;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * <code>BinaryLogDecoder</code> defines the offline
+ * utility that converts log files written in the
+ * binary format of <code>BinaryFormatter</code> back
+ * into the text format of <code>LoggingFormatter</code>.
+ * <p>
+ * Compressed archives ending with <code>.gz</code>
+ * are decompressed while decoding. A segment that
+ * was not properly closed is decoded up to the last
+ * complete record.
+ * <p>
+ * The decoder can be invoked from the command line
+ * with the files to decode as arguments, optionally
+ * preceded by <code>-iso</code> to output ISO-8601
+ * timestamps. The decoded text is written to the
+ * standard output.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public final class BinaryLogDecoder {
+	/**
+	 * The <code>LoggingFormatter</code> used to format
+	 * the decoded records.
+	 */
+	private final LoggingFormatter formatter;
+
+	/**
+	 * Constructor of <code>BinaryLogDecoder</code>.
+	 * @param iso <code>true</code> if the decoded text
+	 * should use ISO-8601 timestamps. <code>false</code>
+	 * if the legacy format is used.
+	 */
+	public BinaryLogDecoder(final boolean iso) {
+		this.formatter = new LoggingFormatter(iso);
+	}
+
+	/**
+	 * Decode the given binary log files to the standard
+	 * output.
+	 * @param args The <code>String</code> arguments of
+	 * optionally <code>-iso</code> followed by the paths
+	 * of the files to decode.
+	 * @throws IOException If decoding any file failed.
+	 */
+	public static void main(final String[] args) throws IOException {
+		int index = 0;
+		boolean iso = false;
+		if (args.length > 0 && args[0].equals("-iso")) {
+			iso = true;
+			index++;
+		}
+		if (index >= args.length) {
+			System.err.println("Usage: BinaryLogDecoder [-iso] file...");
+			return;
+		}
+		final BinaryLogDecoder decoder = new BinaryLogDecoder(iso);
+		final Writer output = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+		try {
+			for (int i = index; i < args.length; i++) {
+				decoder.decode(new File(args[i]), output);
+			}
+		} finally {
+			output.flush();
+		}
+	}
+
+	/**
+	 * Decode the given binary log file into the given
+	 * writer.
+	 * @param file The <code>File</code> to decode. If
+	 * the name ends with <code>.gz</code>, the file is
+	 * decompressed.
+	 * @param output The <code>Writer</code> to write
+	 * the decoded text to.
+	 * @return The <code>int</code> number of decoded
+	 * records.
+	 * @throws IOException If reading the file failed
+	 * or the file is not a binary log file.
+	 */
+	public int decode(final File file, final Writer output) throws IOException {
+		InputStream input = null;
+		try {
+			input = new FileInputStream(file);
+			if (file.getName().endsWith(".gz")) input = new GZIPInputStream(input, 65536);
+			return this.decode(input, output);
+		} finally {
+			if (input != null) input.close();
+		}
+	}
+
+	/**
+	 * Decode the given stream of a binary log segment
+	 * into the given writer. The stream is not closed.
+	 * @param stream The <code>InputStream</code> to
+	 * decode.
+	 * @param output The <code>Writer</code> to write
+	 * the decoded text to.
+	 * @return The <code>int</code> number of decoded
+	 * records.
+	 * @throws IOException If reading the stream failed
+	 * or the stream is not a binary log segment.
+	 */
+	public int decode(final InputStream stream, final Writer output) throws IOException {
+		final DataInputStream input = new DataInputStream(new BufferedInputStream(stream, 65536));
+		final int magic = input.readInt();
+		final byte version = input.readByte();
+		if (magic != BinaryFormatter.Magic) throw new IOException("Not a binary log segment.");
+		if (version != BinaryFormatter.Version) throw new IOException("Unsupported binary log version: " + version);
+		final Map<Integer, String> defined = new HashMap<Integer, String>();
+		int count = 0;
+		try {
+			while (true) {
+				final int tag = input.read();
+				if (tag == BinaryFormatter.TagDefine) {
+					final int id = input.readInt();
+					defined.put(id, BinaryLogDecoder.readString(input));
+				} else if (tag == BinaryFormatter.TagRecord) {
+					final LogRecord record = this.readRecord(input, defined);
+					output.write(this.formatter.format(record));
+					count++;
+				} else {
+					// End of stream or unwritten space of an unclosed segment.
+					break;
+				}
+			}
+		} catch (final EOFException e) {
+			// Last record is incomplete.
+		}
+		return count;
+	}
+
+	/**
+	 * Read a single record entry after its tag.
+	 * @param input The <code>DataInputStream</code> to
+	 * read from.
+	 * @param defined The <code>Map</code> of interned
+	 * <code>Integer</code> ids to <code>String</code>.
+	 * @return The <code>LogRecord</code> instance.
+	 * @throws IOException If reading failed.
+	 */
+	private LogRecord readRecord(final DataInputStream input, final Map<Integer, String> defined) throws IOException {
+		final long millis = input.readLong();
+		final int level = input.readInt();
+		final int thread = input.readInt();
+		final String classname = defined.get(input.readInt());
+		final String methodname = defined.get(input.readInt());
+		final int kind = input.readByte();
+		final LogRecord record;
+		if (kind == BinaryFormatter.KindMessage) {
+			record = new LogRecord(Level.parse(String.valueOf(level)), BinaryLogDecoder.readString(input));
+		} else {
+			record = new LogRecord(Level.parse(String.valueOf(level)), defined.get(input.readInt()));
+			final int length = input.readShort() & 0xFFFF;
+			final Object[] parameters = new Object[length];
+			for (int i = 0; i < length; i++) {
+				parameters[i] = BinaryLogDecoder.readArgument(input);
+			}
+			record.setParameters(parameters);
+		}
+		record.setMillis(millis);
+		record.setThreadID(thread);
+		record.setSourceClassName(classname);
+		record.setSourceMethodName(methodname);
+		return record;
+	}
+
+	/**
+	 * Read a single typed argument.
+	 * @param input The <code>DataInputStream</code> to
+	 * read from.
+	 * @return The <code>Object</code> argument.
+	 * @throws IOException If reading failed.
+	 */
+	private static Object readArgument(final DataInputStream input) throws IOException {
+		final int type = input.readByte();
+		switch (type) {
+		case BinaryFormatter.ArgumentNull: return null;
+		case BinaryFormatter.ArgumentLong: return input.readLong();
+		case BinaryFormatter.ArgumentDouble: return input.readDouble();
+		case BinaryFormatter.ArgumentString: return BinaryLogDecoder.readString(input);
+		default: throw new IOException("Unknown argument type: " + type);
+		}
+	}
+
+	/**
+	 * Read a length prefixed <code>UTF-8</code> string.
+	 * @param input The <code>DataInputStream</code> to
+	 * read from.
+	 * @return The <code>String</code> value.
+	 * <code>null</code> if the length is negative.
+	 * @throws IOException If reading failed.
+	 */
+	private static String readString(final DataInputStream input) throws IOException {
+		final int length = input.readInt();
+		if (length < 0) return null;
+		final byte[] bytes = new byte[length];
+		input.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
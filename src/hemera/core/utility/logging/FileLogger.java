@@ -1,13 +1,16 @@
 package hemera.core.utility.logging;
 
-import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.logging.FileHandler;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 
 /**
@@ -27,35 +30,100 @@ import java.util.logging.Logger;
  * <code>LoggingConfig</code> and provides three-level
  * based logging methods. All provided logging methods
  * use <code>LoggingConfig</code> values at runtime
- * for logging invocations.
+ * for logging invocations. Each logger may override
+ * the configured minimum level, and messages of any
+ * level that is filtered out are never built when
+ * supplied lazily or as a format pattern.
+ * <p>
+ * If <code>LoggingConfig.AsyncEnabled</code> is set,
+ * log records are handed off to a bounded queue and
+ * written by a single background writer thread, so
+ * the logging threads do not perform formatting and
+ * disk writes.
+ * <p>
+ * Log records are written into memory-mapped segment
+ * files that are rolled once <code>LoggingConfig.FileSize</code>
+ * is reached, retaining <code>LoggingConfig.FileCount</code>
+ * segments. Rotated segments can be compressed and
+ * retained by total size and age in the background.
+ * Records may be written in a compact binary format
+ * instead of text, which is decoded offline with
+ * <code>BinaryLogDecoder</code>.
+ * <p>
+ * Each logger may limit the rate of its records per
+ * logger or per message template, and sample its
+ * records. Suppressed records are summarized
+ * periodically.
+ * <p>
+ * Throughput and latency metrics of all the loggers
+ * are collected by <code>LoggingMetrics</code>.
+ * <p>
+ * Changes to the configuration values other than
+ * the levels are applied to the existing loggers by
+ * invoking <code>reconfigure</code>.
  *
  * @author Yi Wang (Neakor)
- * @version 1.0.1
+ * @version 1.0.12
  */
 public final class FileLogger {
 	/**
-	 * The <code>ReadWriteLock</code> used to guard
-	 * the logger instance cache.
+	 * The <code>int</code> threshold value indicating
+	 * the logger uses the configured minimum level.
 	 */
-	private static final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private static final int Inherit = Integer.MIN_VALUE;
 	/**
-	 * The <code>Map</code> of the <code>String</code>
+	 * The <code>String</code> source class name of the
+	 * records logged by the logger instances.
+	 */
+	private static final String SourceClass = FileLogger.class.getName();
+	/**
+	 * The <code>ConcurrentMap</code> of the <code>String</code>
 	 * class-name key to the <code>FileLogger</code>
 	 * instance that is created using the class-name.
 	 * <p>
-	 * This structure is guarded by the read-write lock.
+	 * Retrievals of existing instances do not lock.
 	 */
-	private static final Map<String, FileLogger> cache = new HashMap<String, FileLogger>();
+	private static final ConcurrentMap<String, FileLogger> cache = new ConcurrentHashMap<String, FileLogger>();
+	/**
+	 * The <code>Function</code> that creates a new
+	 * logger instance for a class-name key that is
+	 * not in the cache.
+	 */
+	private static final Function<String, FileLogger> factory = new Function<String, FileLogger>() {
+		@Override
+		public FileLogger apply(final String classname) {
+			return FileLogger.newFileLogger(classname);
+		}
+	};
 	/**
 	 * The <code>AtomicReference</code> of the standard
-	 * out <code>FileHandler</code> that is used on all
+	 * out <code>Handler</code> that is used on all
 	 * the logger instances as a console output stream.
+	 * The records of all threads are merged into the
+	 * console output without a global lock.
+	 * <p>
+	 * The reference is also the lock that serializes
+	 * the creation and the reconfiguration of handlers,
+	 * so only a single object instance is set and
+	 * stored.
+	 */
+	private static final AtomicReference<Handler> consoleHandler = new AtomicReference<Handler>(null);
+	/**
+	 * The <code>AtomicReference</code> of the shared
+	 * <code>AsyncDispatcher</code> that is used by all
+	 * the logger instances when asynchronous logging
+	 * is enabled.
 	 * <p>
 	 * Atomic check-and-set operation is needed to
-	 * ensure that only a single object instance is
-	 * set and stored.
+	 * ensure that only a single writer thread is
+	 * started.
 	 */
-	private static final AtomicReference<FileHandler> consoleHandler = new AtomicReference<FileHandler>(null);
+	private static final AtomicReference<AsyncDispatcher> dispatcher = new AtomicReference<AsyncDispatcher>(null);
+	/**
+	 * The <code>AtomicBoolean</code> flag indicating if
+	 * the suppression summarizer thread is started.
+	 */
+	private static final AtomicBoolean summarizing = new AtomicBoolean(false);
 	/**
 	 * The <code>Logger</code> instance. This value may
 	 * be <code>null</code> if the logger is supposed
@@ -63,14 +131,121 @@ public final class FileLogger {
 	 * disabled.
 	 */
 	private final Logger logger;
+	/**
+	 * The <code>int</code> value of the minimum level
+	 * of messages logged by this logger. If the value
+	 * is <code>Inherit</code>, the configured minimum
+	 * level in <code>LoggingConfig</code> is used.
+	 */
+	private volatile int threshold;
+	/**
+	 * The <code>LogThrottle</code> that limits the rate
+	 * of logged records. <code>null</code> if the rate
+	 * is not limited nor sampled.
+	 */
+	private volatile LogThrottle throttle;
+	/**
+	 * The <code>boolean</code> flag indicating if the
+	 * throttle is set explicitly instead of created
+	 * from the values in <code>LoggingConfig</code>.
+	 */
+	private volatile boolean throttleSet;
+	/**
+	 * The <code>StackTraceCache</code> that deduplicates
+	 * the logged stack traces.
+	 */
+	private final StackTraceCache traces;
+	/**
+	 * The <code>Handler</code> array attached to the
+	 * logger. This value is guarded by the console
+	 * handler lock.
+	 */
+	private Handler[] handlers;
 
 	/**
 	 * Constructor of <code>FileLogger</code>.
 	 * @param logger The configured <code>Logger</code>
 	 * instance.
+	 * @param handlers The <code>Handler</code> array
+	 * attached to the logger.
 	 */
-	private FileLogger(final Logger logger) {
+	private FileLogger(final Logger logger, final Handler[] handlers) {
 		this.logger = logger;
+		this.handlers = handlers;
+		this.threshold = FileLogger.Inherit;
+		this.traces = new StackTraceCache();
+		this.throttle = LogThrottle.newConfigured();
+		if (this.throttle != null) FileLogger.startSummarizer();
+	}
+
+	/**
+	 * Set the minimum level of messages logged by this
+	 * logger, overriding <code>LoggingConfig.MinimumLevel</code>.
+	 * @param level The minimum <code>Level</code>. If
+	 * <code>null</code>, the configured minimum level
+	 * is used.
+	 */
+	public void setLevel(final Level level) {
+		this.threshold = (level==null) ? FileLogger.Inherit : level.intValue();
+	}
+
+	/**
+	 * Set the rate limiting and sampling of this logger,
+	 * overriding the configured values in <code>LoggingConfig</code>.
+	 * Records that are suppressed are counted and
+	 * summarized periodically.
+	 * @param rate The <code>int</code> number of records
+	 * allowed per second. <code>0</code> if the rate is
+	 * not limited.
+	 * @param burst The <code>int</code> number of records
+	 * allowed in a burst. If not positive, the rate is
+	 * used.
+	 * @param perTemplate <code>true</code> if each message
+	 * template is limited separately. <code>false</code>
+	 * if all the records of this logger share the limit.
+	 * @param sampleRate The <code>double</code> probability
+	 * of a record being logged between <code>0</code>
+	 * and <code>1</code>.
+	 */
+	public void setThrottle(final int rate, final int burst, final boolean perTemplate, final double sampleRate) {
+		this.throttleSet = true;
+		if (rate <= 0 && sampleRate >= 1) {
+			this.throttle = null;
+		} else {
+			this.throttle = new LogThrottle(rate, burst, perTemplate, sampleRate);
+			FileLogger.startSummarizer();
+		}
+	}
+
+	/**
+	 * Try to acquire the permission to log a record
+	 * with the given message template from the throttle.
+	 * @param template The <code>String</code> message
+	 * template. <code>null</code> if the record is only
+	 * limited per logger.
+	 * @return <code>true</code> if the record should be
+	 * logged. <code>false</code> if it is suppressed.
+	 */
+	private boolean acquire(final String template) {
+		final LogThrottle throttle = this.throttle;
+		return throttle == null || throttle.acquire(template);
+	}
+
+	/**
+	 * Check if a message with the given level would be
+	 * logged by this logger. The message of any level
+	 * that is not loggable is never built.
+	 * @param level The <code>Level</code> to check.
+	 * @return <code>true</code> if logging is enabled
+	 * and the level is at or above the threshold of
+	 * this logger. <code>false</code> otherwise.
+	 */
+	public boolean isLoggable(final Level level) {
+		final int global = LoggingConfig.getThreshold();
+		if (global == LoggingConfig.Disabled) return false;
+		final int local = this.threshold;
+		final int min = (local == FileLogger.Inherit) ? global : local;
+		return level.intValue() >= min;
 	}
 
 	/**
@@ -79,9 +254,36 @@ public final class FileLogger {
 	 * to be logged.
 	 */
 	public void info(final String message) {
-		final Boolean enabled = (Boolean)LoggingConfig.Enabled.getValue();
-		if (!enabled) return;
-		this.logger.info(message);
+		if (!this.isLoggable(Level.INFO) || !this.acquire(message)) return;
+		this.log(Level.INFO, "info", message, null);
+	}
+
+	/**
+	 * Log an info level message, if logging is enabled.
+	 * The message is only built if the level is loggable.
+	 * @param message The <code>Supplier</code> of the
+	 * <code>String</code> message to be logged.
+	 */
+	public void info(final Supplier<String> message) {
+		if (!this.isLoggable(Level.INFO) || !this.acquire(null)) return;
+		this.log(Level.INFO, "info", message.get(), null);
+	}
+
+	/**
+	 * Log an info level message, if logging is enabled.
+	 * The message is formatted with the arguments using
+	 * <code>MessageFormat</code> only if the level is
+	 * loggable. If asynchronous logging is enabled, the
+	 * message is formatted on the writer thread, thus
+	 * the arguments should not be modified afterwards.
+	 * @param pattern The <code>String</code> pattern
+	 * in the format of <code>MessageFormat</code>.
+	 * @param arguments The <code>Object</code> values
+	 * to format the pattern with.
+	 */
+	public void info(final String pattern, final Object... arguments) {
+		if (!this.isLoggable(Level.INFO) || !this.acquire(pattern)) return;
+		this.log(Level.INFO, "info", pattern, arguments);
 	}
 	
 	/**
@@ -90,9 +292,34 @@ public final class FileLogger {
 	 * to be logged.
 	 */
 	public void severe(final String message) {
-		final Boolean enabled = (Boolean)LoggingConfig.Enabled.getValue();
-		if (!enabled) return;
-		this.logger.severe(message);
+		if (!this.isLoggable(Level.SEVERE) || !this.acquire(message)) return;
+		this.log(Level.SEVERE, "severe", message, null);
+	}
+
+	/**
+	 * Log a severe level message, if logging is enabled.
+	 * The message is only built if the level is loggable.
+	 * @param message The <code>Supplier</code> of the
+	 * <code>String</code> message to be logged.
+	 */
+	public void severe(final Supplier<String> message) {
+		if (!this.isLoggable(Level.SEVERE) || !this.acquire(null)) return;
+		this.log(Level.SEVERE, "severe", message.get(), null);
+	}
+
+	/**
+	 * Log a severe level message, if logging is enabled.
+	 * The message is formatted with the arguments using
+	 * <code>MessageFormat</code> only if the level is
+	 * loggable.
+	 * @param pattern The <code>String</code> pattern
+	 * in the format of <code>MessageFormat</code>.
+	 * @param arguments The <code>Object</code> values
+	 * to format the pattern with.
+	 */
+	public void severe(final String pattern, final Object... arguments) {
+		if (!this.isLoggable(Level.SEVERE) || !this.acquire(pattern)) return;
+		this.log(Level.SEVERE, "severe", pattern, arguments);
 	}
 	
 	/**
@@ -101,24 +328,77 @@ public final class FileLogger {
 	 * to be logged.
 	 */
 	public void warning(final String message) {
-		final Boolean enabled = (Boolean)LoggingConfig.Enabled.getValue();
-		if (!enabled) return;
-		this.logger.warning(message);
+		if (!this.isLoggable(Level.WARNING) || !this.acquire(message)) return;
+		this.log(Level.WARNING, "warning", message, null);
+	}
+
+	/**
+	 * Log a warning level message, if logging is enabled.
+	 * The message is only built if the level is loggable.
+	 * @param message The <code>Supplier</code> of the
+	 * <code>String</code> message to be logged.
+	 */
+	public void warning(final Supplier<String> message) {
+		if (!this.isLoggable(Level.WARNING) || !this.acquire(null)) return;
+		this.log(Level.WARNING, "warning", message.get(), null);
+	}
+
+	/**
+	 * Log a warning level message, if logging is enabled.
+	 * The message is formatted with the arguments using
+	 * <code>MessageFormat</code> only if the level is
+	 * loggable.
+	 * @param pattern The <code>String</code> pattern
+	 * in the format of <code>MessageFormat</code>.
+	 * @param arguments The <code>Object</code> values
+	 * to format the pattern with.
+	 */
+	public void warning(final String pattern, final Object... arguments) {
+		if (!this.isLoggable(Level.WARNING) || !this.acquire(pattern)) return;
+		this.log(Level.WARNING, "warning", pattern, arguments);
 	}
 	
 	/**
 	 * Log the given exception, if logging is enabled.
+	 * <p>
+	 * The first occurrence of a stack trace is logged
+	 * in full, including the causes and the suppressed
+	 * exceptions, tagged with its fingerprint. Repeated
+	 * occurrences of the same stack trace are logged as
+	 * the exception with a reference to the fingerprint
+	 * and the occurrence count, until any log segment
+	 * is rotated.
 	 * @param exception The <code>Exception</code> to
 	 * be logged.
 	 */
 	public void exception(final Exception exception) {
-		final Boolean enabled = (Boolean)LoggingConfig.Enabled.getValue();
-		if (!enabled) return;
-		final StringBuilder builder = new StringBuilder();
-		builder.append(exception.toString()).append("\n");
-		final String stacktrace = FileLogger.buildStacktrace(exception.getStackTrace());
-		builder.append(stacktrace);
-		this.logger.severe(builder.toString());
+		if (!this.isLoggable(Level.SEVERE) || !this.acquire(exception.getClass().getName())) return;
+		this.log(Level.SEVERE, "exception", this.traces.format(exception), null);
+	}
+
+	/**
+	 * Log a record with the given values. The source of
+	 * the record is set explicitly, so the logger does
+	 * not walk the stack to infer the caller.
+	 * @param level The <code>Level</code> of the record.
+	 * @param method The <code>String</code> name of the
+	 * invoked logging method.
+	 * @param message The <code>String</code> message or
+	 * pattern.
+	 * @param arguments The <code>Object</code> arguments
+	 * of the pattern. <code>null</code> if the message
+	 * is not a pattern.
+	 */
+	private void log(final Level level, final String method, final String message, final Object[] arguments) {
+		final LoggingMetrics metrics = LoggingMetrics.instance;
+		final long start = metrics.start();
+		final LogRecord record = new LogRecord(level, message);
+		record.setLoggerName(this.logger.getName());
+		record.setSourceClassName(FileLogger.SourceClass);
+		record.setSourceMethodName(method);
+		if (arguments != null) record.setParameters(arguments);
+		this.logger.log(record);
+		metrics.record(level, start);
 	}
 
 	/**
@@ -146,9 +426,10 @@ public final class FileLogger {
 	 * <p>
 	 * This method provides necessary thread-safety
 	 * guarantees to allow concurrent retrievals with
-	 * high concurrency capabilities. It ensures that
-	 * a single logger instance is created for the
-	 * same class.
+	 * high concurrency capabilities. Retrieving an
+	 * existing instance does not acquire any locks.
+	 * It ensures that a single logger instance is
+	 * created for the same class.
 	 * @param c The <code>Class</code> that uses the
 	 * returned <code>FileLogger</code> instance and
 	 * as the key to look up existing loggers.
@@ -157,30 +438,24 @@ public final class FileLogger {
 	 */
 	public static FileLogger getLogger(final Class<?> c) {
 		final String classname = c.getName();
-		// Read lock.
-		FileLogger.lock.readLock().lock();
-		try {
-			FileLogger instance = FileLogger.cache.get(classname);
-			// Create a new instance.
-			if (instance == null) {
-				// Lock write.
-				FileLogger.lock.readLock().unlock();
-				FileLogger.lock.writeLock().lock();
-				try {
-					// Second check.
-					instance = FileLogger.cache.get(classname);
-					if (instance == null) {
-						instance = FileLogger.newFileLogger(classname);
-						FileLogger.cache.put(classname, instance);
-					}
-				} finally {
-					FileLogger.lock.readLock().lock();
-					FileLogger.lock.writeLock().unlock();
-				}
-			}
-			return instance;
-		} finally {
-			FileLogger.lock.readLock().unlock();
+		final FileLogger instance = FileLogger.cache.get(classname);
+		if (instance != null) return instance;
+		// Only a single instance is created per class-name.
+		return FileLogger.cache.computeIfAbsent(classname, FileLogger.factory);
+	}
+
+	/**
+	 * Create the logger instances for the given classes
+	 * ahead of time, so the first logging invocations
+	 * do not pay for the file handler creation. This
+	 * method should be invoked at application startup
+	 * after <code>LoggingConfig</code> is set.
+	 * @param classes The <code>Class</code> values that
+	 * use <code>FileLogger</code> instances.
+	 */
+	public static void register(final Class<?>... classes) {
+		for (int i = 0; i < classes.length; i++) {
+			FileLogger.getLogger(classes[i]);
 		}
 	}
 	
@@ -195,59 +470,230 @@ public final class FileLogger {
 	 * @return The <code>FileLogger</code> instance.
 	 */
 	private static FileLogger newFileLogger(final String classname) {
+		LoggingMetrics.instance.register();
+		final Logger logger = Logger.getLogger(classname);
+		// Serialized with reconfiguration.
+		synchronized (FileLogger.consoleHandler) {
+			try {
+				final Handler[] handlers = FileLogger.newHandlers(classname);
+				for (int i = 0; i < handlers.length; i++) logger.addHandler(handlers[i]);
+				return new FileLogger(logger, handlers);
+			} catch (IOException e) {
+				// Should not occur.
+				e.printStackTrace();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Create the handlers of the logger with the given
+	 * class name based on configuration values in
+	 * <code>LoggingConfig</code>. This method must be
+	 * invoked with the console handler lock held.
+	 * @param classname The <code>String</code> class-
+	 * name of the class that uses the logger.
+	 * @return The <code>Handler</code> array. Empty if
+	 * file output is disabled.
+	 * @throws IOException If creating a file handler
+	 * failed.
+	 */
+	private static Handler[] newHandlers(final String classname) throws IOException {
 		// No-op logger.
-		if (!(Boolean)LoggingConfig.FileOutputEnabled.getValue()) {
-			return new FileLogger(Logger.getLogger(classname));
+		if (!(Boolean)LoggingConfig.FileOutputEnabled.getValue()) return new Handler[0];
+		// Create file handler using class name.
+		// The asynchronous writer flushes per batch.
+		final boolean async = (Boolean)LoggingConfig.AsyncEnabled.getValue();
+		final Handler handler = FileLogger.newFileHandler(classname, !async);
+		// Add in standard file handler.
+		Handler console = FileLogger.consoleHandler.get();
+		if (console == null) {
+			// Merged by a single thread without a global lock.
+			console = new AggregateHandler(FileLogger.newFileHandler("console", false));
+			FileLogger.consoleHandler.set(console);
+		}
+		// Hand off both to the writer thread if asynchronous.
+		if (async) return new Handler[] {new AsyncHandler(FileLogger.getDispatcher(), handler, console)};
+		else return new Handler[] {handler, console};
+	}
+
+	/**
+	 * Apply the current configuration values in
+	 * <code>LoggingConfig</code> to all the existing
+	 * logger instances, including the file output,
+	 * archiving, asynchronous and rate limiting values.
+	 * <p>
+	 * The file handlers of all the loggers are replaced
+	 * with new ones created from the current values,
+	 * which continue the active log files, and the
+	 * previous handlers are closed once their pending
+	 * records are written. If the asynchronous values
+	 * changed, the previous writer thread is stopped
+	 * once its pending records are written. Throttles
+	 * that are not set explicitly are replaced after
+	 * summarizing their suppressed records. Logging
+	 * continues concurrently.
+	 */
+	public static void reconfigure() {
+		synchronized (FileLogger.consoleHandler) {
+			final Handler console = FileLogger.consoleHandler.getAndSet(null);
+			final AsyncDispatcher stale = FileLogger.detachDispatcher();
+			for (final FileLogger instance : FileLogger.cache.values()) {
+				final Handler[] previous = instance.handlers;
+				Handler[] handlers;
+				try {
+					handlers = FileLogger.newHandlers(instance.logger.getName());
+				} catch (final IOException e) {
+					e.printStackTrace();
+					handlers = new Handler[0];
+				}
+				// Attach first so no records are missed.
+				for (int i = 0; i < handlers.length; i++) instance.logger.addHandler(handlers[i]);
+				for (int i = 0; i < previous.length; i++) {
+					instance.logger.removeHandler(previous[i]);
+					FileLogger.retire(previous[i], console, stale);
+				}
+				instance.handlers = handlers;
+				if (!instance.throttleSet) instance.resetThrottle();
+			}
+			if (console != null) FileLogger.retire(console, null, stale);
+			// Write out the records of the previous writer thread.
+			if (stale != null) stale.shutdown();
 		}
-		try {
-			// Create file handler using class name.
-			final FileHandler handler = FileLogger.newFileHandler(classname);
-			// Create logger with file handler.
-			final Logger logger = Logger.getLogger(classname);
-			logger.addHandler(handler);
-			// Add in standard file handler.
-			FileHandler console = FileLogger.consoleHandler.get();
-			if (console == null) {
-				console = FileLogger.newFileHandler("console");
-				final boolean succeeded = FileLogger.consoleHandler.compareAndSet(null, console);
-				// Use singleton.
-				if (!succeeded) console = FileLogger.consoleHandler.get();
+	}
+
+	/**
+	 * Replace the throttle of this logger with a new one
+	 * created from the values in <code>LoggingConfig</code>,
+	 * summarizing the suppressed records of the previous
+	 * throttle.
+	 */
+	private void resetThrottle() {
+		final LogThrottle previous = this.throttle;
+		this.throttle = LogThrottle.newConfigured();
+		if (previous != null) previous.summarize(this.logger);
+		if (this.throttle != null) FileLogger.startSummarizer();
+	}
+
+	/**
+	 * Detach the shared asynchronous dispatcher if it
+	 * does not match the current values in <code>LoggingConfig</code>.
+	 * This method must be invoked with the console
+	 * handler lock held.
+	 * @return The detached <code>AsyncDispatcher</code>
+	 * that should be shut down once the handlers using
+	 * it are retired. <code>null</code> if there is none
+	 * or it is still used.
+	 */
+	private static AsyncDispatcher detachDispatcher() {
+		final AsyncDispatcher instance = FileLogger.dispatcher.get();
+		if (instance == null) return null;
+		if ((Boolean)LoggingConfig.AsyncEnabled.getValue()) {
+			final Integer size = (Integer)LoggingConfig.AsyncQueueSize.getValue();
+			final OverflowPolicy policy = (OverflowPolicy)LoggingConfig.AsyncOverflowPolicy.getValue();
+			final Level level = (Level)LoggingConfig.AsyncOverflowLevel.getValue();
+			if (instance.isConfigured(size, policy, level)) return null;
+		}
+		FileLogger.dispatcher.set(null);
+		return instance;
+	}
+
+	/**
+	 * Close the given detached handler once its pending
+	 * records are written, excluding the shared console
+	 * handler.
+	 * @param handler The <code>Handler</code> to close.
+	 * @param console The shared console <code>Handler</code>
+	 * that is closed separately.
+	 * @param stale The detached <code>AsyncDispatcher</code>
+	 * that the handler may have pending records in.
+	 * <code>null</code> if there is none.
+	 */
+	private static void retire(final Handler handler, final Handler console, final AsyncDispatcher stale) {
+		if (handler instanceof AsyncHandler) {
+			// Closing the asynchronous handler shuts down the dispatcher.
+			final AsyncHandler async = (AsyncHandler)handler;
+			for (int i = 0; i < async.targets.length; i++) {
+				if (async.targets[i] != console) async.dispatcher.retire(async.targets[i]);
 			}
-			logger.addHandler(console);
-			// Return.
-			return new FileLogger(logger);
-		} catch (SecurityException e) {
-			// Should not occur.
-			e.printStackTrace();
-		} catch (IOException e) {
-			// Should not occur.
-			e.printStackTrace();
+		} else if (handler != console) {
+			final AsyncDispatcher dispatcher = (stale != null) ? stale : FileLogger.dispatcher.get();
+			if (dispatcher != null) dispatcher.retire(handler);
+			else handler.close();
 		}
-		return null;
+	}
+
+	/**
+	 * Start the daemon thread that periodically logs
+	 * the summaries of the suppressed records of all
+	 * the loggers, if not already started.
+	 */
+	private static void startSummarizer() {
+		if (!FileLogger.summarizing.compareAndSet(false, true)) return;
+		final Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				while (true) {
+					try {
+						final Integer interval = (Integer)LoggingConfig.SuppressionSummaryInterval.getValue();
+						Thread.sleep(interval);
+					} catch (final InterruptedException e) {
+						return;
+					}
+					for (final FileLogger instance : FileLogger.cache.values()) {
+						final LogThrottle throttle = instance.throttle;
+						if (throttle != null) throttle.summarize(instance.logger);
+					}
+				}
+			}
+		}, "hemera-log-summarizer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Retrieve the shared asynchronous dispatcher. The
+	 * dispatcher is created and started based on the
+	 * configuration values in <code>LoggingConfig</code>
+	 * when first retrieved.
+	 * @return The <code>AsyncDispatcher</code> instance.
+	 */
+	private static AsyncDispatcher getDispatcher() {
+		AsyncDispatcher instance = FileLogger.dispatcher.get();
+		if (instance == null) {
+			final Integer size = (Integer)LoggingConfig.AsyncQueueSize.getValue();
+			final OverflowPolicy policy = (OverflowPolicy)LoggingConfig.AsyncOverflowPolicy.getValue();
+			final Level level = (Level)LoggingConfig.AsyncOverflowLevel.getValue();
+			instance = new AsyncDispatcher(size, policy, level);
+			final boolean succeeded = FileLogger.dispatcher.compareAndSet(null, instance);
+			// Only start the winning instance.
+			if (succeeded) instance.start();
+			else instance = FileLogger.dispatcher.get();
+		}
+		return instance;
 	}
 
 	/**
 	 * Create a new file handler using the given name
 	 * as file pattern, based on configuration values
-	 * in <code>CLogging</code>.
+	 * in <code>LoggingConfig</code>.
 	 * @param name The <code>String</code> name pattern
 	 * to be used for log files.
-	 * @return The <code>FileHandler</code> instance.
-	 * @throws SecurityException If construction failed.
+	 * @param autoflush <code>true</code> if the handler
+	 * should be flushed after every record.
+	 * @return The <code>Handler</code> instance.
 	 * @throws IOException If construction failed.
 	 */
-	private static FileHandler newFileHandler(final String name) throws SecurityException, IOException {
-		// Create a file handler based on logging configuration.
+	private static Handler newFileHandler(final String name, final boolean autoflush) throws IOException {
+		// Create a memory-mapped handler based on logging configuration.
 		final String directory = (String)LoggingConfig.Directory.getValue();
-		final StringBuilder pattern = new StringBuilder();
-		pattern.append(directory);
-		if (!directory.endsWith(File.separator)) pattern.append(File.separator);
-		pattern.append(name).append(".log");
 		final Integer filesize = (Integer)LoggingConfig.FileSize.getValue();
 		final Integer filecount = (Integer)LoggingConfig.FileCount.getValue();
-		final FileHandler handler = new FileHandler(pattern.toString(), filesize, filecount, false);
-		final LoggingFormatter formatter = new LoggingFormatter();
-		handler.setFormatter(formatter);
-		return handler;
+		final SyncPolicy policy = (SyncPolicy)LoggingConfig.FileSyncPolicy.getValue();
+		final Integer interval = (Integer)LoggingConfig.FileSyncInterval.getValue();
+		final boolean archive = LogArchiver.isEnabled();
+		final boolean binary = (Boolean)LoggingConfig.BinaryFormatEnabled.getValue();
+		final Formatter formatter = binary ? new BinaryFormatter() : new LoggingFormatter();
+		return new MappedFileHandler(directory, name, filesize, filecount, policy, interval, autoflush, archive, formatter);
 	}
 }
@@ -0,0 +1,333 @@
+package hemera.core.utility.logging;
+
+import hemera.core.utility.data.TimeData;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <code>LogArchiver</code> defines the singleton unit
+ * that archives rotated log segments on a single low
+ * priority background thread.
+ * <p>
+ * A rotated segment is handed to the archiver as a
+ * pending file. The archiver shifts the indices of
+ * the existing archives by one, then moves the
+ * pending file into index <code>1</code>, optionally
+ * compressing it into <code>name.log.1.gz</code>.
+ * Since only the archiver thread ever renames the
+ * archives, rotation never blocks on compression.
+ * <p>
+ * After every archive and periodically, archives are
+ * deleted from the oldest until the retention limits
+ * of <code>LoggingConfig.FileCount</code>, which
+ * always retains at least one archive,
+ * <code>LoggingConfig.RetentionBytes</code> and
+ * <code>LoggingConfig.RetentionAge</code> are met.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+final class LogArchiver {
+	/**
+	 * The singleton <code>LogArchiver</code> instance.
+	 */
+	static final LogArchiver instance = new LogArchiver();
+	/**
+	 * The <code>String</code> infix of pending files.
+	 */
+	private static final String PendingInfix = ".log.pending.";
+	/**
+	 * The <code>String</code> suffix of compressed
+	 * archives.
+	 */
+	private static final String CompressedSuffix = ".gz";
+	/**
+	 * The <code>long</code> interval in minutes between
+	 * periodic retention sweeps.
+	 */
+	private static final long SweepInterval = 60;
+	/**
+	 * The <code>ScheduledExecutorService</code> that
+	 * runs all the archiving tasks on a single thread.
+	 */
+	private final ScheduledExecutorService executor;
+	/**
+	 * The <code>ConcurrentMap</code> of the <code>String</code>
+	 * segment path key to the <code>Target</code> that
+	 * have been archived, used for periodic sweeps.
+	 */
+	private final ConcurrentMap<String, Target> targets;
+	/**
+	 * The <code>AtomicLong</code> sequence of pending
+	 * file suffixes.
+	 */
+	private final AtomicLong sequence;
+
+	/**
+	 * Constructor of <code>LogArchiver</code>.
+	 */
+	private LogArchiver() {
+		this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "hemera-log-archiver");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			}
+		});
+		this.targets = new ConcurrentHashMap<String, Target>();
+		this.sequence = new AtomicLong(System.currentTimeMillis());
+		this.executor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				for (final Target target : LogArchiver.this.targets.values()) {
+					LogArchiver.this.retain(target);
+				}
+			}
+		}, LogArchiver.SweepInterval, LogArchiver.SweepInterval, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * Check if rotated segments should be handed to
+	 * the archiver based on the current configuration
+	 * values in <code>LoggingConfig</code>.
+	 * @return <code>true</code> if compression or any
+	 * retention limit other than the file count is
+	 * configured. <code>false</code> otherwise.
+	 */
+	static boolean isEnabled() {
+		final Boolean compress = (Boolean)LoggingConfig.CompressionEnabled.getValue();
+		final Long bytes = (Long)LoggingConfig.RetentionBytes.getValue();
+		final TimeData age = (TimeData)LoggingConfig.RetentionAge.getValue();
+		return compress || bytes > 0 || age != null;
+	}
+
+	/**
+	 * Create a new pending file for a segment of the
+	 * given name. The caller should rename the rotated
+	 * segment to the returned file and then invoke
+	 * <code>archive</code>.
+	 * @param directory The <code>File</code> directory
+	 * of the segments.
+	 * @param name The <code>String</code> name of the
+	 * segments.
+	 * @return The pending <code>File</code>.
+	 */
+	File newPendingFile(final File directory, final String name) {
+		return new File(directory, name + LogArchiver.PendingInfix + this.sequence.incrementAndGet());
+	}
+
+	/**
+	 * Archive all the pending files of the segments with
+	 * the given name in the background.
+	 * @param directory The <code>File</code> directory
+	 * of the segments.
+	 * @param name The <code>String</code> name of the
+	 * segments.
+	 * @param count The <code>int</code> total number of
+	 * segments retained including the active one.
+	 */
+	void archive(final File directory, final String name, final int count) {
+		final Target target = new Target(directory, name, count);
+		this.targets.put(target.getFile(0, false).getAbsolutePath(), target);
+		this.executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				LogArchiver.this.process(target);
+			}
+		});
+	}
+
+	/**
+	 * Move all the pending files of the given target
+	 * into the archives and apply retention.
+	 * @param target The <code>Target</code> to process.
+	 */
+	private void process(final Target target) {
+		final String prefix = target.name + LogArchiver.PendingInfix;
+		final File[] pending = target.directory.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(final File dir, final String filename) {
+				return filename.startsWith(prefix);
+			}
+		});
+		if (pending != null) {
+			// Oldest first.
+			Arrays.sort(pending, new Comparator<File>() {
+				@Override
+				public int compare(final File a, final File b) {
+					return Long.compare(LogArchiver.parseSequence(a, prefix), LogArchiver.parseSequence(b, prefix));
+				}
+			});
+			final boolean compress = (Boolean)LoggingConfig.CompressionEnabled.getValue();
+			for (int i = 0; i < pending.length; i++) {
+				try {
+					this.shift(target);
+					if (compress) this.compress(pending[i], target.getFile(1, true));
+					else pending[i].renameTo(target.getFile(1, false));
+				} catch (final IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		this.retain(target);
+	}
+
+	/**
+	 * Shift all the archives of the given target by one
+	 * index, discarding the ones beyond the file count.
+	 * @param target The <code>Target</code> to shift.
+	 */
+	private void shift(final Target target) {
+		for (int i = target.count-1; i >= 1; i--) {
+			for (int j = 0; j < 2; j++) {
+				final boolean compressed = (j == 1);
+				final File from = target.getFile(i, compressed);
+				if (!from.exists()) continue;
+				if (i == target.count-1) {
+					from.delete();
+				} else {
+					final File to = target.getFile(i+1, compressed);
+					to.delete();
+					from.renameTo(to);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compress the given source file into the given
+	 * target file and delete the source file. The
+	 * target only appears once fully written.
+	 * @param source The <code>File</code> to compress.
+	 * @param target The compressed <code>File</code>.
+	 * @throws IOException If file processing failed.
+	 */
+	private void compress(final File source, final File target) throws IOException {
+		final File temp = new File(target.getPath() + ".tmp");
+		InputStream input = null;
+		OutputStream output = null;
+		try {
+			input = new FileInputStream(source);
+			output = new GZIPOutputStream(new FileOutputStream(temp), 65536);
+			final byte[] buffer = new byte[65536];
+			while (true) {
+				final int count = input.read(buffer);
+				if (count <= 0) break;
+				else output.write(buffer, 0, count);
+			}
+		} finally {
+			if (input != null) input.close();
+			if (output != null) output.close();
+		}
+		target.delete();
+		if (!temp.renameTo(target)) throw new IOException("Renaming compressed archive failed: " + target);
+		source.delete();
+	}
+
+	/**
+	 * Delete the archives of the given target from the
+	 * oldest until the configured retention limits of
+	 * total bytes and age are met.
+	 * @param target The <code>Target</code> to apply
+	 * retention to.
+	 */
+	private void retain(final Target target) {
+		final long limit = (Long)LoggingConfig.RetentionBytes.getValue();
+		final TimeData age = (TimeData)LoggingConfig.RetentionAge.getValue();
+		final long cutoff = (age==null) ? Long.MIN_VALUE : System.currentTimeMillis() - age.unit.toMillis(age.value);
+		long total = 0;
+		boolean exceeded = false;
+		for (int i = 1; i < target.count; i++) {
+			for (int j = 0; j < 2; j++) {
+				final File file = target.getFile(i, j == 1);
+				if (!file.exists()) continue;
+				total += file.length();
+				if (!exceeded) {
+					exceeded = (limit > 0 && total > limit) || file.lastModified() < cutoff;
+				}
+				if (exceeded) file.delete();
+			}
+		}
+	}
+
+	/**
+	 * Parse the sequence of the given pending file.
+	 * @param file The pending <code>File</code>.
+	 * @param prefix The <code>String</code> prefix of
+	 * the pending file names.
+	 * @return The <code>long</code> sequence.
+	 */
+	private static long parseSequence(final File file, final String prefix) {
+		try {
+			return Long.parseLong(file.getName().substring(prefix.length()));
+		} catch (final NumberFormatException e) {
+			return Long.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * <code>Target</code> defines the immutable data
+	 * structure of a set of segments to archive.
+	 */
+	private static final class Target {
+		/**
+		 * The <code>File</code> directory of the segments.
+		 */
+		private final File directory;
+		/**
+		 * The <code>String</code> name of the segments.
+		 */
+		private final String name;
+		/**
+		 * The <code>int</code> total number of segments
+		 * retained including the active one.
+		 */
+		private final int count;
+
+		/**
+		 * Constructor of <code>Target</code>.
+		 * @param directory The <code>File</code> directory
+		 * of the segments.
+		 * @param name The <code>String</code> name of the
+		 * segments.
+		 * @param count The <code>int</code> total number
+		 * of segments retained.
+		 */
+		private Target(final File directory, final String name, final int count) {
+			this.directory = directory;
+			this.name = name;
+			this.count = count;
+		}
+
+		/**
+		 * Retrieve the archive file with the given index.
+		 * @param index The <code>int</code> index.
+		 * @param compressed <code>true</code> to retrieve
+		 * the compressed archive.
+		 * @return The <code>File</code> of the archive.
+		 */
+		private File getFile(final int index, final boolean compressed) {
+			final String filename = this.name + ".log." + index;
+			if (compressed) return new File(this.directory, filename + LogArchiver.CompressedSuffix);
+			else return new File(this.directory, filename);
+		}
+	}
+}
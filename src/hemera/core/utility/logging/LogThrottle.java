@@ -0,0 +1,259 @@
+package hemera.core.utility.logging;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <code>LogThrottle</code> defines the immutable
+ * configuration and the lock-free state of the rate
+ * limiting and sampling of a single logger.
+ * <p>
+ * Rate limiting uses a token bucket per logger, or
+ * per message template if configured so. The bucket
+ * is implemented as a single theoretical arrival time
+ * that is advanced with a compare-and-set when a
+ * record is allowed, thus a record under the limit
+ * costs a clock read and a single atomic update, and
+ * a suppressed record does not write any shared
+ * state other than a striped counter. The clock is
+ * a coarse millisecond clock that is advanced by a
+ * daemon thread, so reading it is a plain volatile
+ * read instead of a system call.
+ * <p>
+ * Sampling allows each record with a fixed
+ * probability before the rate limit is applied.
+ * <p>
+ * The number of suppressed records is summarized
+ * periodically by logging a single message per
+ * bucket that suppressed any records.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.1
+ */
+final class LogThrottle {
+	/**
+	 * The <code>int</code> maximum number of template
+	 * buckets, beyond which records share the logger
+	 * bucket.
+	 */
+	private static final int MaxTemplates = 1024;
+	/**
+	 * The <code>double</code> probability of a record
+	 * being sampled.
+	 */
+	private final double sampleRate;
+	/**
+	 * The <code>long</code> interval in nanoseconds
+	 * between tokens. <code>0</code> if not limited.
+	 */
+	private final long interval;
+	/**
+	 * The <code>long</code> time in nanoseconds the
+	 * arrival time may run ahead of the current time,
+	 * which allows the burst.
+	 */
+	private final long tolerance;
+	/**
+	 * The <code>Boolean</code> flag indicating if each
+	 * message template has its own bucket.
+	 */
+	private final boolean perTemplate;
+	/**
+	 * The <code>Bucket</code> of the logger.
+	 */
+	private final Bucket bucket;
+	/**
+	 * The <code>ConcurrentMap</code> of the <code>String</code>
+	 * template to its <code>Bucket</code>.
+	 */
+	private final ConcurrentMap<String, Bucket> templates;
+
+	/**
+	 * Constructor of <code>LogThrottle</code>.
+	 * @param rate The <code>int</code> number of records
+	 * allowed per second. <code>0</code> if not limited.
+	 * @param burst The <code>int</code> number of records
+	 * allowed in a burst. If not positive, the rate is
+	 * used.
+	 * @param perTemplate <code>true</code> if each message
+	 * template is limited separately.
+	 * @param sampleRate The <code>double</code> probability
+	 * of a record being sampled between <code>0</code>
+	 * and <code>1</code>.
+	 */
+	LogThrottle(final int rate, final int burst, final boolean perTemplate, final double sampleRate) {
+		this.sampleRate = sampleRate;
+		if (rate > 0) {
+			this.interval = TimeUnit.SECONDS.toNanos(1) / rate;
+			final int tokens = (burst > 0) ? burst : rate;
+			this.tolerance = this.interval * (tokens-1);
+		} else {
+			this.interval = 0;
+			this.tolerance = 0;
+		}
+		this.perTemplate = perTemplate && rate > 0;
+		this.bucket = new Bucket(null);
+		this.templates = new ConcurrentHashMap<String, Bucket>();
+	}
+
+	/**
+	 * Create a new throttle based on the configuration
+	 * values in <code>LoggingConfig</code>.
+	 * @return The <code>LogThrottle</code> instance.
+	 * <code>null</code> if no rate limiting or sampling
+	 * is configured.
+	 */
+	static LogThrottle newConfigured() {
+		final Integer rate = (Integer)LoggingConfig.RateLimit.getValue();
+		final Integer burst = (Integer)LoggingConfig.RateLimitBurst.getValue();
+		final Boolean perTemplate = (Boolean)LoggingConfig.RateLimitPerTemplate.getValue();
+		final Double sampleRate = (Double)LoggingConfig.SampleRate.getValue();
+		if (rate <= 0 && sampleRate >= 1) return null;
+		return new LogThrottle(rate, burst, perTemplate, sampleRate);
+	}
+
+	/**
+	 * Try to acquire the permission to log a record
+	 * with the given message template.
+	 * @param template The <code>String</code> message
+	 * template. <code>null</code> if the record should
+	 * be limited by the logger bucket.
+	 * @return <code>true</code> if the record should be
+	 * logged. <code>false</code> if it is suppressed.
+	 */
+	boolean acquire(final String template) {
+		final Bucket bucket = this.getBucket(template);
+		if (this.sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= this.sampleRate) {
+			bucket.suppressed.increment();
+			LoggingMetrics.instance.recordSuppressed();
+			return false;
+		}
+		if (this.interval == 0) return true;
+		final long now = Clock.now;
+		while (true) {
+			final long arrival = bucket.arrival.get();
+			final long base = (arrival - now > 0) ? arrival : now;
+			if (base - now > this.tolerance) {
+				bucket.suppressed.increment();
+				LoggingMetrics.instance.recordSuppressed();
+				return false;
+			}
+			if (bucket.arrival.compareAndSet(arrival, base + this.interval)) return true;
+		}
+	}
+
+	/**
+	 * Retrieve the bucket of the given template.
+	 * @param template The <code>String</code> message
+	 * template.
+	 * @return The <code>Bucket</code> instance.
+	 */
+	private Bucket getBucket(final String template) {
+		if (!this.perTemplate || template == null) return this.bucket;
+		final Bucket existing = this.templates.get(template);
+		if (existing != null) return existing;
+		if (this.templates.size() >= LogThrottle.MaxTemplates) return this.bucket;
+		final Bucket created = new Bucket(template);
+		final Bucket previous = this.templates.putIfAbsent(template, created);
+		return (previous==null) ? created : previous;
+	}
+
+	/**
+	 * Log the summary of the records suppressed since
+	 * the last summary to the given logger.
+	 * @param logger The <code>Logger</code> to log to.
+	 */
+	void summarize(final Logger logger) {
+		LogThrottle.summarize(this.bucket, logger);
+		for (final Bucket bucket : this.templates.values()) {
+			LogThrottle.summarize(bucket, logger);
+		}
+	}
+
+	/**
+	 * Log the summary of the given bucket if it has
+	 * suppressed any records.
+	 * @param bucket The <code>Bucket</code> to summarize.
+	 * @param logger The <code>Logger</code> to log to.
+	 */
+	private static void summarize(final Bucket bucket, final Logger logger) {
+		final long count = bucket.suppressed.sumThenReset();
+		if (count <= 0) return;
+		if (bucket.template == null) {
+			logger.log(Level.WARNING, "Suppressed {0} similar messages.", count);
+		} else {
+			logger.log(Level.WARNING, "Suppressed {0} similar messages: {1}", new Object[] {count, bucket.template});
+		}
+	}
+
+	/**
+	 * <code>Bucket</code> defines the state of a single
+	 * token bucket.
+	 */
+	private static final class Bucket {
+		/**
+		 * The <code>String</code> message template.
+		 * <code>null</code> for the logger bucket.
+		 */
+		private final String template;
+		/**
+		 * The <code>AtomicLong</code> theoretical arrival
+		 * time in nanoseconds of the next record.
+		 */
+		private final AtomicLong arrival;
+		/**
+		 * The <code>LongAdder</code> number of suppressed
+		 * records since the last summary.
+		 */
+		private final LongAdder suppressed;
+
+		/**
+		 * Constructor of <code>Bucket</code>.
+		 * @param template The <code>String</code> message
+		 * template.
+		 */
+		private Bucket(final String template) {
+			this.template = template;
+			this.arrival = new AtomicLong(Clock.now);
+			this.suppressed = new LongAdder();
+		}
+	}
+
+	/**
+	 * <code>Clock</code> defines the lazily started
+	 * coarse clock that is advanced every millisecond.
+	 */
+	private static final class Clock implements Runnable {
+		/**
+		 * The <code>long</code> tick interval in
+		 * nanoseconds.
+		 */
+		private static final long Tick = TimeUnit.MILLISECONDS.toNanos(1);
+		/**
+		 * The <code>long</code> current time in
+		 * nanoseconds.
+		 */
+		private static volatile long now = System.nanoTime();
+
+		static {
+			final Thread thread = new Thread(new Clock(), "hemera-log-clock");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				LockSupport.parkNanos(Clock.Tick);
+				Clock.now = System.nanoTime();
+			}
+		}
+	}
+}
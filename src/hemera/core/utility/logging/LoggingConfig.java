@@ -1,6 +1,9 @@
 package hemera.core.utility.logging;
 
+import hemera.core.utility.data.TimeData;
+
 import java.io.File;
+import java.util.logging.Level;
 
 /**
  * <code>LoggingConfig</code> defines the enumeration
@@ -11,10 +14,17 @@ import java.io.File;
  * Each <code>LoggingConfig</code> enumeration has a
  * value <code>Object</code> associated with it. This
  * value is of a type that is specific to the usage
- * of the enumeration.
+ * of the enumeration, which is enforced when the
+ * value is set. Updated values are safely published
+ * to all threads.
+ * <p>
+ * The values can be loaded from a properties or XML
+ * file with <code>LoggingConfigLoader</code>, which
+ * may also watch the file and apply changes to the
+ * existing loggers without a restart.
  *
  * @author Yi Wang (Neakor)
- * @version 1.0.0
+ * @version 1.0.8
  */
 public enum LoggingConfig {
 	/**
@@ -23,61 +33,337 @@ public enum LoggingConfig {
 	 * <p>
 	 * Default value is <code>true</code>.
 	 */
-	Enabled(true),
+	Enabled(Boolean.class, true),
+	/**
+	 * The <code>Level</code> value indicating the
+	 * minimum level of messages that are logged. Each
+	 * <code>FileLogger</code> may override this value.
+	 * <p>
+	 * Default value is <code>INFO</code>.
+	 */
+	MinimumLevel(Level.class, Level.INFO),
 	/**
 	 * The <code>Boolean</code> value indicating if the
 	 * file output is enabled. Updating this value after
-	 * the logger is created will not take effect. This
-	 * value should only be set once at application
-	 * initialization time.
+	 * the logger is created only takes effect once
+	 * <code>FileLogger.reconfigure</code> is invoked.
 	 * <p>
 	 * Default value is <code>true</code>.
 	 */
-	FileOutputEnabled(true),
+	FileOutputEnabled(Boolean.class, true),
 	/**
 	 * The <code>String</code> value indicating the
-	 * logging file directory.
+	 * logging file directory. Updating this value after
+	 * the logger is created only takes effect once
+	 * <code>FileLogger.reconfigure</code> is invoked.
 	 * <p>
 	 * Default value is <code>/opt/hemera/log/</code>.
 	 */
-	Directory(File.separator + "opt" + File.separator + "hemera" + File.separator + "log" + File.separator),
+	Directory(String.class, File.separator + "opt" + File.separator + "hemera" + File.separator + "log" + File.separator),
 	/**
 	 * The <code>Integer</code> value indicating the
 	 * maximum size of a single log file before a new
-	 * log file is rotated in.
+	 * log file is rotated in. Updating this value after
+	 * the logger is created only takes effect once
+	 * <code>FileLogger.reconfigure</code> is invoked.
 	 * <p>
 	 * Default value is <code>1048576</code> or 1MB.
 	 */
-	FileSize(1048576),
+	FileSize(Integer.class, 1048576),
 	/**
 	 * The <code>Integer</code> value indicating the
 	 * total number of log files to use for rotation.
+	 * Updating this value after the logger is created
+	 * only takes effect once <code>FileLogger.reconfigure</code>
+	 * is invoked.
 	 * <p>
 	 * Default value is <code>1</code>.
 	 */
-	FileCount(1);
+	FileCount(Integer.class, 1),
+	/**
+	 * The <code>SyncPolicy</code> value indicating when
+	 * the written log records are forced onto the
+	 * storage device. Updating this value after the
+	 * logger is created only takes effect once
+	 * <code>FileLogger.reconfigure</code> is invoked.
+	 * <p>
+	 * Default value is <code>Never</code>.
+	 */
+	FileSyncPolicy(SyncPolicy.class, SyncPolicy.Never),
+	/**
+	 * The <code>Integer</code> value indicating the
+	 * interval in milliseconds between forcing the
+	 * written log records onto the storage device when
+	 * the sync policy is <code>Periodic</code>. Updating
+	 * this value after the logger is created only takes
+	 * effect once <code>FileLogger.reconfigure</code> is
+	 * invoked.
+	 * <p>
+	 * Default value is <code>1000</code>.
+	 */
+	FileSyncInterval(Integer.class, 1000),
+	/**
+	 * The <code>Boolean</code> value indicating if the
+	 * rotated log files are compressed in the gzip
+	 * format by a low priority background thread. If
+	 * <code>FileCount</code> is <code>1</code>, the
+	 * previous log file is retained as the only rotated
+	 * one. Updating this value after the logger is
+	 * created only takes effect once <code>FileLogger.reconfigure</code>
+	 * is invoked.
+	 * <p>
+	 * Default value is <code>false</code>.
+	 */
+	CompressionEnabled(Boolean.class, false),
+	/**
+	 * The <code>Long</code> value indicating the maximum
+	 * total size in bytes of the rotated log files of a
+	 * single logger. The oldest files are deleted first.
+	 * A value of <code>0</code> indicates no limit.
+	 * Updating this value after the logger is created
+	 * only takes effect once <code>FileLogger.reconfigure</code>
+	 * is invoked.
+	 * <p>
+	 * Default value is <code>0</code>.
+	 */
+	RetentionBytes(Long.class, 0L),
+	/**
+	 * The <code>TimeData</code> value indicating the
+	 * maximum age of the rotated log files. Files last
+	 * modified before the age are deleted. A value of
+	 * <code>null</code> indicates no limit. Updating
+	 * this value after the logger is created only takes
+	 * effect once <code>FileLogger.reconfigure</code> is
+	 * invoked.
+	 * <p>
+	 * Default value is <code>null</code>.
+	 */
+	RetentionAge(TimeData.class, null),
+	/**
+	 * The <code>Boolean</code> value indicating if the
+	 * log record timestamps are written in zero-padded
+	 * ISO-8601 format with milliseconds, which sorts
+	 * correctly. Otherwise the legacy format of
+	 * <code>M-d-yyyy H:m:s</code> is used. Updating this
+	 * value after the logger is created only takes
+	 * effect once <code>FileLogger.reconfigure</code> is
+	 * invoked.
+	 * <p>
+	 * Default value is <code>false</code>.
+	 */
+	IsoTimestampEnabled(Boolean.class, false),
+	/**
+	 * The <code>Boolean</code> value indicating if the
+	 * log records are written in the compact binary
+	 * format instead of text. Binary log files can be
+	 * converted to text with <code>BinaryLogDecoder</code>.
+	 * Updating this value after the logger is created
+	 * only takes effect once <code>FileLogger.reconfigure</code>
+	 * is invoked.
+	 * <p>
+	 * Default value is <code>false</code>.
+	 */
+	BinaryFormatEnabled(Boolean.class, false),
+	/**
+	 * The <code>Boolean</code> value indicating if the
+	 * log records are written asynchronously by a
+	 * background writer thread. Updating this value
+	 * after the logger is created only takes effect
+	 * once <code>FileLogger.reconfigure</code> is
+	 * invoked.
+	 * <p>
+	 * Default value is <code>false</code>.
+	 */
+	AsyncEnabled(Boolean.class, false),
+	/**
+	 * The <code>Integer</code> value indicating the
+	 * number of records allowed per second for each
+	 * logger, or each message template if limited per
+	 * template. A value of <code>0</code> indicates no
+	 * limit. Updating this value after the logger is
+	 * created only takes effect once <code>FileLogger.reconfigure</code>
+	 * is invoked, unless the throttle of the logger is
+	 * set explicitly.
+	 * <p>
+	 * Default value is <code>0</code>.
+	 */
+	RateLimit(Integer.class, 0),
+	/**
+	 * The <code>Integer</code> value indicating the
+	 * number of records allowed in a burst above the
+	 * rate limit. A value of <code>0</code> indicates
+	 * the burst is the same as the rate. Updating this
+	 * value after the logger is created only takes
+	 * effect once <code>FileLogger.reconfigure</code> is
+	 * invoked.
+	 * <p>
+	 * Default value is <code>0</code>.
+	 */
+	RateLimitBurst(Integer.class, 0),
+	/**
+	 * The <code>Boolean</code> value indicating if the
+	 * rate is limited separately for each message
+	 * template, instead of for each logger. Updating
+	 * this value after the logger is created only takes
+	 * effect once <code>FileLogger.reconfigure</code> is
+	 * invoked.
+	 * <p>
+	 * Default value is <code>false</code>.
+	 */
+	RateLimitPerTemplate(Boolean.class, false),
+	/**
+	 * The <code>Double</code> value indicating the
+	 * probability between <code>0</code> and <code>1</code>
+	 * of a record being logged. Updating this value
+	 * after the logger is created only takes effect
+	 * once <code>FileLogger.reconfigure</code> is
+	 * invoked.
+	 * <p>
+	 * Default value is <code>1.0</code>.
+	 */
+	SampleRate(Double.class, 1.0),
+	/**
+	 * The <code>Integer</code> value indicating the
+	 * interval in milliseconds between logging the
+	 * summaries of the suppressed records.
+	 * <p>
+	 * Default value is <code>10000</code>.
+	 */
+	SuppressionSummaryInterval(Integer.class, 10000),
+	/**
+	 * The <code>Integer</code> value indicating the
+	 * capacity of the asynchronous logging queue. The
+	 * value is rounded up to the next power of two.
+	 * Updating this value after the writer thread is
+	 * started only takes effect once <code>FileLogger.reconfigure</code>
+	 * is invoked, which replaces the writer thread.
+	 * <p>
+	 * Default value is <code>8192</code>.
+	 */
+	AsyncQueueSize(Integer.class, 8192),
+	/**
+	 * The <code>OverflowPolicy</code> value indicating
+	 * the behavior when the asynchronous logging queue
+	 * is full. Updating this value after the writer
+	 * thread is started only takes effect once
+	 * <code>FileLogger.reconfigure</code> is invoked.
+	 * <p>
+	 * Default value is <code>Block</code>.
+	 */
+	AsyncOverflowPolicy(OverflowPolicy.class, OverflowPolicy.Block),
+	/**
+	 * The <code>Level</code> value indicating the level
+	 * at or above which records are never dropped when
+	 * the overflow policy is <code>DropBelowSeverity</code>.
+	 * Updating this value after the writer thread is
+	 * started only takes effect once <code>FileLogger.reconfigure</code>
+	 * is invoked.
+	 * <p>
+	 * Default value is <code>WARNING</code>.
+	 */
+	AsyncOverflowLevel(Level.class, Level.WARNING);
+
+	/**
+	 * The <code>int</code> threshold value indicating
+	 * that logging is disabled.
+	 */
+	static final int Disabled = Integer.MAX_VALUE;
+	/**
+	 * The <code>int</code> value of the configured
+	 * minimum level, or <code>Disabled</code> if the
+	 * logging is disabled. This value is derived from
+	 * <code>Enabled</code> and <code>MinimumLevel</code>
+	 * whenever either is updated, so the logging path
+	 * does not need to unbox the values.
+	 */
+	private static volatile int threshold = LoggingConfig.computeThreshold();
 	
+	/**
+	 * The <code>Class</code> of the value.
+	 */
+	private final Class<?> type;
+	/**
+	 * The <code>Boolean</code> flag indicating if the
+	 * value may be <code>null</code>.
+	 */
+	private final boolean nullable;
 	/**
 	 * The type specific <code>Object</code> value.
 	 */
-	private Object value;
+	private volatile Object value;
 	
 	/**
-	 * Constructor of <code>CLogging</code>.
+	 * Constructor of <code>LoggingConfig</code>.
+	 * @param type The <code>Class</code> of the value.
 	 * @param value The default <code>Object</code> value.
+	 * If <code>null</code>, the value may be set to
+	 * <code>null</code>.
 	 */
-	private LoggingConfig(final Object value) {
+	private LoggingConfig(final Class<?> type, final Object value) {
+		this.type = type;
+		this.nullable = (value == null);
 		this.value = value;
 	}
 	
 	/**
 	 * Set the type specific value.
 	 * @param value The <code>Object</code> value.
+	 * @throws IllegalArgumentException If the value is
+	 * not of the type of this configuration.
 	 */
 	public void setValue(final Object value) {
+		if (value == null ? !this.nullable : !this.type.isInstance(value)) {
+			throw new IllegalArgumentException(this.name() + " requires a " + this.type.getSimpleName() + " value: " + value);
+		}
 		this.value = value;
+		if (this == Enabled || this == MinimumLevel) {
+			// Serialize to avoid publishing a stale threshold.
+			synchronized (LoggingConfig.class) {
+				LoggingConfig.threshold = LoggingConfig.computeThreshold();
+			}
+		}
 	}
 	
+	/**
+	 * Parse the given text into the type specific value.
+	 * The value of this configuration is not modified.
+	 * @param text The <code>String</code> to parse. An
+	 * empty string is parsed as <code>null</code> if the
+	 * value may be <code>null</code>.
+	 * @return The <code>Object</code> value.
+	 * @throws IllegalArgumentException If the text is
+	 * not a valid value.
+	 */
+	public Object parse(final String text) {
+		final String trimmed = text.trim();
+		if (trimmed.isEmpty() && this.nullable) return null;
+		try {
+			if (this.type == Boolean.class) {
+				if (trimmed.equalsIgnoreCase("true")) return Boolean.TRUE;
+				else if (trimmed.equalsIgnoreCase("false")) return Boolean.FALSE;
+			} else if (this.type == Integer.class) {
+				return Integer.valueOf(trimmed);
+			} else if (this.type == Long.class) {
+				return Long.valueOf(trimmed);
+			} else if (this.type == Double.class) {
+				return Double.valueOf(trimmed);
+			} else if (this.type == Level.class) {
+				return Level.parse(trimmed);
+			} else if (this.type == SyncPolicy.class) {
+				return SyncPolicy.valueOf(trimmed);
+			} else if (this.type == OverflowPolicy.class) {
+				return OverflowPolicy.valueOf(trimmed);
+			} else if (this.type == TimeData.class) {
+				return new TimeData(trimmed);
+			} else if (this.type == String.class) {
+				return text;
+			}
+		} catch (final RuntimeException e) {
+			throw new IllegalArgumentException(this.name() + " has an invalid " + this.type.getSimpleName() + " value: " + text, e);
+		}
+		throw new IllegalArgumentException(this.name() + " has an invalid " + this.type.getSimpleName() + " value: " + text);
+	}
+
 	/**
 	 * Retrieve the type specific value.
 	 * @return The <code>Object</code> value.
@@ -85,4 +371,32 @@ public enum LoggingConfig {
 	public Object getValue() {
 		return this.value;
 	}
+
+	/**
+	 * Retrieve the type of the value.
+	 * @return The <code>Class</code> of the value.
+	 */
+	public Class<?> getType() {
+		return this.type;
+	}
+
+	/**
+	 * Retrieve the current logging threshold.
+	 * @return The <code>int</code> value of the
+	 * configured minimum level, or <code>Disabled</code>
+	 * if logging is disabled.
+	 */
+	static int getThreshold() {
+		return LoggingConfig.threshold;
+	}
+
+	/**
+	 * Compute the logging threshold from the current
+	 * configuration values.
+	 * @return The <code>int</code> threshold value.
+	 */
+	private static int computeThreshold() {
+		if (!(Boolean)Enabled.getValue()) return LoggingConfig.Disabled;
+		return ((Level)MinimumLevel.getValue()).intValue();
+	}
 }
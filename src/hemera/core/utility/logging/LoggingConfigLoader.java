@@ -0,0 +1,216 @@
+package hemera.core.utility.logging;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * <code>LoggingConfigLoader</code> defines the unit
+ * that loads <code>LoggingConfig</code> values from
+ * a properties file, and optionally watches the file
+ * to reload the values whenever it is modified.
+ * <p>
+ * The file is in the format of <code>Properties</code>,
+ * or its XML format if the file name ends with
+ * <code>.xml</code>. Each key is the name of a
+ * <code>LoggingConfig</code> value, such as
+ * <code>MinimumLevel=FINE</code>. Keys that are not
+ * present retain their current values. All the values
+ * are validated before any of them is applied, so an
+ * invalid file does not partially apply.
+ * <p>
+ * If any value other than the levels and the
+ * suppression summary interval changed, the new
+ * values are applied to the existing loggers via
+ * <code>FileLogger.reconfigure</code>. The others
+ * take effect immediately.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public final class LoggingConfigLoader implements Runnable, Closeable {
+	/**
+	 * The <code>LoggingConfig</code> values that are
+	 * read on use, thus take effect without the loggers
+	 * being reconfigured when changed.
+	 */
+	private static final LoggingConfig[] LiveValues = new LoggingConfig[] {
+		LoggingConfig.Enabled, LoggingConfig.MinimumLevel, LoggingConfig.SuppressionSummaryInterval
+	};
+	/**
+	 * The <code>long</code> time in milliseconds to wait
+	 * for a burst of modifications to settle before the
+	 * file is reloaded.
+	 */
+	private static final long SettleTime = 100;
+	/**
+	 * The <code>File</code> to load.
+	 */
+	private final File file;
+	/**
+	 * The <code>WatchService</code> of the directory of
+	 * the file.
+	 */
+	private final WatchService service;
+	/**
+	 * The <code>Thread</code> that watches the file.
+	 */
+	private final Thread thread;
+
+	/**
+	 * Constructor of <code>LoggingConfigLoader</code>.
+	 * @param file The <code>File</code> to watch.
+	 * @throws IOException If registering the watch
+	 * failed.
+	 */
+	private LoggingConfigLoader(final File file) throws IOException {
+		this.file = file.getAbsoluteFile();
+		this.service = FileSystems.getDefault().newWatchService();
+		try {
+			this.file.getParentFile().toPath().register(this.service, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY);
+		} catch (final IOException e) {
+			this.service.close();
+			throw e;
+		}
+		this.thread = new Thread(this, "hemera-log-config");
+		this.thread.setDaemon(true);
+	}
+
+	/**
+	 * Load the configuration values from the given file
+	 * and apply them.
+	 * @param file The properties or XML <code>File</code>
+	 * to load.
+	 * @throws IOException If reading the file failed.
+	 * @throws IllegalArgumentException If the file
+	 * contains an unknown key or an invalid value. No
+	 * values are applied.
+	 */
+	public static void load(final File file) throws IOException {
+		final Properties properties = new Properties();
+		InputStream input = null;
+		try {
+			input = new FileInputStream(file);
+			if (file.getName().endsWith(".xml")) properties.loadFromXML(input);
+			else properties.load(input);
+		} finally {
+			if (input != null) input.close();
+		}
+		LoggingConfigLoader.apply(properties);
+	}
+
+	/**
+	 * Apply the given configuration values.
+	 * @param properties The <code>Properties</code> of
+	 * <code>LoggingConfig</code> names to the values in
+	 * text.
+	 * @throws IllegalArgumentException If there is an
+	 * unknown key or an invalid value. No values are
+	 * applied.
+	 */
+	public static void apply(final Properties properties) {
+		// Validate all values first.
+		final Map<LoggingConfig, Object> values = new EnumMap<LoggingConfig, Object>(LoggingConfig.class);
+		for (final String key : properties.stringPropertyNames()) {
+			final LoggingConfig config;
+			try {
+				config = LoggingConfig.valueOf(key.trim());
+			} catch (final IllegalArgumentException e) {
+				throw new IllegalArgumentException("Unknown logging configuration: " + key);
+			}
+			values.put(config, config.parse(properties.getProperty(key)));
+		}
+		boolean reconfigure = false;
+		for (final Map.Entry<LoggingConfig, Object> entry : values.entrySet()) {
+			final LoggingConfig config = entry.getKey();
+			final Object value = entry.getValue();
+			final Object current = config.getValue();
+			if (value == null ? current == null : value.equals(current)) continue;
+			config.setValue(value);
+			boolean live = false;
+			for (int i = 0; i < LoggingConfigLoader.LiveValues.length; i++) {
+				if (LoggingConfigLoader.LiveValues[i] == config) live = true;
+			}
+			if (!live) reconfigure = true;
+		}
+		if (reconfigure) FileLogger.reconfigure();
+	}
+
+	/**
+	 * Load the configuration values from the given file
+	 * and start a daemon thread that reloads the file
+	 * whenever it is modified or replaced. Failures of
+	 * reloading are logged, and the previous values are
+	 * retained.
+	 * @param file The properties or XML <code>File</code>
+	 * to load and watch.
+	 * @return The <code>LoggingConfigLoader</code> that
+	 * should be closed to stop watching.
+	 * @throws IOException If reading the file or
+	 * registering the watch failed.
+	 * @throws IllegalArgumentException If the file
+	 * contains an unknown key or an invalid value.
+	 */
+	public static LoggingConfigLoader watch(final File file) throws IOException {
+		LoggingConfigLoader.load(file);
+		final LoggingConfigLoader loader = new LoggingConfigLoader(file);
+		loader.thread.start();
+		return loader;
+	}
+
+	@Override
+	public void run() {
+		final Path name = this.file.toPath().getFileName();
+		try {
+			while (true) {
+				final WatchKey key = this.service.take();
+				boolean modified = false;
+				for (final WatchEvent<?> event : key.pollEvents()) {
+					if (name.equals(event.context())) modified = true;
+				}
+				if (modified) {
+					// Let editors finish writing, then consume the burst.
+					Thread.sleep(LoggingConfigLoader.SettleTime);
+					key.pollEvents();
+					this.reload();
+				}
+				if (!key.reset()) return;
+			}
+		} catch (final InterruptedException e) {
+			// Closed.
+		} catch (final ClosedWatchServiceException e) {
+			// Closed.
+		}
+	}
+
+	/**
+	 * Reload the watched file, logging any failure.
+	 */
+	private void reload() {
+		if (!this.file.isFile()) return;
+		try {
+			LoggingConfigLoader.load(this.file);
+		} catch (final Exception e) {
+			FileLogger.getLogger(LoggingConfigLoader.class).exception(e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.thread.interrupt();
+		this.service.close();
+	}
+}
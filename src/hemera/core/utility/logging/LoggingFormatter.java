@@ -1,37 +1,290 @@
 package hemera.core.utility.logging;
 
-import java.util.Date;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.logging.Formatter;
 import java.util.logging.LogRecord;
 
 /**
  * <code>LoggingFormatter</code> defines an utility
  * unit implementation that formats the log record.
+ * <p>
+ * The date and time prefix is computed at most once
+ * per second and shared by all threads. Records are
+ * built into thread-local buffers, which allows the
+ * record to be encoded directly into a byte buffer
+ * without creating intermediate strings.
+ * <p>
+ * The timestamp is either in the legacy format of
+ * <code>M-d-yyyy H:m:s</code>, or the zero-padded
+ * ISO-8601 format of <code>yyyy-MM-ddTHH:mm:ss.SSS</code>
+ * which sorts correctly.
  *
  * @author Yi Wang (Neakor)
- * @version 1.0.0
+ * @version 1.0.3
  */
-class LoggingFormatter extends Formatter {
+class LoggingFormatter extends Formatter implements RecordEncoder {
+	/**
+	 * The <code>int</code> maximum capacity of the
+	 * thread-local buffers retained between records.
+	 */
+	private static final int MaxRetained = 65536;
+	/**
+	 * The <code>ThreadLocal</code> of the per-thread
+	 * <code>Context</code>.
+	 */
+	private static final ThreadLocal<Context> context = new ThreadLocal<Context>() {
+		@Override
+		protected Context initialValue() {
+			return new Context();
+		}
+	};
+	/**
+	 * The <code>Boolean</code> flag indicating if the
+	 * timestamp is in ISO-8601 format.
+	 */
+	private final boolean iso;
+	/**
+	 * The most recently computed <code>Prefix</code>.
+	 */
+	private volatile Prefix prefix;
+
+	/**
+	 * Constructor of <code>LoggingFormatter</code>.
+	 * <p>
+	 * The timestamp format is based on the value of
+	 * <code>LoggingConfig.IsoTimestampEnabled</code>.
+	 */
+	LoggingFormatter() {
+		this((Boolean)LoggingConfig.IsoTimestampEnabled.getValue());
+	}
+
+	/**
+	 * Constructor of <code>LoggingFormatter</code>.
+	 * @param iso <code>true</code> if the timestamp is
+	 * in ISO-8601 format. <code>false</code> if the
+	 * legacy format is used.
+	 */
+	LoggingFormatter(final boolean iso) {
+		this.iso = iso;
+	}
 
 	@Override
-	@SuppressWarnings("deprecation")
-	public String format(LogRecord record) {
-		final Date date = new Date(record.getMillis());
-		final int year = date.getYear() + 1900;
-		final int month = date.getMonth() + 1;
-		final int day = date.getDate();
-		final int hour = date.getHours();
-		final int min = date.getMinutes();
-		final int sec = date.getSeconds();
-		final String classname = record.getSourceClassName();
-		final String methodname = record.getSourceMethodName();
-		final String level = record.getLevel().toString();
-		final String message = record.getMessage();
-		final StringBuilder builder = new StringBuilder();
-		builder.append(month).append("-").append(day).append("-").append(year).append(" ");
-		builder.append(hour).append(":").append(min).append(":").append(sec).append(" ");
-		builder.append(classname).append(" ").append(methodname).append("\n");
-		builder.append(level).append(": ").append(message).append("\n");
+	public String format(final LogRecord record) {
+		final StringBuilder builder = LoggingFormatter.context.get().builder(LoggingFormatter.MaxRetained);
+		this.append(record, builder);
 		return builder.toString();
 	}
+
+	@Override
+	public boolean start(final ByteBuffer buffer) {
+		// Text segments do not have a header.
+		return true;
+	}
+
+	/**
+	 * Encode the given record as UTF-8 bytes directly
+	 * into the given buffer.
+	 * @param record The <code>LogRecord</code> to be
+	 * encoded.
+	 * @param buffer The <code>ByteBuffer</code> to write
+	 * to starting at its current position.
+	 * @return The <code>int</code> number of bytes
+	 * written. <code>-1</code> if the buffer does not
+	 * have enough space remaining, in which case the
+	 * buffer position is not changed.
+	 */
+	@Override
+	public int encode(final LogRecord record, final ByteBuffer buffer) {
+		final Context context = LoggingFormatter.context.get();
+		final StringBuilder builder = context.builder(LoggingFormatter.MaxRetained);
+		this.append(record, builder);
+		final CharBuffer chars = context.chars(builder);
+		final int start = buffer.position();
+		final CoderResult result = context.encoder.reset().encode(chars, buffer, true);
+		if (result.isOverflow()) {
+			buffer.position(start);
+			return -1;
+		}
+		return buffer.position() - start;
+	}
+
+	@Override
+	public boolean isTruncatable() {
+		return true;
+	}
+
+	/**
+	 * Append the formatted record to the given builder.
+	 * @param record The <code>LogRecord</code> to be
+	 * formatted.
+	 * @param builder The <code>StringBuilder</code> to
+	 * append to.
+	 */
+	private void append(final LogRecord record, final StringBuilder builder) {
+		final long millis = record.getMillis();
+		builder.append(this.getPrefix(millis).text);
+		if (this.iso) {
+			final int fraction = (int)Math.floorMod(millis, 1000L);
+			builder.append('.');
+			if (fraction < 100) builder.append('0');
+			if (fraction < 10) builder.append('0');
+			builder.append(fraction);
+		}
+		builder.append(' ');
+		builder.append(record.getSourceClassName()).append(' ').append(record.getSourceMethodName()).append('\n');
+		builder.append(record.getLevel().getName()).append(": ");
+		if (record.getParameters() == null) builder.append(record.getMessage());
+		else builder.append(this.formatMessage(record));
+		builder.append('\n');
+	}
+
+	/**
+	 * Retrieve the date and time prefix of the second
+	 * the given time falls in.
+	 * @param millis The <code>long</code> time in
+	 * milliseconds.
+	 * @return The <code>Prefix</code> instance.
+	 */
+	private Prefix getPrefix(final long millis) {
+		final long second = Math.floorDiv(millis, 1000L);
+		final Prefix current = this.prefix;
+		if (current != null && current.second == second) return current;
+		// Racing threads compute the same value.
+		final Prefix computed = new Prefix(second, this.iso);
+		this.prefix = computed;
+		return computed;
+	}
+
+	/**
+	 * <code>Prefix</code> defines the immutable date
+	 * and time text of a single second.
+	 */
+	private static final class Prefix {
+		/**
+		 * The <code>long</code> epoch second.
+		 */
+		private final long second;
+		/**
+		 * The <code>String</code> date and time text.
+		 */
+		private final String text;
+
+		/**
+		 * Constructor of <code>Prefix</code>.
+		 * @param second The <code>long</code> epoch
+		 * second.
+		 * @param iso <code>true</code> if the text is in
+		 * ISO-8601 format.
+		 */
+		private Prefix(final long second, final boolean iso) {
+			final ZoneOffset offset = ZoneId.systemDefault().getRules().getOffset(Instant.ofEpochSecond(second));
+			final LocalDateTime time = LocalDateTime.ofEpochSecond(second, 0, offset);
+			final StringBuilder builder = new StringBuilder(24);
+			if (iso) {
+				builder.append(time.getYear()).append('-');
+				Prefix.appendPadded(builder, time.getMonthValue()).append('-');
+				Prefix.appendPadded(builder, time.getDayOfMonth()).append('T');
+				Prefix.appendPadded(builder, time.getHour()).append(':');
+				Prefix.appendPadded(builder, time.getMinute()).append(':');
+				Prefix.appendPadded(builder, time.getSecond());
+			} else {
+				builder.append(time.getMonthValue()).append('-').append(time.getDayOfMonth()).append('-').append(time.getYear()).append(' ');
+				builder.append(time.getHour()).append(':').append(time.getMinute()).append(':').append(time.getSecond());
+			}
+			this.second = second;
+			this.text = builder.toString();
+		}
+
+		/**
+		 * Append the given value zero-padded to two digits.
+		 * @param builder The <code>StringBuilder</code> to
+		 * append to.
+		 * @param value The <code>int</code> value.
+		 * @return The given <code>StringBuilder</code>.
+		 */
+		private static StringBuilder appendPadded(final StringBuilder builder, final int value) {
+			if (value < 10) builder.append('0');
+			return builder.append(value);
+		}
+	}
+
+	/**
+	 * <code>Context</code> defines the per-thread
+	 * reusable buffers used to format and encode.
+	 */
+	private static final class Context {
+		/**
+		 * The <code>CharsetEncoder</code> for UTF-8.
+		 */
+		private final CharsetEncoder encoder;
+		/**
+		 * The <code>StringBuilder</code> records are
+		 * built into.
+		 */
+		private StringBuilder builder;
+		/**
+		 * The <code>char</code> array the built record
+		 * is copied into for encoding.
+		 */
+		private char[] array;
+		/**
+		 * The <code>CharBuffer</code> wrapping the array.
+		 */
+		private CharBuffer chars;
+
+		/**
+		 * Constructor of <code>Context</code>.
+		 */
+		private Context() {
+			this.encoder = StandardCharsets.UTF_8.newEncoder();
+			this.encoder.onMalformedInput(CodingErrorAction.REPLACE);
+			this.encoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			this.builder = new StringBuilder(256);
+			this.array = new char[256];
+			this.chars = CharBuffer.wrap(this.array);
+		}
+
+		/**
+		 * Retrieve the cleared builder. A builder that
+		 * has grown beyond the given capacity is replaced
+		 * to avoid retaining large buffers.
+		 * @param max The <code>int</code> maximum retained
+		 * capacity.
+		 * @return The <code>StringBuilder</code> instance.
+		 */
+		private StringBuilder builder(final int max) {
+			if (this.builder.capacity() > max) this.builder = new StringBuilder(256);
+			else this.builder.setLength(0);
+			return this.builder;
+		}
+
+		/**
+		 * Copy the contents of the given builder into the
+		 * reusable character buffer.
+		 * @param builder The <code>StringBuilder</code>
+		 * to copy.
+		 * @return The <code>CharBuffer</code> ready to be
+		 * read.
+		 */
+		private CharBuffer chars(final StringBuilder builder) {
+			final int length = builder.length();
+			if (this.array.length < length || this.array.length > LoggingFormatter.MaxRetained) {
+				this.array = new char[Math.max(length, 256)];
+				this.chars = CharBuffer.wrap(this.array);
+			}
+			builder.getChars(0, length, this.array, 0);
+			this.chars.clear();
+			this.chars.limit(length);
+			return this.chars;
+		}
+	}
 }
@@ -0,0 +1,418 @@
+package hemera.core.utility.logging;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+import java.util.logging.Level;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * <code>LoggingMetrics</code> defines the singleton
+ * unit that collects the throughput and latency
+ * metrics of the logging system.
+ * <p>
+ * All the counters are striped adders, so recording
+ * a metric does not contend between threads. Timing
+ * logging invocations requires reading the clock
+ * twice per invocation, thus it is disabled by
+ * default. The time histogram has power of two
+ * buckets in nanoseconds.
+ * <p>
+ * The metrics are exposed as the MBean named
+ * <code>hemera.core.utility.logging:type=LoggingMetrics</code>
+ * once the first logger is created, and can be read
+ * programmatically via <code>snapshot</code>.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public enum LoggingMetrics implements LoggingMetricsMBean {
+	/**
+	 * The singleton instance.
+	 */
+	instance;
+
+	/**
+	 * The <code>String</code> name of the MBean.
+	 */
+	public static final String ObjectName = "hemera.core.utility.logging:type=LoggingMetrics";
+	/**
+	 * The <code>int</code> number of histogram buckets.
+	 */
+	private static final int BucketCount = 64;
+	/**
+	 * The <code>LongAdder</code> info record count.
+	 */
+	private final LongAdder info = new LongAdder();
+	/**
+	 * The <code>LongAdder</code> warning record count.
+	 */
+	private final LongAdder warning = new LongAdder();
+	/**
+	 * The <code>LongAdder</code> severe record count.
+	 */
+	private final LongAdder severe = new LongAdder();
+	/**
+	 * The <code>LongAdder</code> number of bytes written.
+	 */
+	private final LongAdder bytes = new LongAdder();
+	/**
+	 * The <code>LongAdder</code> rotation count.
+	 */
+	private final LongAdder rotations = new LongAdder();
+	/**
+	 * The <code>LongAdder</code> dropped record count.
+	 */
+	private final LongAdder dropped = new LongAdder();
+	/**
+	 * The <code>LongAdder</code> suppressed record count.
+	 */
+	private final LongAdder suppressed = new LongAdder();
+	/**
+	 * The <code>LongAdder</code> total time in
+	 * nanoseconds of the timed invocations.
+	 */
+	private final LongAdder totalNanos = new LongAdder();
+	/**
+	 * The <code>LongAccumulator</code> maximum time in
+	 * nanoseconds of the timed invocations.
+	 */
+	private final LongAccumulator maxNanos = new LongAccumulator(new LongBinaryOperator() {
+		@Override
+		public long applyAsLong(final long left, final long right) {
+			return Math.max(left, right);
+		}
+	}, 0);
+	/**
+	 * The <code>LongAdder</code> array of histogram
+	 * buckets, where the bucket at index i counts the
+	 * times below <code>2^i</code> nanoseconds.
+	 */
+	private final LongAdder[] histogram = LoggingMetrics.newHistogram();
+	/**
+	 * The <code>AtomicBoolean</code> flag indicating if
+	 * the MBean is registered.
+	 */
+	private final AtomicBoolean registered = new AtomicBoolean(false);
+	/**
+	 * The <code>Boolean</code> flag indicating if the
+	 * logging invocations are timed.
+	 */
+	private volatile boolean timing;
+
+	/**
+	 * Create the histogram buckets.
+	 * @return The <code>LongAdder</code> array.
+	 */
+	private static LongAdder[] newHistogram() {
+		final LongAdder[] histogram = new LongAdder[LoggingMetrics.BucketCount];
+		for (int i = 0; i < histogram.length; i++) histogram[i] = new LongAdder();
+		return histogram;
+	}
+
+	/**
+	 * Register the MBean with the platform MBean server
+	 * if not already registered.
+	 */
+	void register() {
+		if (!this.registered.compareAndSet(false, true)) return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(LoggingMetrics.ObjectName));
+		} catch (final InstanceAlreadyExistsException e) {
+			// Registered by another class loader.
+		} catch (final JMException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Start timing a logging invocation.
+	 * @return The <code>long</code> start time in
+	 * nanoseconds. <code>0</code> if timing is disabled.
+	 */
+	long start() {
+		if (!this.timing) return 0;
+		return System.nanoTime();
+	}
+
+	/**
+	 * Record a logged record with the given level and
+	 * the time of the invocation.
+	 * @param level The <code>Level</code> of the record.
+	 * @param start The <code>long</code> start time
+	 * returned by <code>start</code>.
+	 */
+	void record(final Level level, final long start) {
+		if (level == Level.INFO) this.info.increment();
+		else if (level == Level.WARNING) this.warning.increment();
+		else if (level == Level.SEVERE) this.severe.increment();
+		if (start == 0) return;
+		final long elapsed = Math.max(System.nanoTime() - start, 0);
+		this.totalNanos.add(elapsed);
+		this.maxNanos.accumulate(elapsed);
+		final int index = Math.min(64 - Long.numberOfLeadingZeros(elapsed), LoggingMetrics.BucketCount-1);
+		this.histogram[index].increment();
+	}
+
+	/**
+	 * Record the given number of bytes written.
+	 * @param count The <code>long</code> number of bytes.
+	 */
+	void recordBytes(final long count) {
+		this.bytes.add(count);
+	}
+
+	/**
+	 * Record a log file rotation.
+	 */
+	void recordRotation() {
+		this.rotations.increment();
+	}
+
+	/**
+	 * Record a dropped record.
+	 */
+	void recordDropped() {
+		this.dropped.increment();
+	}
+
+	/**
+	 * Record a suppressed record.
+	 */
+	void recordSuppressed() {
+		this.suppressed.increment();
+	}
+
+	/**
+	 * Retrieve a snapshot of the current metrics.
+	 * @return The <code>Snapshot</code> instance.
+	 */
+	public Snapshot snapshot() {
+		final long[] histogram = new long[LoggingMetrics.BucketCount];
+		for (int i = 0; i < histogram.length; i++) histogram[i] = this.histogram[i].sum();
+		return new Snapshot(this.info.sum(), this.warning.sum(), this.severe.sum(), this.bytes.sum(),
+				this.rotations.sum(), this.dropped.sum(), this.suppressed.sum(), this.totalNanos.sum(),
+				this.maxNanos.get(), histogram);
+	}
+
+	@Override
+	public long getInfoCount() {
+		return this.info.sum();
+	}
+
+	@Override
+	public long getWarningCount() {
+		return this.warning.sum();
+	}
+
+	@Override
+	public long getSevereCount() {
+		return this.severe.sum();
+	}
+
+	@Override
+	public long getBytesWritten() {
+		return this.bytes.sum();
+	}
+
+	@Override
+	public long getRotationCount() {
+		return this.rotations.sum();
+	}
+
+	@Override
+	public long getDroppedCount() {
+		return this.dropped.sum();
+	}
+
+	@Override
+	public long getSuppressedCount() {
+		return this.suppressed.sum();
+	}
+
+	@Override
+	public long getTimedCount() {
+		return this.snapshot().timedCount;
+	}
+
+	@Override
+	public long getAverageNanos() {
+		final Snapshot snapshot = this.snapshot();
+		if (snapshot.timedCount == 0) return 0;
+		return snapshot.totalNanos / snapshot.timedCount;
+	}
+
+	@Override
+	public long getMedianNanos() {
+		return this.snapshot().percentile(0.5);
+	}
+
+	@Override
+	public long getP99Nanos() {
+		return this.snapshot().percentile(0.99);
+	}
+
+	@Override
+	public long getMaxNanos() {
+		return this.maxNanos.get();
+	}
+
+	@Override
+	public boolean isTimingEnabled() {
+		return this.timing;
+	}
+
+	@Override
+	public void setTimingEnabled(final boolean enabled) {
+		this.timing = enabled;
+	}
+
+	@Override
+	public void reset() {
+		this.info.reset();
+		this.warning.reset();
+		this.severe.reset();
+		this.bytes.reset();
+		this.rotations.reset();
+		this.dropped.reset();
+		this.suppressed.reset();
+		this.totalNanos.reset();
+		this.maxNanos.reset();
+		for (int i = 0; i < this.histogram.length; i++) this.histogram[i].reset();
+	}
+
+	/**
+	 * <code>Snapshot</code> defines the immutable data
+	 * structure of the metrics at a point in time.
+	 */
+	public static final class Snapshot {
+		/**
+		 * The <code>long</code> info record count.
+		 */
+		public final long infoCount;
+		/**
+		 * The <code>long</code> warning record count.
+		 */
+		public final long warningCount;
+		/**
+		 * The <code>long</code> severe record count.
+		 */
+		public final long severeCount;
+		/**
+		 * The <code>long</code> number of bytes written.
+		 */
+		public final long bytesWritten;
+		/**
+		 * The <code>long</code> rotation count.
+		 */
+		public final long rotationCount;
+		/**
+		 * The <code>long</code> dropped record count.
+		 */
+		public final long droppedCount;
+		/**
+		 * The <code>long</code> suppressed record count.
+		 */
+		public final long suppressedCount;
+		/**
+		 * The <code>long</code> number of timed invocations.
+		 */
+		public final long timedCount;
+		/**
+		 * The <code>long</code> total time in nanoseconds
+		 * of the timed invocations.
+		 */
+		public final long totalNanos;
+		/**
+		 * The <code>long</code> maximum time in nanoseconds
+		 * of the timed invocations.
+		 */
+		public final long maxNanos;
+		/**
+		 * The <code>long</code> array of histogram bucket
+		 * counts, where the bucket at index i counts the
+		 * times below <code>2^i</code> nanoseconds.
+		 */
+		private final long[] histogram;
+
+		/**
+		 * Constructor of <code>Snapshot</code>.
+		 * @param infoCount The <code>long</code> info
+		 * record count.
+		 * @param warningCount The <code>long</code> warning
+		 * record count.
+		 * @param severeCount The <code>long</code> severe
+		 * record count.
+		 * @param bytesWritten The <code>long</code> number
+		 * of bytes written.
+		 * @param rotationCount The <code>long</code>
+		 * rotation count.
+		 * @param droppedCount The <code>long</code> dropped
+		 * record count.
+		 * @param suppressedCount The <code>long</code>
+		 * suppressed record count.
+		 * @param totalNanos The <code>long</code> total
+		 * time of the timed invocations.
+		 * @param maxNanos The <code>long</code> maximum
+		 * time of the timed invocations.
+		 * @param histogram The <code>long</code> array of
+		 * histogram bucket counts.
+		 */
+		private Snapshot(final long infoCount, final long warningCount, final long severeCount, final long bytesWritten,
+				final long rotationCount, final long droppedCount, final long suppressedCount, final long totalNanos,
+				final long maxNanos, final long[] histogram) {
+			this.infoCount = infoCount;
+			this.warningCount = warningCount;
+			this.severeCount = severeCount;
+			this.bytesWritten = bytesWritten;
+			this.rotationCount = rotationCount;
+			this.droppedCount = droppedCount;
+			this.suppressedCount = suppressedCount;
+			this.totalNanos = totalNanos;
+			this.maxNanos = maxNanos;
+			this.histogram = histogram;
+			long timed = 0;
+			for (int i = 0; i < histogram.length; i++) timed += histogram[i];
+			this.timedCount = timed;
+		}
+
+		/**
+		 * Retrieve the count of the histogram bucket at
+		 * the given index.
+		 * @param index The <code>int</code> index of the
+		 * bucket, which counts the times below
+		 * <code>2^index</code> nanoseconds.
+		 * @return The <code>long</code> count.
+		 */
+		public long getBucket(final int index) {
+			return this.histogram[index];
+		}
+
+		/**
+		 * Retrieve the time at the given percentile of the
+		 * timed invocations, at the resolution of the
+		 * histogram buckets.
+		 * @param percentile The <code>double</code> value
+		 * between <code>0</code> and <code>1</code>.
+		 * @return The <code>long</code> upper bound time
+		 * in nanoseconds of the bucket the percentile
+		 * falls in. <code>0</code> if there are no timed
+		 * invocations.
+		 */
+		public long percentile(final double percentile) {
+			if (this.timedCount == 0) return 0;
+			final long target = (long)Math.ceil(percentile * this.timedCount);
+			long sum = 0;
+			for (int i = 0; i < this.histogram.length; i++) {
+				sum += this.histogram[i];
+				if (sum >= target) return (i >= 63) ? Long.MAX_VALUE : (1L << i);
+			}
+			return Long.MAX_VALUE;
+		}
+	}
+}
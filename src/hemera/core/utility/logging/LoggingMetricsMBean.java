@@ -0,0 +1,116 @@
+package hemera.core.utility.logging;
+
+/**
+ * <code>LoggingMetricsMBean</code> defines the
+ * management interface of <code>LoggingMetrics</code>
+ * that is exposed via JMX.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public interface LoggingMetricsMBean {
+
+	/**
+	 * Retrieve the number of info level records logged.
+	 * @return The <code>long</code> count.
+	 */
+	public long getInfoCount();
+
+	/**
+	 * Retrieve the number of warning level records
+	 * logged.
+	 * @return The <code>long</code> count.
+	 */
+	public long getWarningCount();
+
+	/**
+	 * Retrieve the number of severe level records
+	 * logged.
+	 * @return The <code>long</code> count.
+	 */
+	public long getSevereCount();
+
+	/**
+	 * Retrieve the number of bytes written into all
+	 * the log files.
+	 * @return The <code>long</code> number of bytes.
+	 */
+	public long getBytesWritten();
+
+	/**
+	 * Retrieve the number of log file rotations.
+	 * @return The <code>long</code> count.
+	 */
+	public long getRotationCount();
+
+	/**
+	 * Retrieve the number of records dropped due to
+	 * a full asynchronous queue or a record that is
+	 * larger than a log file.
+	 * @return The <code>long</code> count.
+	 */
+	public long getDroppedCount();
+
+	/**
+	 * Retrieve the number of records suppressed by
+	 * rate limiting and sampling.
+	 * @return The <code>long</code> count.
+	 */
+	public long getSuppressedCount();
+
+	/**
+	 * Retrieve the number of logging invocations that
+	 * have been timed.
+	 * @return The <code>long</code> count.
+	 */
+	public long getTimedCount();
+
+	/**
+	 * Retrieve the average time spent in a timed
+	 * logging invocation.
+	 * @return The <code>long</code> time in nanoseconds.
+	 */
+	public long getAverageNanos();
+
+	/**
+	 * Retrieve the median time spent in a timed
+	 * logging invocation, at the resolution of the
+	 * histogram buckets.
+	 * @return The <code>long</code> time in nanoseconds.
+	 */
+	public long getMedianNanos();
+
+	/**
+	 * Retrieve the 99th percentile time spent in a
+	 * timed logging invocation, at the resolution of
+	 * the histogram buckets.
+	 * @return The <code>long</code> time in nanoseconds.
+	 */
+	public long getP99Nanos();
+
+	/**
+	 * Retrieve the maximum time spent in a timed
+	 * logging invocation.
+	 * @return The <code>long</code> time in nanoseconds.
+	 */
+	public long getMaxNanos();
+
+	/**
+	 * Check if the logging invocations are timed.
+	 * @return <code>true</code> if timing is enabled.
+	 * <code>false</code> otherwise.
+	 */
+	public boolean isTimingEnabled();
+
+	/**
+	 * Set if the logging invocations are timed.
+	 * @param enabled <code>true</code> if timing is
+	 * enabled.
+	 */
+	public void setTimingEnabled(final boolean enabled);
+
+	/**
+	 * Reset all the metrics.
+	 */
+	public void reset();
+}
@@ -0,0 +1,513 @@
+package hemera.core.utility.logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+/**
+ * <code>MappedFileHandler</code> defines the
+ * implementation of a <code>Handler</code> that
+ * writes log records into a memory-mapped region
+ * of a preallocated segment file, thus writing a
+ * record does not require any system calls.
+ * <p>
+ * Once the segment is full, the segment is closed
+ * and truncated to its written length, and a new
+ * segment is rolled in. Segments are saved in the
+ * format of <code>name.log.x</code> where x is the
+ * index of the segment with <code>0</code> being
+ * the active one. Only the configured number of
+ * segments are retained. If only a single segment
+ * is used, the file is named <code>name.log</code>
+ * and is restarted when full.
+ * <p>
+ * Rotated segments may instead be handed to the
+ * <code>LogArchiver</code>, which compresses them and
+ * applies retention on a background thread. If only
+ * a single segment is used, the previous segment is
+ * archived as the only rotated one.
+ * <p>
+ * If a segment cannot be rotated or opened, such as
+ * when the disk is full, every record is dropped and
+ * reported until a later record succeeds in opening
+ * a new segment.
+ * <p>
+ * Segments from a previous run are rotated out when
+ * the handler is created. A handler created for the
+ * segments of an open handler in the same process,
+ * such as when reconfigured, takes over its active
+ * segment instead, and the records later published
+ * to the previous handler are forwarded. Writing to
+ * the same set of segments from multiple processes
+ * is not supported.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.5
+ */
+class MappedFileHandler extends Handler {
+	/**
+	 * The <code>ConcurrentMap</code> of the <code>String</code>
+	 * absolute path of an active segment to the open
+	 * <code>MappedFileHandler</code> that writes it.
+	 */
+	private static final ConcurrentMap<String, MappedFileHandler> owners = new ConcurrentHashMap<String, MappedFileHandler>();
+	/**
+	 * The <code>AtomicLong</code> number of segments
+	 * opened by all the handlers.
+	 */
+	private static final AtomicLong rotations = new AtomicLong();
+	/**
+	 * The <code>File</code> directory of the segments.
+	 */
+	private final File directory;
+	/**
+	 * The <code>String</code> name of the segments.
+	 */
+	private final String name;
+	/**
+	 * The <code>int</code> size of a single segment
+	 * in bytes.
+	 */
+	private final int size;
+	/**
+	 * The <code>int</code> number of retained segments.
+	 */
+	private final int count;
+	/**
+	 * The <code>SyncPolicy</code> of the handler.
+	 */
+	private final SyncPolicy policy;
+	/**
+	 * The <code>Boolean</code> flag indicating if the
+	 * handler flushes after every record.
+	 */
+	private final boolean autoflush;
+	/**
+	 * The <code>Boolean</code> flag indicating if the
+	 * rotated segments are handed to the <code>LogArchiver</code>.
+	 */
+	private final boolean archive;
+	/**
+	 * The <code>ScheduledFuture</code> of the periodic
+	 * sync task. <code>null</code> if the policy is not
+	 * periodic.
+	 */
+	private final ScheduledFuture<?> syncTask;
+	/**
+	 * The <code>FileChannel</code> of the active segment.
+	 * This value is guarded by the handler instance.
+	 */
+	private FileChannel channel;
+	/**
+	 * The <code>MappedByteBuffer</code> of the active
+	 * segment. <code>null</code> if there is no active
+	 * segment. This value is guarded by the handler
+	 * instance.
+	 */
+	private MappedByteBuffer buffer;
+	/**
+	 * The <code>boolean</code> flag indicating if the
+	 * handler is closed. This value is guarded by the
+	 * handler instance.
+	 */
+	private boolean closed;
+	/**
+	 * The <code>MappedFileHandler</code> that took over
+	 * the segments of this handler. <code>null</code>
+	 * if there is none. This value is guarded by the
+	 * handler instance.
+	 */
+	private MappedFileHandler successor;
+
+	/**
+	 * Constructor of <code>MappedFileHandler</code>.
+	 * @param directory The <code>String</code> directory
+	 * of the segment files.
+	 * @param name The <code>String</code> name of the
+	 * segment files.
+	 * @param size The <code>int</code> size of a single
+	 * segment in bytes.
+	 * @param count The <code>int</code> number of
+	 * retained segments.
+	 * @param policy The <code>SyncPolicy</code> to use.
+	 * @param interval The <code>long</code> interval in
+	 * milliseconds between forcing the written records
+	 * for the periodic policy.
+	 * @param autoflush <code>true</code> if the handler
+	 * should be flushed after every record.
+	 * @param archive <code>true</code> if the rotated
+	 * segments should be compressed and retained by
+	 * the <code>LogArchiver</code>.
+	 * @param formatter The <code>Formatter</code> of
+	 * the records. If it is a <code>RecordEncoder</code>,
+	 * records are encoded directly into the segment.
+	 * @throws IOException If creating the initial
+	 * segment failed.
+	 */
+	MappedFileHandler(final String directory, final String name, final int size, final int count,
+			final SyncPolicy policy, final long interval, final boolean autoflush, final boolean archive,
+			final Formatter formatter) throws IOException {
+		this.directory = new File(directory);
+		this.name = name;
+		this.size = size;
+		this.count = Math.max(count, 1);
+		this.policy = policy;
+		this.autoflush = autoflush;
+		this.archive = archive;
+		this.setEncoding(StandardCharsets.UTF_8.name());
+		this.setFormatter(formatter);
+		// Forwarded records wait for the segment to be opened.
+		synchronized (this) {
+			final MappedFileHandler previous = MappedFileHandler.owners.put(this.getKey(), this);
+			try {
+				if (previous == null || !this.takeOver(previous)) this.rotate();
+			} catch (final IOException e) {
+				MappedFileHandler.owners.remove(this.getKey(), this);
+				throw e;
+			}
+		}
+		if (policy == SyncPolicy.Periodic) {
+			this.syncTask = Scheduler.instance.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					MappedFileHandler.this.sync();
+				}
+			}, interval, interval, TimeUnit.MILLISECONDS);
+		} else {
+			this.syncTask = null;
+		}
+	}
+
+	/**
+	 * Take over the active segment of the given handler
+	 * of the same segments, which forwards its records
+	 * to this handler afterwards. The segment is closed
+	 * instead if its records are encoded differently.
+	 * A taken over segment is rotated once it reaches
+	 * the size of this handler.
+	 * @param previous The <code>MappedFileHandler</code>
+	 * to take over.
+	 * @return <code>true</code> if the active segment is
+	 * taken over. <code>false</code> if a new segment
+	 * should be rotated in.
+	 */
+	private boolean takeOver(final MappedFileHandler previous) {
+		synchronized (previous) {
+			previous.successor = this;
+			if (previous.buffer == null) return false;
+			final Formatter formatter = previous.getFormatter();
+			final boolean encoded = this.getFormatter() instanceof RecordEncoder;
+			if (encoded != (formatter instanceof RecordEncoder) || (encoded && formatter.getClass() != this.getFormatter().getClass())) {
+				try {
+					previous.closeSegment();
+				} catch (final IOException e) {
+					this.reportError(null, e, ErrorManager.CLOSE_FAILURE);
+				}
+				return false;
+			}
+			// The encoder state belongs to the segment.
+			if (encoded) this.setFormatter(formatter);
+			this.channel = previous.channel;
+			this.buffer = previous.buffer;
+			previous.channel = null;
+			previous.buffer = null;
+			// Rotate once the configured size is reached.
+			this.buffer.limit(Math.min(this.buffer.capacity(), Math.max(this.buffer.position(), this.size)));
+			return true;
+		}
+	}
+
+	@Override
+	public void publish(final LogRecord record) {
+		final MappedFileHandler successor;
+		synchronized (this) {
+			successor = this.successor;
+			if (successor == null) {
+				this.write(record);
+				return;
+			}
+		}
+		successor.publish(record);
+	}
+
+	/**
+	 * Write the given record into the active segment,
+	 * rotating it if full.
+	 * @param record The <code>LogRecord</code> to be
+	 * written.
+	 */
+	private void write(final LogRecord record) {
+		if (this.closed || !this.isLoggable(record)) return;
+		try {
+			// Retry opening a segment if the last rotation failed.
+			if (this.buffer == null) this.rotate();
+			final int start = this.buffer.position();
+			if (this.append(record)) {
+				LoggingMetrics.instance.recordBytes(this.buffer.position() - start);
+			} else {
+				this.rotate();
+				LoggingMetrics.instance.recordRotation();
+				if (!this.append(record)) this.writeTruncated(record);
+				LoggingMetrics.instance.recordBytes(this.buffer.position());
+			}
+		} catch (final Exception e) {
+			LoggingMetrics.instance.recordDropped();
+			this.reportError("Record is dropped.", e, ErrorManager.WRITE_FAILURE);
+			return;
+		}
+		if (this.autoflush) this.flush();
+	}
+
+	/**
+	 * Write the given record into the active segment
+	 * if it has enough space remaining.
+	 * @param record The <code>LogRecord</code> to be
+	 * written.
+	 * @return <code>true</code> if the record is written.
+	 * <code>false</code> if the segment does not have
+	 * enough space remaining.
+	 */
+	private boolean append(final LogRecord record) {
+		final Formatter formatter = this.getFormatter();
+		if (formatter instanceof RecordEncoder) {
+			return ((RecordEncoder)formatter).encode(record, this.buffer) >= 0;
+		}
+		final byte[] bytes = formatter.format(record).getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > this.buffer.remaining()) return false;
+		this.buffer.put(bytes);
+		return true;
+	}
+
+	/**
+	 * Write as much of the given record as the active
+	 * segment has space for. This is only used for a
+	 * record that is larger than a whole segment.
+	 * Records of encoders that cannot be truncated are
+	 * discarded.
+	 * @param record The <code>LogRecord</code> to be
+	 * written.
+	 */
+	private void writeTruncated(final LogRecord record) {
+		final Formatter formatter = this.getFormatter();
+		if (formatter instanceof RecordEncoder && !((RecordEncoder)formatter).isTruncatable()) {
+			LoggingMetrics.instance.recordDropped();
+			this.reportError("Record is larger than a segment.", null, ErrorManager.WRITE_FAILURE);
+			return;
+		}
+		final byte[] bytes = this.getFormatter().format(record).getBytes(StandardCharsets.UTF_8);
+		this.buffer.put(bytes, 0, Math.min(bytes.length, this.buffer.remaining()));
+	}
+
+	/**
+	 * Close the active segment, shift all the retained
+	 * segments by one index, discarding the oldest, and
+	 * open a new active segment. If archiving, the
+	 * closed segment is handed to the archiver which
+	 * shifts the segments in the background instead.
+	 * <p>
+	 * A failure to close the active segment is reported
+	 * without stopping the rotation. If the active
+	 * segment cannot be moved, no segment is opened so
+	 * that its records are not over-written.
+	 * @throws IOException If file processing failed.
+	 */
+	private void rotate() throws IOException {
+		try {
+			this.closeSegment();
+		} catch (final IOException e) {
+			this.reportError(null, e, ErrorManager.CLOSE_FAILURE);
+		}
+		final File active = this.getFile(0);
+		if (this.archive) {
+			if (active.exists()) {
+				final File pending = LogArchiver.instance.newPendingFile(this.directory, this.name);
+				if (!active.renameTo(pending)) throw new IOException("Failed to rotate segment: " + active);
+				// Retain at least the previous segment.
+				LogArchiver.instance.archive(this.directory, this.name, Math.max(this.count, 2));
+			}
+			this.openSegment();
+			return;
+		}
+		// Retrying after a failed open must not shift out the retained segments.
+		if (active.exists()) {
+			for (int i = this.count-2; i >= 0; i--) {
+				final File from = this.getFile(i);
+				if (!from.exists()) continue;
+				final File to = this.getFile(i+1);
+				to.delete();
+				if (!from.renameTo(to) && i == 0) throw new IOException("Failed to rotate segment: " + active);
+			}
+		}
+		this.openSegment();
+	}
+
+	/**
+	 * Create and map the active segment file. The file
+	 * is deleted if it cannot be mapped.
+	 * @throws IOException If file processing failed.
+	 */
+	private void openSegment() throws IOException {
+		this.directory.mkdirs();
+		final RandomAccessFile file = new RandomAccessFile(this.getFile(0), "rw");
+		try {
+			file.setLength(0);
+			file.setLength(this.size);
+			this.channel = file.getChannel();
+			this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, this.size);
+		} catch (final IOException e) {
+			file.close();
+			this.channel = null;
+			this.getFile(0).delete();
+			throw e;
+		}
+		final Formatter formatter = this.getFormatter();
+		if (formatter instanceof RecordEncoder) ((RecordEncoder)formatter).start(this.buffer);
+		MappedFileHandler.rotations.incrementAndGet();
+	}
+
+	/**
+	 * Force and close the active segment, releasing its
+	 * mapping and then truncating it to its written
+	 * length, since mapped files cannot be truncated on
+	 * some platforms.
+	 * @throws IOException If file processing failed.
+	 */
+	private void closeSegment() throws IOException {
+		if (this.buffer == null) return;
+		final MappedByteBuffer mapped = this.buffer;
+		final int length = mapped.position();
+		this.buffer = null;
+		try {
+			mapped.force();
+			MappedFileHandler.unmap(mapped);
+			this.channel.truncate(length);
+		} finally {
+			this.channel.close();
+			this.channel = null;
+		}
+	}
+
+	/**
+	 * Release the mapping of the given buffer instead of
+	 * waiting for it to be garbage collected. The buffer
+	 * must not be accessed afterwards. If releasing is
+	 * not supported by the runtime, the mapping is
+	 * released once the buffer is collected.
+	 * @param buffer The <code>MappedByteBuffer</code> to
+	 * release.
+	 */
+	private static void unmap(final MappedByteBuffer buffer) {
+		try {
+			final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = null;
+			try {
+				invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			} catch (final NoSuchMethodException e) {
+				// Java 8 releases through the cleaner of the buffer.
+				final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				final Object cleaner = cleanerMethod.invoke(buffer);
+				if (cleaner != null) cleaner.getClass().getMethod("clean").invoke(cleaner);
+				return;
+			}
+			final Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			invokeCleaner.invoke(field.get(null), buffer);
+		} catch (final Exception e) {
+			// Not supported, thus leave it to the garbage collector.
+		}
+	}
+
+	/**
+	 * Retrieve the number of segments opened by all the
+	 * handlers, which changes whenever any segment is
+	 * rotated.
+	 * @return The <code>long</code> number of segments.
+	 */
+	static long getRotationCount() {
+		return MappedFileHandler.rotations.get();
+	}
+
+	/**
+	 * Retrieve the key of the segments of this handler.
+	 * @return The <code>String</code> absolute path of
+	 * the active segment.
+	 */
+	private String getKey() {
+		return this.getFile(0).getAbsolutePath();
+	}
+
+	/**
+	 * Retrieve the segment file with the given index.
+	 * @param index The <code>int</code> index.
+	 * @return The <code>File</code> of the segment.
+	 */
+	private File getFile(final int index) {
+		if (this.count == 1) return new File(this.directory, this.name + ".log");
+		else return new File(this.directory, this.name + ".log." + index);
+	}
+
+	/**
+	 * Force the written records of the active segment
+	 * onto the storage device.
+	 */
+	private synchronized void sync() {
+		if (this.buffer == null) return;
+		this.buffer.force();
+	}
+
+	@Override
+	public void flush() {
+		// Mapped writes are already visible to readers.
+		if (this.policy == SyncPolicy.PerBatch) this.sync();
+	}
+
+	@Override
+	public synchronized void close() throws SecurityException {
+		this.closed = true;
+		MappedFileHandler.owners.remove(this.getKey(), this);
+		if (this.syncTask != null) this.syncTask.cancel(false);
+		try {
+			this.closeSegment();
+		} catch (final IOException e) {
+			this.reportError(null, e, ErrorManager.CLOSE_FAILURE);
+		}
+	}
+
+	/**
+	 * <code>Scheduler</code> defines the lazily created
+	 * holder of the shared executor that runs periodic
+	 * sync tasks.
+	 */
+	private static final class Scheduler {
+		/**
+		 * The shared <code>ScheduledExecutorService</code>.
+		 */
+		private static final ScheduledExecutorService instance = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "hemera-log-sync");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+}
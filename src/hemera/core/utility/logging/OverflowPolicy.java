@@ -0,0 +1,31 @@
+package hemera.core.utility.logging;
+
+/**
+ * <code>OverflowPolicy</code> defines the enumeration
+ * of behaviors applied when a log record is submitted
+ * to the asynchronous logging queue while the queue
+ * is full.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public enum OverflowPolicy {
+	/**
+	 * The submitting thread waits until space becomes
+	 * available in the queue. No records are lost.
+	 */
+	Block,
+	/**
+	 * The record is discarded and the submitting thread
+	 * returns immediately.
+	 */
+	Drop,
+	/**
+	 * Records with a level below the configured
+	 * <code>LoggingConfig.AsyncOverflowLevel</code> are
+	 * discarded, and records at or above the level
+	 * block the submitting thread until space becomes
+	 * available.
+	 */
+	DropBelowSeverity
+}
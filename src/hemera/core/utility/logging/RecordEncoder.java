@@ -0,0 +1,51 @@
+package hemera.core.utility.logging;
+
+import java.nio.ByteBuffer;
+import java.util.logging.LogRecord;
+
+/**
+ * <code>RecordEncoder</code> defines the interface of
+ * a formatter unit that encodes log records directly
+ * into the byte buffer of a log segment.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+interface RecordEncoder {
+
+	/**
+	 * Start encoding into a new empty segment. Any
+	 * state that refers to previously written segments
+	 * should be discarded, and any segment header
+	 * should be written.
+	 * @param buffer The <code>ByteBuffer</code> of the
+	 * new segment.
+	 * @return <code>true</code> if the segment is
+	 * started. <code>false</code> if the buffer does
+	 * not have enough space for the header.
+	 */
+	public boolean start(final ByteBuffer buffer);
+
+	/**
+	 * Encode the given record directly into the given
+	 * buffer.
+	 * @param record The <code>LogRecord</code> to be
+	 * encoded.
+	 * @param buffer The <code>ByteBuffer</code> to write
+	 * to starting at its current position.
+	 * @return The <code>int</code> number of bytes
+	 * written. <code>-1</code> if the buffer does not
+	 * have enough space remaining, in which case the
+	 * buffer position is not changed.
+	 */
+	public int encode(final LogRecord record, final ByteBuffer buffer);
+
+	/**
+	 * Check if a record that does not fit into a whole
+	 * segment can be written partially as text.
+	 * @return <code>true</code> if the records can be
+	 * truncated. <code>false</code> if such records are
+	 * discarded.
+	 */
+	public boolean isTruncatable();
+}
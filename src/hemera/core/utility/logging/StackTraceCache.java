@@ -0,0 +1,227 @@
+package hemera.core.utility.logging;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <code>StackTraceCache</code> defines the unit that
+ * deduplicates the stack traces logged by a single
+ * logger.
+ * <p>
+ * Each throwable is fingerprinted by the classes and
+ * the stack frames of itself, its causes and its
+ * suppressed throwables. Messages are not part of
+ * the fingerprint, so the same failure at the same
+ * site with different details is still deduplicated.
+ * The first occurrence of a fingerprint is formatted
+ * with the full stack trace, including the cause
+ * chain and the suppressed throwables, tagged with
+ * the fingerprint. Repeated occurrences are only
+ * formatted as the throwable itself with a reference
+ * to the fingerprint and the occurrence count, thus
+ * the stack trace is never built again.
+ * <p>
+ * The number of retained fingerprints is bounded.
+ * Once the bound is reached, all fingerprints are
+ * forgotten, thus the full stack traces are logged
+ * again. All fingerprints are also forgotten once
+ * any log segment is rotated, since the segment
+ * with the full stack traces may be discarded, thus
+ * every reference can be resolved within the
+ * retained log files.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+final class StackTraceCache {
+	/**
+	 * The <code>int</code> maximum number of retained
+	 * fingerprints.
+	 */
+	private static final int MaxTraces = 1024;
+	/**
+	 * The <code>ConcurrentMap</code> of the <code>Long</code>
+	 * fingerprint to the <code>AtomicLong</code> number
+	 * of occurrences.
+	 */
+	private final ConcurrentMap<Long, AtomicLong> traces;
+	/**
+	 * The <code>long</code> rotation count of the log
+	 * segments when the fingerprints were last cleared.
+	 */
+	private volatile long rotations;
+
+	/**
+	 * Constructor of <code>StackTraceCache</code>.
+	 */
+	StackTraceCache() {
+		this.traces = new ConcurrentHashMap<Long, AtomicLong>();
+		this.rotations = MappedFileHandler.getRotationCount();
+	}
+
+	/**
+	 * Format the given throwable, with its full stack
+	 * trace if it is the first occurrence of its
+	 * fingerprint, or as a reference otherwise.
+	 * @param throwable The <code>Throwable</code> to
+	 * format.
+	 * @return The <code>String</code> message.
+	 */
+	String format(final Throwable throwable) {
+		final long fingerprint = StackTraceCache.fingerprint(throwable);
+		final String id = StackTraceCache.toId(fingerprint);
+		final long rotations = MappedFileHandler.getRotationCount();
+		if (rotations != this.rotations) {
+			this.rotations = rotations;
+			this.traces.clear();
+		}
+		final AtomicLong existing = this.traces.get(fingerprint);
+		if (existing != null) {
+			final long count = existing.incrementAndGet();
+			return throwable.toString() + " [trace " + id + ", occurrence " + count + "]\n";
+		}
+		if (this.traces.size() >= StackTraceCache.MaxTraces) this.traces.clear();
+		final AtomicLong previous = this.traces.putIfAbsent(fingerprint, new AtomicLong(1));
+		if (previous != null) {
+			final long count = previous.incrementAndGet();
+			return throwable.toString() + " [trace " + id + ", occurrence " + count + "]\n";
+		}
+		final StringBuilder builder = new StringBuilder(4096);
+		builder.append(throwable.toString()).append(" [trace ").append(id).append("]\n");
+		final Set<Throwable> visited = Collections.newSetFromMap(new IdentityHashMap<Throwable, Boolean>());
+		visited.add(throwable);
+		final StackTraceElement[] trace = throwable.getStackTrace();
+		builder.append(FileLogger.buildStacktrace(trace));
+		StackTraceCache.appendEnclosed(builder, throwable, trace, "", visited);
+		return builder.toString();
+	}
+
+	/**
+	 * Append the suppressed throwables and the cause of
+	 * the given throwable. Frames in common with the
+	 * enclosing trace are omitted.
+	 * @param builder The <code>StringBuilder</code> to
+	 * append to.
+	 * @param throwable The <code>Throwable</code> whose
+	 * suppressed throwables and cause are appended.
+	 * @param trace The <code>StackTraceElement</code>
+	 * array of the given throwable.
+	 * @param prefix The <code>String</code> indentation
+	 * prefix of the given throwable.
+	 * @param visited The <code>Set</code> of appended
+	 * <code>Throwable</code> to guard against cycles.
+	 */
+	private static void appendEnclosed(final StringBuilder builder, final Throwable throwable,
+			final StackTraceElement[] trace, final String prefix, final Set<Throwable> visited) {
+		final Throwable[] suppressed = throwable.getSuppressed();
+		for (int i = 0; i < suppressed.length; i++) {
+			StackTraceCache.appendEnclosed(builder, suppressed[i], trace, "Suppressed: ", prefix + "\t", visited);
+		}
+		final Throwable cause = throwable.getCause();
+		if (cause != null) StackTraceCache.appendEnclosed(builder, cause, trace, "Caused by: ", prefix, visited);
+	}
+
+	/**
+	 * Append the given enclosed throwable with the given
+	 * caption, followed by its own suppressed throwables
+	 * and cause.
+	 * @param builder The <code>StringBuilder</code> to
+	 * append to.
+	 * @param throwable The enclosed <code>Throwable</code>.
+	 * @param enclosing The <code>StackTraceElement</code>
+	 * array of the enclosing throwable.
+	 * @param caption The <code>String</code> caption.
+	 * @param prefix The <code>String</code> indentation
+	 * prefix.
+	 * @param visited The <code>Set</code> of appended
+	 * <code>Throwable</code> to guard against cycles.
+	 */
+	private static void appendEnclosed(final StringBuilder builder, final Throwable throwable,
+			final StackTraceElement[] enclosing, final String caption, final String prefix, final Set<Throwable> visited) {
+		if (!visited.add(throwable)) {
+			builder.append(prefix).append(caption).append("[CIRCULAR REFERENCE: ").append(throwable).append("]\n");
+			return;
+		}
+		final StackTraceElement[] trace = throwable.getStackTrace();
+		// Compute the number of frames in common with the enclosing trace.
+		int m = trace.length-1;
+		int n = enclosing.length-1;
+		while (m >= 0 && n >= 0 && trace[m].equals(enclosing[n])) {
+			m--;
+			n--;
+		}
+		final int common = trace.length-1-m;
+		builder.append(prefix).append(caption).append(throwable).append("\n");
+		for (int i = 0; i <= m; i++) {
+			builder.append(prefix).append("		at ").append(trace[i]).append("\n");
+		}
+		if (common != 0) builder.append(prefix).append("		... ").append(common).append(" more\n");
+		StackTraceCache.appendEnclosed(builder, throwable, trace, prefix, visited);
+	}
+
+	/**
+	 * Compute the fingerprint of the given throwable
+	 * from the classes and the stack frames of itself,
+	 * its causes and its suppressed throwables.
+	 * @param throwable The <code>Throwable</code> to
+	 * fingerprint.
+	 * @return The <code>long</code> fingerprint.
+	 */
+	static long fingerprint(final Throwable throwable) {
+		final Set<Throwable> visited = Collections.newSetFromMap(new IdentityHashMap<Throwable, Boolean>());
+		return StackTraceCache.fingerprint(throwable, 0xCBF29CE484222325L, visited);
+	}
+
+	/**
+	 * Mix the given throwable into the given hash.
+	 * @param throwable The <code>Throwable</code> to
+	 * fingerprint.
+	 * @param hash The <code>long</code> hash so far.
+	 * @param visited The <code>Set</code> of visited
+	 * <code>Throwable</code> to guard against cycles.
+	 * @return The <code>long</code> mixed hash.
+	 */
+	private static long fingerprint(final Throwable throwable, final long hash, final Set<Throwable> visited) {
+		if (!visited.add(throwable)) return hash;
+		long result = StackTraceCache.mix(hash, throwable.getClass().getName().hashCode());
+		final StackTraceElement[] trace = throwable.getStackTrace();
+		for (int i = 0; i < trace.length; i++) {
+			result = StackTraceCache.mix(result, trace[i].hashCode());
+		}
+		final Throwable[] suppressed = throwable.getSuppressed();
+		for (int i = 0; i < suppressed.length; i++) {
+			result = StackTraceCache.fingerprint(suppressed[i], StackTraceCache.mix(result, 'S'), visited);
+		}
+		final Throwable cause = throwable.getCause();
+		if (cause != null) result = StackTraceCache.fingerprint(cause, StackTraceCache.mix(result, 'C'), visited);
+		return result;
+	}
+
+	/**
+	 * Mix the given value into the given hash.
+	 * @param hash The <code>long</code> hash.
+	 * @param value The <code>int</code> value.
+	 * @return The <code>long</code> mixed hash.
+	 */
+	private static long mix(final long hash, final int value) {
+		return (hash ^ value) * 0x100000001B3L;
+	}
+
+	/**
+	 * Convert the given fingerprint to its printed id.
+	 * @param fingerprint The <code>long</code> value.
+	 * @return The <code>String</code> id of sixteen
+	 * hexadecimal digits.
+	 */
+	private static String toId(final long fingerprint) {
+		final String hex = Long.toHexString(fingerprint);
+		if (hex.length() == 16) return hex;
+		final StringBuilder builder = new StringBuilder(16);
+		for (int i = hex.length(); i < 16; i++) builder.append('0');
+		return builder.append(hex).toString();
+	}
+}
@@ -0,0 +1,32 @@
+package hemera.core.utility.logging;
+
+/**
+ * <code>SyncPolicy</code> defines the enumeration
+ * of behaviors that determine when the written log
+ * records are forced from the memory-mapped segment
+ * onto the storage device.
+ *
+ * @author Yi Wang (Neakor)
+ * @version 1.0.0
+ */
+public enum SyncPolicy {
+	/**
+	 * The operating system decides when the written
+	 * records reach the storage device. Segments are
+	 * still forced when they are closed.
+	 */
+	Never,
+	/**
+	 * The written records are forced at a fixed
+	 * interval configured by the value of
+	 * <code>LoggingConfig.FileSyncInterval</code>.
+	 */
+	Periodic,
+	/**
+	 * The written records are forced every time the
+	 * handler is flushed. The asynchronous writer
+	 * flushes after every batch, and synchronous
+	 * logging flushes after every record.
+	 */
+	PerBatch
+}
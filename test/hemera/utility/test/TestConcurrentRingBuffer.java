@@ -0,0 +1,59 @@
+package hemera.utility.test;
+
+import hemera.core.utility.data.ConcurrentRingBuffer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TestConcurrentRingBuffer {
+
+	public static void main(String[] args) throws InterruptedException {
+		final ConcurrentRingBuffer<Long> buffer = new ConcurrentRingBuffer<Long>(1000);
+		final AtomicLong rejected = new AtomicLong();
+
+		final int threadcount = 16;
+		final int perthread = 100000;
+		final CountDownLatch startlatch = new CountDownLatch(1);
+		final CountDownLatch finishlatch = new CountDownLatch(threadcount);
+		for (int i = 0; i < threadcount; i++) {
+			final Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						startlatch.await();
+						for (int j = 1; j <= perthread; j++) {
+							final Long value = Long.valueOf(j);
+							while (!buffer.offer(value)) {
+								rejected.incrementAndGet();
+								Thread.yield();
+							}
+						}
+						finishlatch.countDown();
+					} catch (final Exception e) {
+						e.printStackTrace();
+					}
+				}
+			});
+			thread.start();
+		}
+		System.out.println("Capacity: " + buffer.capacity());
+		System.out.println("Start!");
+		startlatch.countDown();
+
+		long count = 0;
+		long sum = 0;
+		final long expectedcount = (long)threadcount * perthread;
+		while (count < expectedcount) {
+			final Long value = buffer.poll();
+			if (value == null) continue;
+			count++;
+			sum += value;
+		}
+		finishlatch.await();
+		final long expectedsum = (long)threadcount * ((long)perthread * (perthread+1) / 2);
+		System.out.println("Count: " + count + " expected: " + expectedcount);
+		System.out.println("Sum: " + sum + " expected: " + expectedsum);
+		System.out.println("Rejected offers: " + rejected.get());
+		System.out.println("Empty: " + buffer.isEmpty());
+	}
+}
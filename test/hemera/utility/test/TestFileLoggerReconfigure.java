@@ -0,0 +1,58 @@
+package hemera.utility.test;
+
+import hemera.core.utility.FileUtils;
+import hemera.core.utility.logging.FileLogger;
+import hemera.core.utility.logging.LoggingConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.LogManager;
+
+public class TestFileLoggerReconfigure {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		// Only write to the files.
+		LogManager.getLogManager().reset();
+		final Path dir = Files.createTempDirectory("filelogger");
+		LoggingConfig.Directory.setValue(dir.toString() + File.separator);
+		final FileLogger logger = FileLogger.getLogger(TestFileLoggerReconfigure.class);
+		final File file = new File(dir.toFile(), TestFileLoggerReconfigure.class.getName() + ".log");
+		final File console = new File(dir.toFile(), "console.log");
+
+		for (int i = 0; i < 50; i++) logger.info("before " + i);
+		FileLogger.reconfigure();
+		for (int i = 0; i < 2000; i++) logger.info("after " + i);
+		System.out.println("Records before: " + TestFileLoggerReconfigure.count(file, "before ") + " expected: 50");
+		System.out.println("Records after: " + TestFileLoggerReconfigure.count(file, "after ") + " expected: 2000");
+		// The console records are merged in the background.
+		Thread.sleep(500);
+		System.out.println("Console records: " + TestFileLoggerReconfigure.count(console, "INFO") + " expected: 2050");
+
+		// Smaller segments rotate the single file repeatedly.
+		LoggingConfig.FileSize.setValue(16384);
+		FileLogger.reconfigure();
+		for (int i = 0; i < 5000; i++) logger.info("rotated " + i);
+		FileLogger.reconfigure();
+		logger.info("rotated 5000");
+		final int last = TestFileLoggerReconfigure.count(file, "rotated 5000");
+		System.out.println("Last record after rotations: " + last + " expected: 1");
+		final int retained = TestFileLoggerReconfigure.count(file, "rotated ");
+		System.out.println("Rotated out records: " + (retained < 5000) + " expected: true");
+
+		FileUtils.instance.delete(dir.toString());
+	}
+
+	private static int count(final File file, final String text) throws IOException {
+		final String contents = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+		int count = 0;
+		int index = contents.indexOf(text);
+		while (index >= 0) {
+			count++;
+			index = contents.indexOf(text, index + text.length());
+		}
+		return count;
+	}
+}
@@ -0,0 +1,133 @@
+package hemera.utility.test;
+
+import hemera.core.utility.FileUtils;
+import hemera.core.utility.JarBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+
+public class TestJarBuilder {
+
+	public static void main(String[] args) throws IOException {
+		final Path dir = Files.createTempDirectory("jarbuilder");
+		final File src = new File(dir.toFile(), "src");
+		final File jar = new File(dir.toFile(), "test.jar");
+		final Random random = new Random(7);
+		TestJarBuilder.write(new File(src, "readme.txt"), "Hello Jar.".getBytes("UTF-8"));
+		TestJarBuilder.write(new File(src, "empty.txt"), new byte[0]);
+		final StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 400000; i++) text.append("line ").append(i).append('\n');
+		// Larger than the in-memory threshold, thus deflated in chunks.
+		TestJarBuilder.write(new File(src, "a/large.txt"), text.toString().getBytes("UTF-8"));
+		final byte[] noise = new byte[300000];
+		random.nextBytes(noise);
+		TestJarBuilder.write(new File(src, "a/noise.bin"), noise);
+		TestJarBuilder.write(new File(src, "a/b/archive.zip"), new byte[5000]);
+		for (int i = 0; i < 50; i++) {
+			TestJarBuilder.write(new File(src, "a/b/c/file" + i + ".txt"), ("contents of file " + i).getBytes("UTF-8"));
+		}
+
+		new JarBuilder().add(src).build(jar.getPath());
+		System.out.println("Full build valid: " + TestJarBuilder.verify(jar, src) + " expected: true");
+
+		// Same size, different contents.
+		TestJarBuilder.write(new File(src, "a/b/c/file1.txt"), "CONTENTS OF FILE 1".getBytes("UTF-8"));
+		// Different size.
+		TestJarBuilder.write(new File(src, "readme.txt"), "Hello again Jar.".getBytes("UTF-8"));
+		TestJarBuilder.write(new File(src, "a/added.txt"), "added".getBytes("UTF-8"));
+		Files.delete(new File(src, "a/b/c/file2.txt").toPath());
+		new JarBuilder().add(src).setIncremental(true).build(jar.getPath());
+		System.out.println("Incremental build valid: " + TestJarBuilder.verify(jar, src) + " expected: true");
+		new JarBuilder().add(src).setIncremental(true).build(jar.getPath());
+		System.out.println("Unchanged rebuild valid: " + TestJarBuilder.verify(jar, src) + " expected: true");
+
+		// With a fixed time, entries are reused by checksum and must match a full build exactly.
+		final File full = new File(dir.toFile(), "full.jar");
+		new JarBuilder().add(src).setTimestamp(1500000000000L).build(jar.getPath());
+		TestJarBuilder.write(new File(src, "a/b/c/file3.txt"), "changed again".getBytes("UTF-8"));
+		new JarBuilder().add(src).setTimestamp(1500000000000L).setIncremental(true).build(jar.getPath());
+		new JarBuilder().add(src).setTimestamp(1500000000000L).build(full.getPath());
+		final boolean identical = Arrays.equals(Files.readAllBytes(jar.toPath()), Files.readAllBytes(full.toPath()));
+		System.out.println("Reused build identical to full build: " + identical + " expected: true");
+		System.out.println("Reused build valid: " + TestJarBuilder.verify(jar, src) + " expected: true");
+
+		// More entries than the Zip format holds without Zip64.
+		final File many = new File(dir.toFile(), "many");
+		for (int i = 0; i < 70000; i++) TestJarBuilder.write(new File(many, "d" + (i/1000) + "/f" + i), new byte[] {(byte)i});
+		final File manyJar = new File(dir.toFile(), "many.jar");
+		new JarBuilder().add(many).build(manyJar.getPath());
+		System.out.println("Zip64 build valid: " + TestJarBuilder.verify(manyJar, many) + " expected: true");
+		new JarBuilder().add(many).setIncremental(true).build(manyJar.getPath());
+		System.out.println("Zip64 incremental build valid: " + TestJarBuilder.verify(manyJar, many) + " expected: true");
+
+		FileUtils.instance.delete(dir.toString());
+	}
+
+	private static void write(final File file, final byte[] bytes) throws IOException {
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), bytes);
+	}
+
+	private static boolean verify(final File jarFile, final File src) throws IOException {
+		final List<File> files = FileUtils.instance.getFiles(src.getPath());
+		final Set<String> expected = new HashSet<String>();
+		final String prefix = src.getPath() + File.separator;
+		for (final File file : files) expected.add(file.getPath().substring(prefix.length()).replace(File.separatorChar, '/'));
+		boolean valid = true;
+		final JarFile jar = new JarFile(jarFile);
+		try {
+			final Enumeration<JarEntry> entries = jar.entries();
+			final JarEntry first = entries.nextElement();
+			if (!first.getName().equals(JarFile.MANIFEST_NAME)) {
+				System.out.println("First entry is not the manifest: " + first.getName());
+				valid = false;
+			}
+			while (entries.hasMoreElements()) {
+				final JarEntry entry = entries.nextElement();
+				if (entry.isDirectory()) continue;
+				final byte[] contents = TestJarBuilder.read(jar, entry);
+				final CRC32 crc = new CRC32();
+				crc.update(contents, 0, contents.length);
+				final File file = new File(src, entry.getName());
+				if (!expected.remove(entry.getName())) {
+					System.out.println("Unexpected entry: " + entry.getName());
+					valid = false;
+				} else if (crc.getValue() != entry.getCrc() || contents.length != entry.getSize()) {
+					System.out.println("Invalid CRC or size: " + entry.getName());
+					valid = false;
+				} else if (!Arrays.equals(contents, Files.readAllBytes(file.toPath()))) {
+					System.out.println("Invalid contents: " + entry.getName());
+					valid = false;
+				}
+			}
+		} finally {
+			jar.close();
+		}
+		for (final String name : expected) {
+			System.out.println("Missing entry: " + name);
+			valid = false;
+		}
+		return valid;
+	}
+
+	private static byte[] read(final JarFile jar, final JarEntry entry) throws IOException {
+		final InputStream input = jar.getInputStream(entry);
+		try {
+			return FileUtils.instance.readAsBytes(input);
+		} finally {
+			input.close();
+		}
+	}
+}